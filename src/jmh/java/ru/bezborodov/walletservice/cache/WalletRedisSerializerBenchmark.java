@@ -0,0 +1,45 @@
+package ru.bezborodov.walletservice.cache;
+
+import org.openjdk.jmh.annotations.*;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost of a cache entry in each {@link WalletRedisSerializer.Format}.
+ * The size of the benchmarked entry in each format is listed in the README.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalletRedisSerializerBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    private WalletRedisSerializer.Format format;
+
+    private WalletRedisSerializer serializer;
+    private Wallet wallet;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        this.serializer = new WalletRedisSerializer(this.format);
+        this.wallet = new Wallet(UUID.randomUUID(), Money.parse("123456.78"));
+        this.encoded = this.serializer.serialize(this.wallet);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return this.serializer.serialize(this.wallet);
+    }
+
+    @Benchmark
+    public Wallet decode() {
+        return this.serializer.deserialize(this.encoded);
+    }
+}
@@ -0,0 +1,179 @@
+package ru.bezborodov.walletservice.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.transport.netty.client.TcpClientTransport;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+import reactor.netty.tcp.TcpClient;
+import reactor.netty.tcp.TcpServer;
+import ru.bezborodov.walletservice.cache.WalletRedisSerializer;
+import ru.bezborodov.walletservice.config.BalanceStreamProperties;
+import ru.bezborodov.walletservice.config.BulkOperationProperties;
+import ru.bezborodov.walletservice.controller.codec.WalletBinaryCodec;
+import ru.bezborodov.walletservice.controller.payload.RequestPayload;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.metrics.WalletMetrics;
+import ru.bezborodov.walletservice.service.InMemoryWalletServices;
+import ru.bezborodov.walletservice.service.WalletService;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WalletController} over HTTP/1.1 with JSON against {@link WalletRSocketController} over one RSocket
+ * connection with {@link WalletBinaryCodec}, both in front of the same in-memory service.
+ * <p>
+ * Both servers run on a single event loop thread, so the throughput is per server core; the clients use their
+ * own event loop, and several benchmark threads keep requests in flight. The REST deposit answers
+ * {@code 204 No Content} while the RSocket one returns the wallet, which only favours REST.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class WalletProtocolBenchmark {
+    private static final String HOST = "127.0.0.1";
+    private static final int WALLETS = 1024;
+
+    private LoopResources serverLoop;
+    private LoopResources clientLoop;
+    private AnnotationConfigApplicationContext context;
+    private DisposableServer httpServer;
+    private CloseableChannel rsocketServer;
+    private WebClient webClient;
+    private RSocketRequester requester;
+    private UUID[] walletIds;
+    private Money amount;
+
+    @Setup
+    public void setUp() {
+        this.walletIds = new UUID[WALLETS];
+        Map<UUID, Money> balances = new HashMap<>();
+        for (int i = 0; i < WALLETS; i++) {
+            this.walletIds[i] = UUID.randomUUID();
+            balances.put(this.walletIds[i], Money.parse("1000000.00"));
+        }
+        WalletService walletService = InMemoryWalletServices.create(balances, false,
+                WalletRedisSerializer.Format.BINARY);
+        this.amount = Money.parse("1.00");
+        this.serverLoop = LoopResources.create("bench-server", 1, true);
+        this.clientLoop = LoopResources.create("bench-client", 2, true);
+
+        this.context = new AnnotationConfigApplicationContext();
+        this.context.register(WebFluxConfiguration.class);
+        this.context.registerBean(WalletController.class, () -> new WalletController(walletService,
+                new BulkOperationProperties(64), new WalletMetrics(new SimpleMeterRegistry()),
+                new BalanceStreamProperties(true, Duration.ofSeconds(15)),
+                Validation.buildDefaultValidatorFactory().getValidator()));
+        this.context.refresh();
+        this.httpServer = HttpServer.create()
+                .host(HOST)
+                .port(0)
+                .runOn(this.serverLoop)
+                .handle(new ReactorHttpHandlerAdapter(WebHttpHandlerBuilder.applicationContext(this.context).build()))
+                .bindNow();
+        this.webClient = WebClient.builder()
+                .baseUrl("http://" + HOST + ":" + this.httpServer.port() + "/api/v1/wallets")
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create().runOn(this.clientLoop)))
+                .build();
+
+        RSocketStrategies strategies = RSocketStrategies.builder()
+                .encoders(encoders -> encoders.add(0, new WalletBinaryCodec.Encoder()))
+                .decoders(decoders -> decoders.add(0, new WalletBinaryCodec.Decoder()))
+                .build();
+        RSocketMessageHandler handler = new RSocketMessageHandler();
+        handler.setRSocketStrategies(strategies);
+        handler.setHandlers(List.of(new WalletRSocketController(walletService)));
+        handler.afterPropertiesSet();
+        this.rsocketServer = RSocketServer.create(handler.responder())
+                .bind(TcpServerTransport.create(TcpServer.create().host(HOST).port(0).runOn(this.serverLoop)))
+                .block();
+        this.requester = RSocketRequester.builder()
+                .rsocketStrategies(strategies)
+                .dataMimeType(WalletBinaryCodec.MIME_TYPE)
+                .transport(TcpClientTransport.create(TcpClient.create()
+                        .host(HOST)
+                        .port(this.rsocketServer.address().getPort())
+                        .runOn(this.clientLoop)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.requester.dispose();
+        this.rsocketServer.dispose();
+        this.httpServer.disposeNow();
+        this.context.close();
+        this.clientLoop.disposeLater().block();
+        this.serverLoop.disposeLater().block();
+    }
+
+    @Benchmark
+    public Wallet restBalance() {
+        return this.webClient.get()
+                .uri("/{walletId}", nextWalletId())
+                .retrieve()
+                .bodyToMono(Wallet.class)
+                .block();
+    }
+
+    @Benchmark
+    public Wallet rsocketBalance() {
+        return this.requester.route("wallets.balance")
+                .data(nextWalletId())
+                .retrieveMono(Wallet.class)
+                .block();
+    }
+
+    @Benchmark
+    public Object restDeposit() {
+        return this.webClient.put()
+                .bodyValue(new RequestPayload(nextWalletId(), OperationType.DEPOSIT, this.amount))
+                .retrieve()
+                .toBodilessEntity()
+                .block();
+    }
+
+    @Benchmark
+    public Wallet rsocketDeposit() {
+        return this.requester.route("wallets.operation")
+                .data(new RequestPayload(nextWalletId(), OperationType.DEPOSIT, this.amount))
+                .retrieveMono(Wallet.class)
+                .block();
+    }
+
+    private UUID nextWalletId() {
+        return this.walletIds[ThreadLocalRandom.current().nextInt(WALLETS)];
+    }
+
+    @EnableWebFlux
+    @Configuration(proxyBeanMethods = false)
+    static class WebFluxConfiguration {
+    }
+}
@@ -0,0 +1,65 @@
+package ru.bezborodov.walletservice.controller.payload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request body decoding and bean validation of a single operation, as done by {@code WalletController}.
+ * The object mapper is built with the same defaults Spring Boot applies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestPayloadBenchmark {
+    private ObjectReader reader;
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private byte[] body;
+    private RequestPayload payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        this.reader = objectMapper.readerFor(RequestPayload.class);
+        this.validatorFactory = Validation.buildDefaultValidatorFactory();
+        this.validator = this.validatorFactory.getValidator();
+        this.body = ("{\"id\":\"" + UUID.randomUUID() + "\",\"type\":\"withdraw\",\"amount\":1000.50}")
+                .getBytes(StandardCharsets.UTF_8);
+        this.payload = this.reader.readValue(this.body);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.validatorFactory.close();
+    }
+
+    @Benchmark
+    public RequestPayload decode() throws IOException {
+        return this.reader.readValue(this.body);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<RequestPayload>> validate() {
+        return this.validator.validate(this.payload);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<RequestPayload>> decodeAndValidate() throws IOException {
+        return this.validator.validate(this.reader.<RequestPayload>readValue(this.body));
+    }
+}
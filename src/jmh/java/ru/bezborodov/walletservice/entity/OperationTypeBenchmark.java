@@ -0,0 +1,25 @@
+package ru.bezborodov.walletservice.entity;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link OperationType#fromValue(String)}, which Jackson calls for every decoded operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationTypeBenchmark {
+
+    @Param({"deposit", "withdraw"})
+    private String value;
+
+    @Benchmark
+    public OperationType fromValue() {
+        return OperationType.fromValue(this.value);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.bezborodov.walletservice.service;
+
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.cache.WalletRedisSerializer;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Redis templates that keep values in a map instead of talking to a server. Values go through the configured
+ * {@link WalletRedisSerializer}, so its cost stays in the measurement.
+ */
+final class InMemoryRedisTemplates {
+    private static final ReactiveRedisConnectionFactory NO_CONNECTION =
+            (ReactiveRedisConnectionFactory) Proxy.newProxyInstance(
+                    ReactiveRedisConnectionFactory.class.getClassLoader(),
+                    new Class<?>[]{ReactiveRedisConnectionFactory.class},
+                    (proxy, method, args) -> {
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+
+    private InMemoryRedisTemplates() {
+    }
+
+    static ReactiveRedisTemplate<String, Wallet> walletTemplate(WalletRedisSerializer serializer) {
+        RedisSerializationContext<String, Wallet> context = RedisSerializationContext
+                .<String, Wallet>newSerializationContext(new StringRedisSerializer())
+                .value(serializer)
+                .build();
+        Map<String, byte[]> values = new ConcurrentHashMap<>();
+        @SuppressWarnings("unchecked")
+        ReactiveValueOperations<String, Wallet> operations = (ReactiveValueOperations<String, Wallet>)
+                Proxy.newProxyInstance(ReactiveValueOperations.class.getClassLoader(),
+                        new Class<?>[]{ReactiveValueOperations.class},
+                        (proxy, method, args) -> switch (method.getName()) {
+                            case "get", "getAndExpire" -> Mono.justOrEmpty(values.get((String) args[0]))
+                                    .map(serializer::deserialize);
+                            case "set" -> {
+                                values.put((String) args[0], serializer.serialize((Wallet) args[1]));
+                                yield Mono.just(true);
+                            }
+                            default -> throw new UnsupportedOperationException(method.getName());
+                        });
+        return new ReactiveRedisTemplate<>(NO_CONNECTION, context) {
+            @Override
+            public ReactiveValueOperations<String, Wallet> opsForValue() {
+                return operations;
+            }
+        };
+    }
+
+    static ReactiveStringRedisTemplate stringTemplate() {
+        return new ReactiveStringRedisTemplate(NO_CONNECTION) {
+            @Override
+            public Mono<Long> convertAndSend(String destination, String message) {
+                return Mono.just(0L);
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package ru.bezborodov.walletservice.service;
+
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+import ru.bezborodov.walletservice.repository.WalletStripeRepository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link WalletRepository} and {@link WalletStripeRepository} backed by a map of unstriped wallets, implementing
+ * the queries used by {@link SqlWalletEngine}. Any other query fails with {@link UnsupportedOperationException}.
+ */
+final class InMemoryWalletRepository implements InvocationHandler {
+    private final Map<UUID, Money> balances = new ConcurrentHashMap<>();
+
+    static WalletRepository create(Map<UUID, Money> initialBalances) {
+        InMemoryWalletRepository handler = new InMemoryWalletRepository();
+        handler.balances.putAll(initialBalances);
+        return (WalletRepository) Proxy.newProxyInstance(WalletRepository.class.getClassLoader(),
+                new Class<?>[]{WalletRepository.class, WalletStripeRepository.class}, handler);
+    }
+
+    /**
+     * Returns the stripe queries of a repository made by {@link #create(Map)}.
+     */
+    static WalletStripeRepository stripes(WalletRepository repository) {
+        return (WalletStripeRepository) repository;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "findById", "findTotal" -> findById((UUID) args[0]);
+            case "existsById" -> Mono.just(this.balances.containsKey((UUID) args[0]));
+            case "applyDelta" -> applyDelta((UUID) args[0], (Money) args[1]);
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            case "toString" -> "InMemoryWalletRepository";
+            default -> throw new UnsupportedOperationException(method.getName());
+        };
+    }
+
+    private Mono<Wallet> findById(UUID id) {
+        Money balance = this.balances.get(id);
+        return balance == null ? Mono.empty() : Mono.just(new Wallet(id, balance));
+    }
+
+    private Mono<Wallet> applyDelta(UUID id, Money delta) {
+        Wallet[] updated = new Wallet[1];
+        this.balances.computeIfPresent(id, (key, balance) -> {
+            Money newBalance = balance.plus(delta);
+            if (newBalance.isNegative()) {
+                return balance;
+            }
+            updated[0] = new Wallet(key, newBalance);
+            return newBalance;
+        });
+        return Mono.justOrEmpty(updated[0]);
+    }
+}
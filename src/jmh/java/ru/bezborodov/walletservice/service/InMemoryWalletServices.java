@@ -0,0 +1,59 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ru.bezborodov.walletservice.cache.MissingWalletFilter;
+import ru.bezborodov.walletservice.cache.WalletAccessTracker;
+import ru.bezborodov.walletservice.cache.WalletNearCache;
+import ru.bezborodov.walletservice.cache.WalletRedisSerializer;
+import ru.bezborodov.walletservice.config.BalanceStreamProperties;
+import ru.bezborodov.walletservice.config.NearCacheProperties;
+import ru.bezborodov.walletservice.config.StripingProperties;
+import ru.bezborodov.walletservice.config.WalletCacheProperties;
+import ru.bezborodov.walletservice.config.WalletLookupProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.metrics.WalletMetrics;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+import ru.bezborodov.walletservice.repository.WalletStripeRepository;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * {@link WalletServiceImpl} with the SQL engine on in-memory stand-ins of Postgres and Redis, shared by the
+ * benchmarks of the service and of the protocols in front of it.
+ */
+public final class InMemoryWalletServices {
+
+    private InMemoryWalletServices() {
+    }
+
+    public static WalletServiceImpl create(Map<UUID, Money> balances, boolean nearCache,
+                                           WalletRedisSerializer.Format format) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WalletRepository walletRepository = InMemoryWalletRepository.create(balances);
+        WalletNearCache walletNearCache = new WalletNearCache(
+                new NearCacheProperties(nearCache, balances.size() * 2L, Duration.ofMinutes(5)),
+                InMemoryRedisTemplates.stringTemplate(), meterRegistry);
+        MissingWalletFilter missingWalletFilter = new MissingWalletFilter(
+                new WalletLookupProperties(Duration.ofSeconds(2), 1000, false, balances.size(), 0.01,
+                        Duration.ofMinutes(10)),
+                walletRepository, meterRegistry);
+        WalletStripeRepository walletStripeRepository = InMemoryWalletRepository.stripes(walletRepository);
+        // Stripe counts are never loaded, so every wallet takes the unstriped path.
+        WalletStripes walletStripes = new WalletStripes(new StripingProperties(Duration.ofMinutes(1)),
+                walletRepository, walletStripeRepository, null);
+        WalletCacheProperties cacheProperties = new WalletCacheProperties(format, Duration.ofHours(1),
+                Duration.ofMinutes(5), 8, Duration.ofMinutes(1), 0, Duration.ofSeconds(30), Duration.ofMinutes(1));
+        // Neither the idempotent path nor transfers are measured, so the deduplicator and the
+        // transactional operator are not needed.
+        return new WalletServiceImpl(
+                new SqlWalletEngine(walletRepository, walletStripeRepository, walletStripes, null),
+                InMemoryRedisTemplates.walletTemplate(new WalletRedisSerializer(format)),
+                walletNearCache, null, missingWalletFilter, new WalletMetrics(meterRegistry),
+                new WalletBalanceStream(new BalanceStreamProperties(true, Duration.ofSeconds(15)),
+                        InMemoryRedisTemplates.stringTemplate()),
+                new WalletAccessTracker(cacheProperties, InMemoryRedisTemplates.stringTemplate(), meterRegistry),
+                cacheProperties);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.bezborodov.walletservice.service;
+
+import org.openjdk.jmh.annotations.*;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balance arithmetic of a single operation: the signed delta of the SQL and ledger engines and the
+ * add/subtract and sign check of the group-commit engine, on {@link Money} and, for comparison, on the
+ * {@link BigDecimal} representation it replaced. {@code parse} is the per-request cost of reading an amount.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyArithmeticBenchmark {
+
+    @Param({"DEPOSIT", "WITHDRAW"})
+    private OperationType type;
+
+    private Money balance;
+    private Money amount;
+    private BigDecimal decimalBalance;
+    private BigDecimal decimalAmount;
+
+    @Setup
+    public void setUp() {
+        this.balance = Money.parse("123456.78");
+        this.amount = Money.parse("1000.50");
+        this.decimalBalance = this.balance.toBigDecimal();
+        this.decimalAmount = this.amount.toBigDecimal();
+    }
+
+    @Benchmark
+    public Money delta() {
+        return this.type == OperationType.WITHDRAW ? this.amount.negate() : this.amount;
+    }
+
+    @Benchmark
+    public Money apply() {
+        Money newBalance = this.type == OperationType.WITHDRAW
+                ? this.balance.minus(this.amount)
+                : this.balance.plus(this.amount);
+        return newBalance.isNegative() ? null : newBalance;
+    }
+
+    @Benchmark
+    public BigDecimal decimalApply() {
+        BigDecimal newBalance = this.type == OperationType.WITHDRAW
+                ? this.decimalBalance.subtract(this.decimalAmount)
+                : this.decimalBalance.add(this.decimalAmount);
+        return newBalance.signum() < 0 ? null : newBalance;
+    }
+
+    @Benchmark
+    public Money parse() {
+        return Money.parse("1000.50");
+    }
+
+    @Benchmark
+    public BigDecimal decimalParse() {
+        return new BigDecimal("1000.50");
+    }
+}
@@ -0,0 +1,84 @@
+package ru.bezborodov.walletservice.service;
+
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.cache.WalletRedisSerializer;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of {@link WalletServiceImpl} with the SQL engine on in-memory stand-ins of Postgres and Redis,
+ * i.e. everything the service does per request except network I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalletServiceBenchmark {
+    private static final int WALLETS = 1024;
+
+    @Param({"true", "false"})
+    private boolean nearCache;
+
+    @Param({"BINARY", "JSON"})
+    private WalletRedisSerializer.Format format;
+
+    private WalletServiceImpl walletService;
+    private UUID[] walletIds;
+    private Money amount;
+    private Money overdraft;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        this.walletIds = new UUID[WALLETS];
+        Map<UUID, Money> balances = new HashMap<>();
+        for (int i = 0; i < WALLETS; i++) {
+            this.walletIds[i] = UUID.randomUUID();
+            balances.put(this.walletIds[i], Money.parse("1000000.00"));
+        }
+        this.walletService = InMemoryWalletServices.create(balances, this.nearCache, this.format);
+        this.amount = Money.parse("1.00");
+        this.overdraft = Money.parse("1000000000.00");
+    }
+
+    @Benchmark
+    public Wallet deposit() {
+        return this.walletService.performOperation(nextWalletId(), OperationType.DEPOSIT, this.amount).block();
+    }
+
+    @Benchmark
+    public Wallet withdraw() {
+        return this.walletService.performOperation(nextWalletId(), OperationType.WITHDRAW, this.amount).block();
+    }
+
+    /**
+     * Rejected withdrawal, to be compared with {@link #withdraw()}: the rejection is an expected outcome and must
+     * stay close to the success path.
+     */
+    @Benchmark
+    public Throwable rejectedWithdraw() {
+        return this.walletService.performOperation(nextWalletId(), OperationType.WITHDRAW, this.overdraft)
+                .then(Mono.<Throwable>empty())
+                .onErrorResume(Mono::just)
+                .block();
+    }
+
+    @Benchmark
+    public Wallet findWalletBalance() {
+        return this.walletService.findWalletBalance(nextWalletId()).block();
+    }
+
+    private UUID nextWalletId() {
+        this.next = (this.next + 1) & (WALLETS - 1);
+        return this.walletIds[this.next];
+    }
+}
@@ -0,0 +1,503 @@
+package ru.bezborodov.walletservice.loadtest;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.redis.ArrayRedisMessage;
+import io.netty.handler.codec.redis.ErrorRedisMessage;
+import io.netty.handler.codec.redis.FullBulkStringRedisMessage;
+import io.netty.handler.codec.redis.IntegerRedisMessage;
+import io.netty.handler.codec.redis.RedisArrayAggregator;
+import io.netty.handler.codec.redis.RedisBulkStringAggregator;
+import io.netty.handler.codec.redis.RedisDecoder;
+import io.netty.handler.codec.redis.RedisEncoder;
+import io.netty.handler.codec.redis.RedisMessage;
+import io.netty.handler.codec.redis.SimpleStringRedisMessage;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in of Redis speaking RESP2, implementing the commands the service issues with the engines
+ * that keep balances in Postgres: strings with expiry, {@code MGET}, sorted sets, pub/sub, {@code INFO} and
+ * {@code DBSIZE}. Lua scripts and streams, used only by the Redis engine, are not implemented.
+ * <p>
+ * Like Redis, all commands run on one thread, so the store needs no synchronization. Expired keys are removed
+ * when they are read and by a periodic sweep.
+ */
+final class InMemoryRedisServer implements AutoCloseable {
+    private static final RedisMessage OK = new SimpleStringRedisMessage("OK");
+    private static final long SWEEP_INTERVAL_SECONDS = 10;
+
+    private final EventLoopGroup group = new NioEventLoopGroup(1);
+    private final Map<String, Entry> data = new HashMap<>();
+    private final Map<String, Set<Channel>> subscribers = new HashMap<>();
+    private final Channel serverChannel;
+
+    private InMemoryRedisServer() throws InterruptedException {
+        this.serverChannel = new ServerBootstrap()
+                .group(this.group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline()
+                                .addLast(new RedisDecoder())
+                                .addLast(new RedisBulkStringAggregator())
+                                .addLast(new RedisArrayAggregator())
+                                .addLast(new RedisEncoder())
+                                .addLast(new CommandHandler());
+                    }
+                })
+                .bind("127.0.0.1", 0)
+                .sync()
+                .channel();
+        this.group.scheduleAtFixedRate(this::sweep, SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    static InMemoryRedisServer start() throws InterruptedException {
+        return new InMemoryRedisServer();
+    }
+
+    int port() {
+        return ((InetSocketAddress) this.serverChannel.localAddress()).getPort();
+    }
+
+    @Override
+    public void close() {
+        this.serverChannel.close().syncUninterruptibly();
+        this.group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private final class CommandHandler extends SimpleChannelInboundHandler<ArrayRedisMessage> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ArrayRedisMessage message) {
+            List<String> args = new ArrayList<>(message.children().size());
+            for (RedisMessage child : message.children()) {
+                args.add(new String(ByteBufUtil.getBytes(((FullBulkStringRedisMessage) child).content()),
+                        StandardCharsets.ISO_8859_1));
+            }
+            RedisMessage reply;
+            try {
+                reply = execute(ctx.channel(), args);
+            } catch (IllegalStateException ex) {
+                reply = new ErrorRedisMessage(ex.getMessage());
+            } catch (RuntimeException ex) {
+                reply = new ErrorRedisMessage("ERR " + ex.getMessage());
+            }
+            if (reply != null) {
+                ctx.write(reply);
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            subscribers.values().forEach(channels -> channels.remove(ctx.channel()));
+        }
+    }
+
+    private RedisMessage execute(Channel channel, List<String> args) {
+        String command = args.get(0).toUpperCase(Locale.ROOT);
+        return switch (command) {
+            case "PING" -> args.size() > 1 ? bulk(args.get(1)) : new SimpleStringRedisMessage("PONG");
+            case "ECHO" -> bulk(args.get(1));
+            case "HELLO" -> new ErrorRedisMessage("ERR unknown command 'HELLO'");
+            case "AUTH", "SELECT", "CLIENT" -> OK;
+            case "FLUSHDB", "FLUSHALL" -> {
+                this.data.clear();
+                yield OK;
+            }
+            case "COMMAND" -> ArrayRedisMessage.EMPTY_INSTANCE;
+            case "INFO" -> info();
+            case "DBSIZE" -> {
+                sweep();
+                yield new IntegerRedisMessage(this.data.size());
+            }
+            case "GET" -> bulk(string(args.get(1)));
+            case "SET" -> set(args);
+            case "GETEX" -> getEx(args);
+            case "MGET" -> {
+                List<RedisMessage> values = new ArrayList<>(args.size() - 1);
+                for (String key : args.subList(1, args.size())) {
+                    values.add(bulk(string(key)));
+                }
+                yield new ArrayRedisMessage(values);
+            }
+            case "DEL", "UNLINK" -> {
+                long removed = 0;
+                for (String key : args.subList(1, args.size())) {
+                    if (live(key) != null) {
+                        this.data.remove(key);
+                        removed++;
+                    }
+                }
+                yield new IntegerRedisMessage(removed);
+            }
+            case "EXISTS" -> new IntegerRedisMessage(args.subList(1, args.size()).stream()
+                    .filter(key -> live(key) != null)
+                    .count());
+            case "EXPIRE", "PEXPIRE" -> {
+                Entry entry = live(args.get(1));
+                if (entry == null) {
+                    yield new IntegerRedisMessage(0);
+                }
+                long ttl = Long.parseLong(args.get(2));
+                entry.expiresAt = now() + (command.equals("EXPIRE") ? ttl * 1000 : ttl);
+                yield new IntegerRedisMessage(1);
+            }
+            case "PTTL" -> {
+                Entry entry = live(args.get(1));
+                yield new IntegerRedisMessage(entry == null ? -2 : entry.expiresAt == 0 ? -1 : entry.expiresAt - now());
+            }
+            case "PUBLISH" -> publish(args.get(1), args.get(2));
+            case "SUBSCRIBE" -> {
+                for (String name : args.subList(1, args.size())) {
+                    this.subscribers.computeIfAbsent(name, key -> new LinkedHashSet<>()).add(channel);
+                    channel.write(new ArrayRedisMessage(List.of(bulk("subscribe"), bulk(name),
+                            new IntegerRedisMessage(subscriptions(channel)))));
+                }
+                yield null;
+            }
+            case "UNSUBSCRIBE" -> {
+                List<String> names = args.size() > 1 ? args.subList(1, args.size()) : subscribedChannels(channel);
+                for (String name : names) {
+                    Set<Channel> channels = this.subscribers.get(name);
+                    if (channels != null) {
+                        channels.remove(channel);
+                    }
+                    channel.write(new ArrayRedisMessage(List.of(bulk("unsubscribe"), bulk(name),
+                            new IntegerRedisMessage(subscriptions(channel)))));
+                }
+                yield null;
+            }
+            case "ZADD" -> zAdd(args);
+            case "ZCARD" -> new IntegerRedisMessage(sortedSet(args.get(1), false).size());
+            case "ZSCORE" -> {
+                Double score = sortedSet(args.get(1), false).get(args.get(2));
+                yield score == null ? FullBulkStringRedisMessage.NULL_INSTANCE : bulk(formatScore(score));
+            }
+            case "ZREM" -> {
+                Map<String, Double> set = sortedSet(args.get(1), false);
+                long removed = args.subList(2, args.size()).stream().filter(member -> set.remove(member) != null)
+                        .count();
+                removeIfEmpty(args.get(1));
+                yield new IntegerRedisMessage(removed);
+            }
+            case "ZRANGE", "ZREVRANGE" -> zRange(args, command.equals("ZREVRANGE"));
+            case "ZREMRANGEBYRANK" -> {
+                List<String> members = byRank(args.get(1), false, Long.parseLong(args.get(2)),
+                        Long.parseLong(args.get(3)));
+                Map<String, Double> set = sortedSet(args.get(1), false);
+                members.forEach(set::remove);
+                removeIfEmpty(args.get(1));
+                yield new IntegerRedisMessage(members.size());
+            }
+            case "ZREMRANGEBYSCORE" -> {
+                Map<String, Double> set = sortedSet(args.get(1), false);
+                ScoreBound min = ScoreBound.parse(args.get(2));
+                ScoreBound max = ScoreBound.parse(args.get(3));
+                int before = set.size();
+                set.values().removeIf(score -> min.isBelowOrAt(score) && max.isAboveOrAt(score));
+                int removed = before - set.size();
+                removeIfEmpty(args.get(1));
+                yield new IntegerRedisMessage(removed);
+            }
+            case "ZUNIONSTORE" -> zUnionStore(args);
+            default -> new ErrorRedisMessage("ERR unknown command '" + args.get(0) + "'");
+        };
+    }
+
+    private RedisMessage set(List<String> args) {
+        String key = args.get(1);
+        long expiresAt = 0;
+        boolean ifAbsent = false;
+        boolean ifPresent = false;
+        boolean keepTtl = false;
+        boolean returnOld = false;
+        for (int i = 3; i < args.size(); i++) {
+            switch (args.get(i).toUpperCase(Locale.ROOT)) {
+                case "EX" -> expiresAt = now() + Long.parseLong(args.get(++i)) * 1000;
+                case "PX" -> expiresAt = now() + Long.parseLong(args.get(++i));
+                case "EXAT" -> expiresAt = Long.parseLong(args.get(++i)) * 1000;
+                case "PXAT" -> expiresAt = Long.parseLong(args.get(++i));
+                case "NX" -> ifAbsent = true;
+                case "XX" -> ifPresent = true;
+                case "KEEPTTL" -> keepTtl = true;
+                case "GET" -> returnOld = true;
+                default -> throw new IllegalArgumentException("syntax error");
+            }
+        }
+        Entry current = live(key);
+        RedisMessage old = returnOld ? bulk(current != null ? (String) current.value : null) : null;
+        if ((ifAbsent && current != null) || (ifPresent && current == null)) {
+            return returnOld ? old : FullBulkStringRedisMessage.NULL_INSTANCE;
+        }
+        Entry entry = new Entry(args.get(2));
+        entry.expiresAt = keepTtl && current != null ? current.expiresAt : expiresAt;
+        this.data.put(key, entry);
+        return returnOld ? old : OK;
+    }
+
+    private RedisMessage getEx(List<String> args) {
+        Entry entry = live(args.get(1));
+        if (entry == null) {
+            return FullBulkStringRedisMessage.NULL_INSTANCE;
+        }
+        if (args.size() > 2) {
+            switch (args.get(2).toUpperCase(Locale.ROOT)) {
+                case "EX" -> entry.expiresAt = now() + Long.parseLong(args.get(3)) * 1000;
+                case "PX" -> entry.expiresAt = now() + Long.parseLong(args.get(3));
+                case "EXAT" -> entry.expiresAt = Long.parseLong(args.get(3)) * 1000;
+                case "PXAT" -> entry.expiresAt = Long.parseLong(args.get(3));
+                case "PERSIST" -> entry.expiresAt = 0;
+                default -> throw new IllegalArgumentException("syntax error");
+            }
+        }
+        return bulk((String) entry.value);
+    }
+
+    private RedisMessage publish(String name, String payload) {
+        Set<Channel> channels = this.subscribers.getOrDefault(name, Set.of());
+        for (Channel subscriber : channels) {
+            subscriber.writeAndFlush(new ArrayRedisMessage(List.of(bulk("message"), bulk(name), bulk(payload))));
+        }
+        return new IntegerRedisMessage(channels.size());
+    }
+
+    private RedisMessage zAdd(List<String> args) {
+        Map<String, Double> set = sortedSet(args.get(1), true);
+        int i = 2;
+        while (i < args.size() && !isScore(args.get(i))) {
+            i++;
+        }
+        long added = 0;
+        for (; i + 1 < args.size(); i += 2) {
+            if (set.put(args.get(i + 1), parseScore(args.get(i))) == null) {
+                added++;
+            }
+        }
+        return new IntegerRedisMessage(added);
+    }
+
+    private RedisMessage zRange(List<String> args, boolean reverse) {
+        boolean withScores = args.size() > 4 && args.get(4).equalsIgnoreCase("WITHSCORES");
+        Map<String, Double> set = sortedSet(args.get(1), false);
+        List<RedisMessage> reply = new ArrayList<>();
+        for (String member : byRank(args.get(1), reverse, Long.parseLong(args.get(2)), Long.parseLong(args.get(3)))) {
+            reply.add(bulk(member));
+            if (withScores) {
+                reply.add(bulk(formatScore(set.get(member))));
+            }
+        }
+        return new ArrayRedisMessage(reply);
+    }
+
+    private RedisMessage zUnionStore(List<String> args) {
+        int keys = Integer.parseInt(args.get(2));
+        double[] weights = new double[keys];
+        Arrays.fill(weights, 1.0);
+        String aggregate = "SUM";
+        for (int i = 3 + keys; i < args.size(); i++) {
+            if (args.get(i).equalsIgnoreCase("WEIGHTS")) {
+                for (int w = 0; w < keys; w++) {
+                    weights[w] = parseScore(args.get(++i));
+                }
+            } else if (args.get(i).equalsIgnoreCase("AGGREGATE")) {
+                aggregate = args.get(++i).toUpperCase(Locale.ROOT);
+            }
+        }
+        Map<String, Double> union = new HashMap<>();
+        for (int k = 0; k < keys; k++) {
+            double weight = weights[k];
+            String function = aggregate;
+            sortedSet(args.get(3 + k), false).forEach((member, score) -> union.merge(member, score * weight,
+                    (left, right) -> switch (function) {
+                        case "MIN" -> Math.min(left, right);
+                        case "MAX" -> Math.max(left, right);
+                        default -> left + right;
+                    }));
+        }
+        this.data.remove(args.get(1));
+        if (!union.isEmpty()) {
+            this.data.put(args.get(1), new Entry(union));
+        }
+        return new IntegerRedisMessage(union.size());
+    }
+
+    private List<String> byRank(String key, boolean reverse, long start, long stop) {
+        Map<String, Double> set = sortedSet(key, false);
+        Comparator<Map.Entry<String, Double>> order = Map.Entry.<String, Double>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey());
+        List<String> members = set.entrySet().stream()
+                .sorted(reverse ? order.reversed() : order)
+                .map(Map.Entry::getKey)
+                .toList();
+        int size = members.size();
+        long from = start < 0 ? Math.max(0, start + size) : start;
+        long to = Math.min(stop < 0 ? stop + size : stop, size - 1L);
+        return from > to ? List.of() : members.subList((int) from, (int) to + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Double> sortedSet(String key, boolean create) {
+        Entry entry = live(key);
+        if (entry == null) {
+            if (!create) {
+                return new HashMap<>();
+            }
+            entry = new Entry(new HashMap<String, Double>());
+            this.data.put(key, entry);
+        }
+        if (!(entry.value instanceof Map)) {
+            throw new IllegalStateException("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }
+        return (Map<String, Double>) entry.value;
+    }
+
+    private void removeIfEmpty(String key) {
+        Entry entry = this.data.get(key);
+        if (entry != null && entry.value instanceof Map<?, ?> set && set.isEmpty()) {
+            this.data.remove(key);
+        }
+    }
+
+    private RedisMessage info() {
+        long usedMemory = 0;
+        for (Map.Entry<String, Entry> entry : this.data.entrySet()) {
+            usedMemory += entry.getKey().length() + (entry.getValue().value instanceof String value
+                    ? value.length()
+                    : ((Map<?, ?>) entry.getValue().value).size() * 64L);
+        }
+        return bulk("# Server\r\nredis_version:7.2.0\r\nredis_mode:standalone\r\n\r\n"
+                + "# Memory\r\nused_memory:" + usedMemory + "\r\n");
+    }
+
+    private String string(String key) {
+        Entry entry = live(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!(entry.value instanceof String value)) {
+            throw new IllegalStateException("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }
+        return value;
+    }
+
+    private Entry live(String key) {
+        Entry entry = this.data.get(key);
+        if (entry != null && entry.isExpired(now())) {
+            this.data.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private void sweep() {
+        long now = now();
+        this.data.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    private int subscriptions(Channel channel) {
+        return subscribedChannels(channel).size();
+    }
+
+    private List<String> subscribedChannels(Channel channel) {
+        return this.subscribers.entrySet().stream()
+                .filter(entry -> entry.getValue().contains(channel))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static boolean isScore(String arg) {
+        try {
+            parseScore(arg);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private static double parseScore(String arg) {
+        return switch (arg.toLowerCase(Locale.ROOT)) {
+            case "inf", "+inf" -> Double.POSITIVE_INFINITY;
+            case "-inf" -> Double.NEGATIVE_INFINITY;
+            default -> Double.parseDouble(arg);
+        };
+    }
+
+    private static String formatScore(double score) {
+        if (Double.isInfinite(score)) {
+            return score > 0 ? "inf" : "-inf";
+        }
+        return score == Math.rint(score) ? Long.toString((long) score) : Double.toString(score);
+    }
+
+    private static RedisMessage bulk(String value) {
+        return value == null
+                ? FullBulkStringRedisMessage.NULL_INSTANCE
+                : new FullBulkStringRedisMessage(Unpooled.wrappedBuffer(value.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * A string value, or a sorted set as a map of member to score; {@code expiresAt} is 0 for no expiry.
+     */
+    private static final class Entry {
+        private final Object value;
+        private long expiresAt;
+
+        private Entry(Object value) {
+            this.value = value;
+        }
+
+        private boolean isExpired(long now) {
+            return this.expiresAt != 0 && now >= this.expiresAt;
+        }
+    }
+
+    /**
+     * Bound of {@code ZREMRANGEBYSCORE}: a score, {@code -inf}/{@code +inf}, exclusive when prefixed by {@code (}.
+     */
+    private record ScoreBound(double score, boolean exclusive) {
+
+        static ScoreBound parse(String arg) {
+            boolean exclusive = arg.startsWith("(");
+            return new ScoreBound(parseScore(exclusive ? arg.substring(1) : arg), exclusive);
+        }
+
+        boolean isBelowOrAt(double value) {
+            return this.exclusive ? this.score < value : this.score <= value;
+        }
+
+        boolean isAboveOrAt(double value) {
+            return this.exclusive ? this.score > value : this.score >= value;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.bezborodov.walletservice.loadtest;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.bezborodov.walletservice.WalletServiceApplication;
+import ru.bezborodov.walletservice.entity.Money;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Replicas of the service in this process, on an embedded Postgres (real server binaries, no container) and
+ * on {@link InMemoryRedisServer}. The replicas share both stores, like the replicas of the prod compose file.
+ */
+@Slf4j
+final class LoadTestEnvironment implements AutoCloseable {
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    private final EmbeddedPostgres postgres;
+    private final InMemoryRedisServer redis;
+    private final List<ConfigurableApplicationContext> replicas = new ArrayList<>();
+    private final List<String> baseUrls = new ArrayList<>();
+
+    private LoadTestEnvironment(EmbeddedPostgres postgres, InMemoryRedisServer redis) {
+        this.postgres = postgres;
+        this.redis = redis;
+    }
+
+    static LoadTestEnvironment start(LoadTestSettings settings) throws IOException, InterruptedException {
+        LoadTestEnvironment environment = new LoadTestEnvironment(EmbeddedPostgres.builder().start(),
+                InMemoryRedisServer.start());
+        try {
+            for (int i = 0; i < settings.replicas(); i++) {
+                environment.startReplica(settings);
+            }
+            return environment;
+        } catch (RuntimeException ex) {
+            environment.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Replicas start one after another, so only the first one runs the Liquibase migrations.
+     */
+    private void startReplica(LoadTestSettings settings) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.rsocket.server.port", "0");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.r2dbc.url", "r2dbc:postgresql://127.0.0.1:" + this.postgres.getPort() + "/postgres");
+        properties.put("spring.r2dbc.username", "postgres");
+        properties.put("spring.r2dbc.password", "postgres");
+        properties.put("wallet.read-replica.url", properties.get("spring.r2dbc.url"));
+        properties.put("wallet.read-replica.username", "postgres");
+        properties.put("wallet.read-replica.password", "postgres");
+        properties.put("spring.data.redis.host", "127.0.0.1");
+        properties.put("spring.data.redis.port", Integer.toString(this.redis.port()));
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.io.r2dbc.postgresql.QUERY", "WARN");
+        properties.put("logging.level.io.r2dbc.postgresql.PARAM", "WARN");
+        properties.putAll(settings.appProperties());
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(WalletServiceApplication.class)
+                .profiles("standalone")
+                .run(args);
+        this.replicas.add(context);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        this.baseUrls.add("http://127.0.0.1:" + port + "/api/v1/wallets");
+        log.info("Started replica {} on port {}", this.replicas.size(), port);
+    }
+
+    /**
+     * Creates wallets with the given balance in batches of one {@code INSERT ... SELECT FROM unnest(...)}.
+     */
+    void createWallets(UUID[] ids, Money balance) throws SQLException {
+        try (Connection connection = this.postgres.getPostgresDatabase().getConnection();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO wallet.wallet (id, balance) SELECT id, ? FROM unnest(?) AS t(id)")) {
+            for (int from = 0; from < ids.length; from += SEED_BATCH_SIZE) {
+                UUID[] batch = Arrays.copyOfRange(ids, from, Math.min(from + SEED_BATCH_SIZE, ids.length));
+                insert.setLong(1, balance.minorUnits());
+                insert.setArray(2, connection.createArrayOf("uuid", batch));
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    List<String> baseUrls() {
+        return this.baseUrls;
+    }
+
+    @Override
+    public void close() {
+        this.replicas.forEach(ConfigurableApplicationContext::close);
+        this.redis.close();
+        try {
+            this.postgres.close();
+        } catch (IOException ex) {
+            log.warn("Stopping the embedded Postgres failed", ex);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ru.bezborodov.walletservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import ru.bezborodov.walletservice.loadtest.LoadTestSettings.Operation;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes the reports of a run to {@code output/name}:
+ * <ul>
+ *     <li>{@code summary.json}: settings, commit, and throughput, outcomes and latency percentiles of every
+ *     operation, in milliseconds;</li>
+ *     <li>{@code <operation>.hgrm}: full percentile distribution of the operation, in milliseconds, for the
+ *     HdrHistogram plotter;</li>
+ *     <li>{@code latency.hlog}: interval histograms of every second, written by {@link OpenModelLoadGenerator}.</li>
+ * </ul>
+ * With a baseline summary, the change of throughput and latency percentiles against it is logged.
+ */
+@Slf4j
+final class LoadTestReport {
+    static final String SUMMARY_FILE = "summary.json";
+    static final String HISTOGRAM_LOG_FILE = "latency.hlog";
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final LoadTestSettings settings;
+    private final Path directory;
+
+    LoadTestReport(LoadTestSettings settings) {
+        this.settings = settings;
+        this.directory = settings.output().resolve(settings.name());
+    }
+
+    Path directory() {
+        return this.directory;
+    }
+
+    void write(LoadTestResult result) throws IOException {
+        ObjectNode summary = summary(result);
+        this.objectMapper.writeValue(this.directory.resolve(SUMMARY_FILE).toFile(), summary);
+        for (Map.Entry<Operation, Histogram> latencies : result.latencies().entrySet()) {
+            if (latencies.getValue().getTotalCount() == 0) {
+                continue;
+            }
+            try (PrintStream out = new PrintStream(
+                    Files.newOutputStream(this.directory.resolve(latencies.getKey().key() + ".hgrm")))) {
+                latencies.getValue().outputPercentileDistribution(out, MICROS_PER_MILLI);
+            }
+        }
+        log.info("Reports written to {}", this.directory.toAbsolutePath());
+        log.info("Summary:\n{}", this.objectMapper.writeValueAsString(summary.get("operations")));
+        if (this.settings.baseline() != null) {
+            compare(summary, this.objectMapper.readTree(this.settings.baseline().toFile()));
+        }
+    }
+
+    private ObjectNode summary(LoadTestResult result) {
+        ObjectNode summary = this.objectMapper.createObjectNode();
+        summary.put("name", this.settings.name());
+        summary.put("commit", this.settings.commit());
+        ObjectNode settings = summary.putObject("settings");
+        settings.put("replicas", this.settings.replicas());
+        settings.put("wallets", this.settings.wallets());
+        settings.put("rate", this.settings.rate());
+        settings.put("warmUp", this.settings.warmUp().toString());
+        settings.put("duration", this.settings.duration().toString());
+        ObjectNode mix = settings.putObject("mix");
+        this.settings.mix().forEach((operation, weight) -> mix.put(operation.key(), weight));
+        settings.put("hotWallets", this.settings.hotWallets());
+        settings.put("hotShare", this.settings.hotShare());
+        settings.put("amount", this.settings.amount());
+        settings.put("maxConnections", this.settings.maxConnections());
+        settings.put("seed", this.settings.seed());
+        ObjectNode app = settings.putObject("app");
+        this.settings.appProperties().forEach(app::put);
+        ObjectNode operations = summary.putObject("operations");
+        double seconds = result.duration().toMillis() / 1000.0;
+        Histogram all = new Histogram(3);
+        for (Operation operation : Operation.values()) {
+            Histogram latencies = result.latencies().get(operation);
+            if (latencies.getTotalCount() == 0) {
+                continue;
+            }
+            all.add(latencies);
+            ObjectNode node = operationSummary(operations.putObject(operation.key()), latencies, seconds);
+            OpenModelLoadGenerator.Outcomes outcomes = result.outcomes().get(operation);
+            node.put("ok", outcomes.ok.sum());
+            node.put("rejected", outcomes.rejected.sum());
+            node.put("shed", outcomes.shed.sum());
+            node.put("errors", outcomes.errors.sum());
+        }
+        operationSummary(operations.putObject("all"), all, seconds);
+        return summary;
+    }
+
+    private static ObjectNode operationSummary(ObjectNode node, Histogram latencies, double seconds) {
+        node.put("requests", latencies.getTotalCount());
+        node.put("throughput", round(latencies.getTotalCount() / seconds));
+        ObjectNode latency = node.putObject("latencyMs");
+        for (double percentile : PERCENTILES) {
+            latency.put("p" + formatPercentile(percentile), millis(latencies.getValueAtPercentile(percentile)));
+        }
+        latency.put("max", millis(latencies.getMaxValue()));
+        return node;
+    }
+
+    /**
+     * Logs throughput and latency of every operation against the baseline, as {@code baseline -> current (change)}.
+     */
+    private void compare(ObjectNode summary, JsonNode baseline) {
+        log.info("Compared with {} ({})", baseline.path("name").asText(), baseline.path("commit").asText());
+        Iterator<Map.Entry<String, JsonNode>> operations = summary.get("operations").fields();
+        while (operations.hasNext()) {
+            Map.Entry<String, JsonNode> operation = operations.next();
+            JsonNode before = baseline.path("operations").path(operation.getKey());
+            if (before.isMissingNode()) {
+                continue;
+            }
+            JsonNode after = operation.getValue();
+            StringBuilder line = new StringBuilder(operation.getKey()).append(": throughput ")
+                    .append(change(before.path("throughput"), after.path("throughput")));
+            Iterator<Map.Entry<String, JsonNode>> latencies = after.path("latencyMs").fields();
+            while (latencies.hasNext()) {
+                Map.Entry<String, JsonNode> latency = latencies.next();
+                line.append(", ").append(latency.getKey()).append(' ')
+                        .append(change(before.path("latencyMs").path(latency.getKey()), latency.getValue()));
+            }
+            log.info("{}", line);
+        }
+    }
+
+    private static String change(JsonNode before, JsonNode after) {
+        if (!before.isNumber()) {
+            return after.asText();
+        }
+        double ratio = before.asDouble() == 0 ? 0 : (after.asDouble() - before.asDouble()) / before.asDouble();
+        return String.format("%s -> %s (%+.1f%%)", before.asText(), after.asText(), ratio * 100);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+
+    private static double millis(long micros) {
+        return round(micros / MICROS_PER_MILLI);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.bezborodov.walletservice.loadtest;
+
+import org.HdrHistogram.Histogram;
+import ru.bezborodov.walletservice.loadtest.LoadTestSettings.Operation;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Measured part of a run.
+ *
+ * @param duration  measured load
+ * @param latencies latencies of every operation in microseconds, from the time the request was due
+ * @param outcomes  responses of every operation by status
+ */
+record LoadTestResult(
+        Duration duration,
+        Map<Operation, Histogram> latencies,
+        Map<Operation, OpenModelLoadGenerator.Outcomes> outcomes) {
+}
@@ -0,0 +1,124 @@
+package ru.bezborodov.walletservice.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, read from {@code loadtest.*} system properties; the Gradle task passes
+ * {@code -Ploadtest.*} project properties through. Properties {@code loadtest.app.*} are passed to every
+ * replica of the service without the prefix, e.g. {@code -Ploadtest.app.wallet.engine=group-commit}.
+ *
+ * @param replicas       service replicas started in the process, load is spread round-robin
+ * @param wallets        wallets created before the run, with {@code initialBalance} each
+ * @param initialBalance starting balance of every wallet, high enough that withdrawals rarely run dry
+ * @param rate           requests started per second, independent of how fast responses come back
+ * @param warmUp         load before the measurement, not recorded
+ * @param duration       measured load
+ * @param mix            relative weight of every operation
+ * @param hotWallets     wallets receiving {@code hotShare} of the requests
+ * @param hotShare       fraction of the requests sent to the hot wallets
+ * @param amount         amount of every deposit and withdrawal
+ * @param maxConnections HTTP connections per replica; requests above wait for a connection, and that wait
+ *                       is part of their latency
+ * @param seed           seed of the request sequence, so runs on different commits send the same requests
+ * @param name           name of the run, its reports are written to {@code output/name}
+ * @param output         directory of the reports
+ * @param baseline       summary of an earlier run to compare with, or {@code null}
+ * @param commit         commit the run was made on, recorded in the summary
+ * @param appProperties  properties passed to the service
+ */
+record LoadTestSettings(
+        int replicas,
+        int wallets,
+        String initialBalance,
+        double rate,
+        Duration warmUp,
+        Duration duration,
+        Map<Operation, Integer> mix,
+        int hotWallets,
+        double hotShare,
+        String amount,
+        int maxConnections,
+        long seed,
+        String name,
+        Path output,
+        Path baseline,
+        String commit,
+        Map<String, String> appProperties) {
+
+    private static final String PREFIX = "loadtest.";
+    private static final String APP_PREFIX = PREFIX + "app.";
+
+    enum Operation {
+        GET_BALANCE("get"),
+        DEPOSIT("deposit"),
+        WITHDRAW("withdraw");
+
+        private final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        String key() {
+            return this.key;
+        }
+
+        static Operation of(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation in loadtest.mix: " + key);
+        }
+    }
+
+    static LoadTestSettings fromSystemProperties() {
+        String commit = property("commit", "unknown");
+        String baseline = property("baseline", "");
+        Map<String, String> appProperties = new HashMap<>();
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(APP_PREFIX))
+                .forEach(name -> appProperties.put(name.substring(APP_PREFIX.length()), System.getProperty(name)));
+        return new LoadTestSettings(
+                Integer.parseInt(property("replicas", "1")),
+                Integer.parseInt(property("wallets", "100000")),
+                property("initial-balance", "1000000000.00"),
+                Double.parseDouble(property("rate", "1000")),
+                Duration.parse("PT" + property("warm-up", "10s").toUpperCase(Locale.ROOT)),
+                Duration.parse("PT" + property("duration", "60s").toUpperCase(Locale.ROOT)),
+                parseMix(property("mix", "get:70,deposit:20,withdraw:10")),
+                Integer.parseInt(property("hot-wallets", "100")),
+                Double.parseDouble(property("hot-share", "0.5")),
+                property("amount", "1.00"),
+                Integer.parseInt(property("max-connections", "512")),
+                Long.parseLong(property("seed", "42")),
+                property("name", commit),
+                Path.of(property("output", "build/results/loadtest")),
+                baseline.isEmpty() ? null : Path.of(baseline),
+                commit,
+                appProperties);
+    }
+
+    int totalWeight() {
+        return this.mix.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] keyAndWeight = part.trim().split(":");
+            weights.put(Operation.of(keyAndWeight[0]), Integer.parseInt(keyAndWeight[1]));
+        }
+        return weights;
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+}
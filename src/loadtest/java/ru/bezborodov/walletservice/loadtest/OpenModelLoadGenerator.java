@@ -0,0 +1,189 @@
+package ru.bezborodov.walletservice.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import ru.bezborodov.walletservice.controller.payload.RequestPayload;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.loadtest.LoadTestSettings.Operation;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load: requests start at a fixed rate whether or not earlier ones have completed, and the latency
+ * of every request is measured from the time it was due, not from the time it was sent. A stalled service
+ * therefore shows up as high latency of every request due during the stall, not as one slow request followed
+ * by a lower rate (coordinated omission).
+ * <p>
+ * Latencies are recorded in HdrHistograms per operation, in microseconds; one interval histogram per operation
+ * and second is written to the histogram log, and the totals are returned.
+ */
+@Slf4j
+final class OpenModelLoadGenerator {
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadTestSettings settings;
+    private final UUID[] walletIds;
+    private final List<WebClient> clients;
+    private final Money amount;
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> totals = new EnumMap<>(Operation.class);
+    private final Map<Operation, Outcomes> outcomes = new EnumMap<>(Operation.class);
+    private final AtomicLong inFlight = new AtomicLong();
+
+    OpenModelLoadGenerator(LoadTestSettings settings, UUID[] walletIds, List<String> baseUrls) {
+        this.settings = settings;
+        this.walletIds = walletIds;
+        this.amount = Money.parse(settings.amount());
+        ConnectionProvider connections = ConnectionProvider.builder("loadtest")
+                .maxConnections(settings.maxConnections())
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(Duration.ofMinutes(1))
+                .build();
+        this.clients = baseUrls.stream()
+                .map(baseUrl -> WebClient.builder()
+                        .baseUrl(baseUrl)
+                        .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                        .build())
+                .toList();
+        for (Operation operation : Operation.values()) {
+            this.recorders.put(operation, new Recorder(HIGHEST_LATENCY_MICROS, 3));
+            this.totals.put(operation, new Histogram(HIGHEST_LATENCY_MICROS, 3));
+            this.outcomes.put(operation, new Outcomes());
+        }
+    }
+
+    LoadTestResult run(HistogramLogWriter histogramLog) {
+        SplittableRandom random = new SplittableRandom(this.settings.seed());
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / this.settings.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + this.settings.warmUp().toNanos();
+        long end = measureFrom + this.settings.duration().toNanos();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> report(histogramLog), this.settings.warmUp().toMillis() + 1000, 1000,
+                TimeUnit.MILLISECONDS);
+        long sent = 0;
+        for (long intended = start; intended < end; intended = start + (long) (++sent * intervalNanos)) {
+            long delay = intended - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            send(pickOperation(random), pickWallet(random), this.clients.get((int) (sent % this.clients.size())),
+                    intended, intended >= measureFrom);
+        }
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (this.inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        reporter.shutdownNow();
+        report(histogramLog);
+        if (this.inFlight.get() > 0) {
+            log.warn("{} requests still in flight after {}, they are not counted", this.inFlight.get(), DRAIN_TIMEOUT);
+        }
+        return new LoadTestResult(this.settings.duration(), this.totals, this.outcomes);
+    }
+
+    private void send(Operation operation, UUID walletId, WebClient client, long intended, boolean measured) {
+        WebClient.RequestHeadersSpec<?> request = switch (operation) {
+            case GET_BALANCE -> client.get().uri("/{walletId}", walletId);
+            case DEPOSIT -> client.put().bodyValue(new RequestPayload(walletId, OperationType.DEPOSIT, this.amount));
+            case WITHDRAW -> client.put().bodyValue(new RequestPayload(walletId, OperationType.WITHDRAW, this.amount));
+        };
+        this.inFlight.incrementAndGet();
+        request.exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode().value()))
+                .onErrorResume(error -> Mono.just(0))
+                .subscribe(status -> {
+                    if (measured) {
+                        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+                        this.recorders.get(operation).recordValue(Math.min(latencyMicros, HIGHEST_LATENCY_MICROS));
+                        this.outcomes.get(operation).count(status);
+                    }
+                    this.inFlight.decrementAndGet();
+                });
+    }
+
+    private Operation pickOperation(SplittableRandom random) {
+        int pick = random.nextInt(this.settings.totalWeight());
+        for (Map.Entry<Operation, Integer> weight : this.settings.mix().entrySet()) {
+            pick -= weight.getValue();
+            if (pick < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty operation mix");
+    }
+
+    /**
+     * The first {@code hotWallets} wallets get {@code hotShare} of the requests, the others share the rest.
+     */
+    private UUID pickWallet(SplittableRandom random) {
+        int hot = Math.min(this.settings.hotWallets(), this.walletIds.length);
+        if (hot > 0 && (hot == this.walletIds.length || random.nextDouble() < this.settings.hotShare())) {
+            return this.walletIds[random.nextInt(hot)];
+        }
+        return this.walletIds[hot + random.nextInt(this.walletIds.length - hot)];
+    }
+
+    private synchronized void report(HistogramLogWriter histogramLog) {
+        Histogram second = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+        for (Operation operation : Operation.values()) {
+            Histogram interval = this.recorders.get(operation).getIntervalHistogram();
+            interval.setTag(operation.key());
+            histogramLog.outputIntervalHistogram(interval);
+            this.totals.get(operation).add(interval);
+            second.add(interval);
+        }
+        if (second.getTotalCount() > 0) {
+            log.info("{} req/s, p50 {} ms, p99 {} ms, p99.9 {} ms, max {} ms, in flight {}",
+                    second.getTotalCount(), millis(second.getValueAtPercentile(50)),
+                    millis(second.getValueAtPercentile(99)), millis(second.getValueAtPercentile(99.9)),
+                    millis(second.getMaxValue()), this.inFlight.get());
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+
+    /**
+     * Responses by status: {@code ok} for 2xx, {@code shed} for 429, {@code rejected} for other 4xx such as
+     * insufficient funds, {@code errors} for 5xx and failed requests.
+     */
+    static final class Outcomes {
+        final LongAdder ok = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder shed = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        void count(int status) {
+            if (status >= 200 && status < 300) {
+                this.ok.increment();
+            } else if (status == 429) {
+                this.shed.increment();
+            } else if (status >= 400 && status < 500) {
+                this.rejected.increment();
+            } else {
+                this.errors.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.bezborodov.walletservice.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.HistogramLogWriter;
+import ru.bezborodov.walletservice.entity.Money;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Runs the service against an embedded Postgres and an in-memory Redis under open-model load and writes the
+ * reports, see {@link LoadTestSettings} for the parameters. Started by the {@code loadTest} Gradle task.
+ */
+@Slf4j
+public final class WalletLoadTest {
+
+    private WalletLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        LoadTestReport report = new LoadTestReport(settings);
+        Files.createDirectories(report.directory());
+        try (LoadTestEnvironment environment = LoadTestEnvironment.start(settings);
+             PrintStream histogramLog = new PrintStream(
+                     Files.newOutputStream(report.directory().resolve(LoadTestReport.HISTOGRAM_LOG_FILE)))) {
+            UUID[] walletIds = walletIds(settings);
+            environment.createWallets(walletIds, Money.parse(settings.initialBalance()));
+            log.info("Created {} wallets, {} req/s for {} after {} of warm-up on {} replicas",
+                    walletIds.length, settings.rate(), settings.duration(), settings.warmUp(), settings.replicas());
+            HistogramLogWriter histogramLogWriter = new HistogramLogWriter(histogramLog);
+            long startTime = System.currentTimeMillis();
+            histogramLogWriter.outputComment("[" + settings.name() + " at " + settings.commit() + "]");
+            histogramLogWriter.outputLogFormatVersion();
+            histogramLogWriter.outputStartTime(startTime);
+            histogramLogWriter.setBaseTime(startTime);
+            histogramLogWriter.outputLegend();
+            LoadTestResult result = new OpenModelLoadGenerator(settings, walletIds, environment.baseUrls())
+                    .run(histogramLogWriter);
+            report.write(result);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Wallet ids derived from the seed, so runs with the same settings use the same wallets and hot set.
+     */
+    private static UUID[] walletIds(LoadTestSettings settings) {
+        SplittableRandom random = new SplittableRandom(settings.seed());
+        UUID[] ids = new UUID[settings.wallets()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return ids;
+    }
+}
@@ -2,10 +2,12 @@ package ru.bezborodov.walletservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.web.reactive.config.EnableWebFlux;
 
 @EnableWebFlux
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class WalletServiceApplication {
 
     public static void main(String[] args) {
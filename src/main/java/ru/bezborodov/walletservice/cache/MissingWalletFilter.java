@@ -0,0 +1,123 @@
+package ru.bezborodov.walletservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.config.WalletLookupProperties;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Answers lookups of unknown wallet ids with as little I/O as possible.
+ * <p>
+ * Ids the database did not find are remembered for a short TTL and rejected without I/O. Optionally, a Bloom
+ * filter of all wallet ids marks ids that were probably never created; it is built at startup, rebuilt
+ * periodically and extended with every wallet seen through {@link #register(UUID)}. A wallet created on another
+ * replica since the last build is absent from it, so such ids skip the Redis cache but are still looked up in the
+ * database, which registers them when found. Until the first build completes, only the negative cache applies.
+ */
+@Slf4j
+@Component
+public class MissingWalletFilter {
+    private static final Object MISSING = Boolean.TRUE;
+
+    private final WalletLookupProperties properties;
+    private final WalletRepository walletRepository;
+    private final Cache<UUID, Object> missing;
+    private volatile WalletIdBloomFilter bloomFilter;
+    private volatile WalletIdBloomFilter building;
+    private Disposable refresh;
+
+    public MissingWalletFilter(WalletLookupProperties properties,
+                               WalletRepository walletRepository,
+                               MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.walletRepository = walletRepository;
+        this.missing = Caffeine.newBuilder()
+                .maximumSize(properties.negativeMaxSize())
+                .expireAfterWrite(properties.negativeTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.missing, "wallet.missing");
+    }
+
+    @PostConstruct
+    void start() {
+        if (!this.properties.bloomFilterEnabled()) {
+            return;
+        }
+        this.refresh = Flux.interval(Duration.ZERO, this.properties.bloomFilterRefreshInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> rebuild()
+                        .onErrorResume(error -> {
+                            log.error("Building wallet id Bloom filter failed", error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (this.refresh != null) {
+            this.refresh.dispose();
+        }
+    }
+
+    /**
+     * Returns whether the database recently did not find the wallet.
+     */
+    public boolean isKnownMissing(UUID id) {
+        return this.missing.getIfPresent(id) != null;
+    }
+
+    /**
+     * Returns whether the Bloom filter has never seen the wallet, so it is unlikely to be cached anywhere.
+     */
+    public boolean isLikelyMissing(UUID id) {
+        WalletIdBloomFilter filter = this.bloomFilter;
+        return filter != null && !filter.mightContain(id);
+    }
+
+    public void markMissing(UUID id) {
+        this.missing.put(id, MISSING);
+    }
+
+    public void register(UUID id) {
+        this.missing.invalidate(id);
+        WalletIdBloomFilter filter = this.bloomFilter;
+        if (filter != null) {
+            filter.add(id);
+        }
+        WalletIdBloomFilter next = this.building;
+        if (next != null) {
+            next.add(id);
+        }
+    }
+
+    Mono<Void> rebuild() {
+        return this.walletRepository.count()
+                .map(count -> new WalletIdBloomFilter(
+                        Math.max(this.properties.bloomFilterExpectedInsertions(), count * 2),
+                        this.properties.bloomFilterFalsePositiveRate()))
+                .doOnNext(filter -> this.building = filter)
+                .flatMap(filter -> this.walletRepository.findAllIds()
+                        .doOnNext(filter::add)
+                        .count()
+                        .doOnNext(count -> {
+                            this.bloomFilter = filter;
+                            this.building = null;
+                            log.info("Built wallet id Bloom filter of {} wallets", count);
+                        }))
+                .then();
+    }
+}
@@ -0,0 +1,193 @@
+package ru.bezborodov.walletservice.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveZSetOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.config.WalletCacheProperties;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Access frequency of wallets, estimated with a count-min sketch whose counts are halved every aging interval,
+ * so a wallet is hot while it is accessed at least {@code hotThreshold} times per interval.
+ * <p>
+ * Hot wallets are remembered as candidates, bounded to a few times {@code warmUpSize}, and on every aging
+ * the hottest are published to the {@code wallet:hot} sorted set shared by all replicas. Each replica adds its
+ * estimates to the shared scores, so a wallet hot on several replicas ranks above one hot on a single replica.
+ * The shared scores are halved once per aging interval by whichever replica claims that interval first, so
+ * wallets that cooled down on all replicas fall out however many replicas publish.
+ */
+@Slf4j
+@Component
+public class WalletAccessTracker {
+    static final String HOT_WALLETS_KEY = "wallet:hot";
+    static final String DECAY_LEASE_PREFIX = "wallet:hot:decay:";
+    private static final int DEPTH = 4;
+    private static final int WIDTH_BITS = 14;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+    private final WalletCacheProperties properties;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(DEPTH << WIDTH_BITS);
+    private final Map<UUID, Boolean> candidates = new ConcurrentHashMap<>();
+    private final int maxCandidates;
+    private final String instanceId = UUID.randomUUID().toString();
+    private Disposable aging;
+
+    public WalletAccessTracker(WalletCacheProperties properties,
+                               ReactiveStringRedisTemplate redisTemplate,
+                               MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.maxCandidates = Math.max(properties.warmUpSize() * 4, 1024);
+        Gauge.builder("wallet.cache.hot.wallets", this.candidates, Map::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        this.aging = Flux.interval(this.properties.agingInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> publishHottest()
+                        .onErrorResume(error -> {
+                            log.warn("Publishing the hot wallets failed: {}", error.toString());
+                            return Mono.empty();
+                        })
+                        .doFinally(signal -> age()))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (this.aging != null) {
+            this.aging.dispose();
+        }
+    }
+
+    /**
+     * Counts an access to the wallet and returns whether it is hot.
+     */
+    public boolean record(UUID id) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, this.counts.incrementAndGet(index(id, row)));
+        }
+        boolean hot = estimate >= this.properties.hotThreshold();
+        if (hot && this.candidates.size() < this.maxCandidates) {
+            this.candidates.putIfAbsent(id, Boolean.TRUE);
+        }
+        return hot;
+    }
+
+    public boolean isHot(UUID id) {
+        return estimate(id) >= this.properties.hotThreshold();
+    }
+
+    /**
+     * Marks wallets known to be hot elsewhere, such as those loaded by the warm-up, as hot on this replica.
+     */
+    public void seed(Collection<UUID> ids) {
+        int threshold = this.properties.hotThreshold();
+        for (UUID id : ids) {
+            for (int row = 0; row < DEPTH; row++) {
+                this.counts.accumulateAndGet(index(id, row), threshold, Math::max);
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} hot wallets of this replica, hottest first.
+     */
+    public List<UUID> hottest(int limit) {
+        return this.candidates.keySet().stream()
+                .sorted(Comparator.comparingInt(this::estimate).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Returns up to {@code limit} hottest wallets across all replicas, hottest first.
+     */
+    public Flux<UUID> findSharedHottest(int limit) {
+        return this.redisTemplate.opsForZSet()
+                .reverseRange(HOT_WALLETS_KEY, Range.closed(0L, limit - 1L))
+                .map(UUID::fromString);
+    }
+
+    Mono<Void> publishHottest() {
+        int limit = this.properties.warmUpSize();
+        List<UUID> hottest = hottest(limit);
+        if (hottest.isEmpty()) {
+            return Mono.empty();
+        }
+        List<ZSetOperations.TypedTuple<String>> scores = hottest.stream()
+                .map(id -> ZSetOperations.TypedTuple.of(id.toString(), (double) estimate(id)))
+                .toList();
+        ReactiveZSetOperations<String, String> zSet = this.redisTemplate.opsForZSet();
+        String publishedKey = HOT_WALLETS_KEY + ":" + this.instanceId;
+        return claimDecay()
+                .filter(Boolean::booleanValue)
+                .flatMap(claimed -> zSet.unionAndStore(HOT_WALLETS_KEY, List.of(), HOT_WALLETS_KEY,
+                        Aggregate.SUM, Weights.of(0.5)))
+                .then(this.redisTemplate.delete(publishedKey))
+                .then(zSet.addAll(publishedKey, scores))
+                .then(this.redisTemplate.expire(publishedKey, this.properties.agingInterval()))
+                .then(zSet.unionAndStore(HOT_WALLETS_KEY, List.of(publishedKey), HOT_WALLETS_KEY,
+                        Aggregate.SUM, Weights.of(1, 1)))
+                .then(this.redisTemplate.delete(publishedKey))
+                .then(zSet.removeRange(HOT_WALLETS_KEY, Range.closed(0L, -limit - 1L)))
+                .then();
+    }
+
+    /**
+     * Claims the halving of the shared scores for the current aging interval; only the first replica to publish
+     * in an interval gets it.
+     */
+    private Mono<Boolean> claimDecay() {
+        long interval = System.currentTimeMillis() / this.properties.agingInterval().toMillis();
+        return this.redisTemplate.opsForValue().setIfAbsent(DECAY_LEASE_PREFIX + interval, this.instanceId,
+                this.properties.agingInterval().multipliedBy(2));
+    }
+
+    /**
+     * Halves all counts and forgets candidates that are no longer half as hot as the threshold.
+     */
+    void age() {
+        for (int i = 0; i < this.counts.length(); i++) {
+            this.counts.updateAndGet(i, count -> count >>> 1);
+        }
+        int keepThreshold = this.properties.hotThreshold() / 2;
+        this.candidates.keySet().removeIf(id -> estimate(id) < keepThreshold);
+    }
+
+    private int estimate(UUID id) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, this.counts.get(index(id, row)));
+        }
+        return estimate;
+    }
+
+    private static int index(UUID id, int row) {
+        long hash = (id.getMostSignificantBits() ^ id.getLeastSignificantBits()) * SEEDS[row];
+        return (row << WIDTH_BITS) | (int) (hash >>> (Long.SIZE - WIDTH_BITS));
+    }
+}
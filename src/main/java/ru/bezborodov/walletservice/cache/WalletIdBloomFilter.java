@@ -0,0 +1,57 @@
+package ru.bezborodov.walletservice.cache;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of wallet ids. Never reports an added id as absent.
+ */
+final class WalletIdBloomFilter {
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    WalletIdBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long insertions = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount << 6;
+        this.hashCount = (int) Math.max(1, Math.round((double) this.bitCount / insertions * Math.log(2)));
+    }
+
+    void add(UUID id) {
+        long hash1 = mix(id.getMostSignificantBits());
+        long hash2 = mix(id.getLeastSignificantBits() ^ hash1);
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, this.bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = this.words.get(word);
+            while ((current & mask) == 0 && !this.words.compareAndSet(word, current, current | mask)) {
+                current = this.words.get(word);
+            }
+        }
+    }
+
+    boolean mightContain(UUID id) {
+        long hash1 = mix(id.getMostSignificantBits());
+        long hash2 = mix(id.getLeastSignificantBits() ^ hash1);
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, this.bitCount);
+            if ((this.words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,101 @@
+package ru.bezborodov.walletservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import ru.bezborodov.walletservice.config.NearCacheProperties;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Size-bounded in-process cache (Caffeine, W-TinyLFU eviction) in front of the Redis wallet cache.
+ * Every write published through {@link #publishInvalidation(UUID)} evicts the wallet on the other replicas.
+ */
+@Slf4j
+@Component
+public class WalletNearCache {
+    static final String INVALIDATION_CHANNEL = "wallet:invalidation";
+
+    private final NearCacheProperties properties;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final Cache<UUID, Wallet> cache;
+    private final String instanceId = UUID.randomUUID().toString();
+    private Disposable subscription;
+
+    public WalletNearCache(NearCacheProperties properties,
+                           ReactiveStringRedisTemplate redisTemplate,
+                           MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maxSize())
+                .expireAfterWrite(properties.expiration())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "wallet.near");
+    }
+
+    @PostConstruct
+    void subscribe() {
+        if (!this.properties.enabled()) {
+            return;
+        }
+        this.subscription = this.redisTemplate.listenToChannel(INVALIDATION_CHANNEL)
+                .doOnNext(message -> onInvalidation(message.getMessage()))
+                .doOnError(error -> log.warn("Near cache invalidation listener failed, resubscribing", error))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void unsubscribe() {
+        if (this.subscription != null) {
+            this.subscription.dispose();
+        }
+    }
+
+    public Wallet get(UUID id) {
+        return this.properties.enabled() ? this.cache.getIfPresent(id) : null;
+    }
+
+    public void put(Wallet wallet) {
+        if (this.properties.enabled()) {
+            this.cache.put(wallet.getId(), wallet);
+        }
+    }
+
+    public long estimatedSize() {
+        return this.cache.estimatedSize();
+    }
+
+    public void invalidate(UUID id) {
+        this.cache.invalidate(id);
+    }
+
+    public Mono<Void> publishInvalidation(UUID id) {
+        if (!this.properties.enabled()) {
+            return Mono.empty();
+        }
+        return this.redisTemplate.convertAndSend(INVALIDATION_CHANNEL, this.instanceId + ":" + id)
+                .then();
+    }
+
+    void onInvalidation(String message) {
+        int separator = message.lastIndexOf(':');
+        if (separator < 0 || message.substring(0, separator).equals(this.instanceId)) {
+            return;
+        }
+        invalidate(UUID.fromString(message.substring(separator + 1)));
+    }
+}
@@ -0,0 +1,102 @@
+package ru.bezborodov.walletservice.cache;
+
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Redis value serializer for {@link Wallet}.
+ * <p>
+ * The binary layout is: format version (1 byte), id most/least significant bits (8 + 8 bytes) and the balance
+ * in minor units as a zigzag varint (1 to 10 bytes). Entries of format version 1, which stored the balance as
+ * scale (4 bytes) and two's-complement unscaled value, and entries written as JSON by earlier versions, which
+ * start with {@code '{'}, are still readable, whichever format is configured for writing.
+ */
+public class WalletRedisSerializer implements RedisSerializer<Wallet> {
+    static final byte BINARY_FORMAT_VERSION = 2;
+    private static final byte DECIMAL_FORMAT_VERSION = 1;
+    private static final byte JSON_OBJECT_START = '{';
+    private static final int ID_HEADER_SIZE = 1 + 16;
+    private static final int DECIMAL_HEADER_SIZE = ID_HEADER_SIZE + 4;
+    private static final int MAX_VARINT_SIZE = 10;
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    private final Format writeFormat;
+    private final Jackson2JsonRedisSerializer<Wallet> jsonSerializer = new Jackson2JsonRedisSerializer<>(Wallet.class);
+
+    public WalletRedisSerializer(Format writeFormat) {
+        this.writeFormat = writeFormat;
+    }
+
+    @Override
+    public byte[] serialize(Wallet wallet) throws SerializationException {
+        if (wallet == null) {
+            return EMPTY_ARRAY;
+        }
+        if (this.writeFormat == Format.JSON) {
+            return this.jsonSerializer.serialize(wallet);
+        }
+        UUID id = wallet.getId();
+        long minorUnits = wallet.getBalance().minorUnits();
+        long zigzag = (minorUnits << 1) ^ (minorUnits >> 63);
+        int size = ID_HEADER_SIZE + varintSize(zigzag);
+        ByteBuffer buffer = ByteBuffer.allocate(size)
+                .put(BINARY_FORMAT_VERSION)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        return buffer.put((byte) zigzag).array();
+    }
+
+    @Override
+    public Wallet deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] == JSON_OBJECT_START) {
+            return this.jsonSerializer.deserialize(bytes);
+        }
+        if (bytes[0] == BINARY_FORMAT_VERSION && bytes.length > ID_HEADER_SIZE
+                && bytes.length <= ID_HEADER_SIZE + MAX_VARINT_SIZE) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+            UUID id = new UUID(buffer.getLong(), buffer.getLong());
+            long zigzag = 0;
+            for (int shift = 0; buffer.hasRemaining(); shift += 7) {
+                zigzag |= (long) (buffer.get() & 0x7F) << shift;
+            }
+            return new Wallet(id, Money.ofMinorUnits((zigzag >>> 1) ^ -(zigzag & 1)));
+        }
+        if (bytes[0] == DECIMAL_FORMAT_VERSION && bytes.length > DECIMAL_HEADER_SIZE) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+            UUID id = new UUID(buffer.getLong(), buffer.getLong());
+            int scale = buffer.getInt();
+            BigInteger unscaled = new BigInteger(bytes, DECIMAL_HEADER_SIZE, bytes.length - DECIMAL_HEADER_SIZE);
+            return new Wallet(id, Money.of(new BigDecimal(unscaled, scale)));
+        }
+        throw new SerializationException("Unsupported wallet cache entry, format version: " + bytes[0]);
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public enum Format {
+        JSON,
+        BINARY
+    }
+}
@@ -0,0 +1,18 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the real-time balance change stream.
+ *
+ * @param enabled   publishes balance changes and serves subscriptions
+ * @param heartbeat interval of keep-alive comments on idle event streams
+ */
+@ConfigurationProperties(prefix = "wallet.balance-stream")
+public record BalanceStreamProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("15s") Duration heartbeat) {
+}
@@ -0,0 +1,16 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the streaming bulk operations endpoint.
+ *
+ * @param concurrency number of operations of one upload that are applied concurrently; kept below
+ *                    {@code wallet.concurrency-limit.initial-limit}, so that one upload on an idle replica is not
+ *                    shed by the write limit
+ */
+@ConfigurationProperties(prefix = "wallet.bulk")
+public record BulkOperationProperties(
+        @DefaultValue("16") int concurrency) {
+}
@@ -0,0 +1,30 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the adaptive concurrency limits in front of balance reads and operations.
+ *
+ * @param enabled               rejects requests above the limits instead of queueing them
+ * @param initialLimit          concurrency limit of each budget at startup
+ * @param minLimit              lowest concurrency limit a budget backs off to
+ * @param maxLimit              highest concurrency limit a budget grows to
+ * @param readLatencyThreshold  read latency above which the read limit backs off
+ * @param writeLatencyThreshold operation latency above which the write limit backs off
+ * @param backoffRatio          factor applied to a limit on a slow or failed request, at most once per window
+ * @param retryAfter            delay suggested to rejected clients in {@code Retry-After}
+ */
+@ConfigurationProperties(prefix = "wallet.concurrency-limit")
+public record ConcurrencyLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("32") int initialLimit,
+        @DefaultValue("4") int minLimit,
+        @DefaultValue("512") int maxLimit,
+        @DefaultValue("50ms") Duration readLatencyThreshold,
+        @DefaultValue("100ms") Duration writeLatencyThreshold,
+        @DefaultValue("0.9") double backoffRatio,
+        @DefaultValue("1s") Duration retryAfter) {
+}
@@ -0,0 +1,20 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the group-commit engine ({@code wallet.engine=group-commit}).
+ *
+ * @param maxBatchSize        maximum number of operations committed in one transaction
+ * @param linger              how long the first operation of a batch waits for others
+ * @param maxInFlightBatches  number of batches committed concurrently
+ */
+@ConfigurationProperties(prefix = "wallet.group-commit")
+public record GroupCommitProperties(
+        @DefaultValue("128") int maxBatchSize,
+        @DefaultValue("500us") Duration linger,
+        @DefaultValue("4") int maxInFlightBatches) {
+}
@@ -0,0 +1,18 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of idempotent operations.
+ *
+ * @param ttl             how long the outcome of an idempotency key is kept
+ * @param cleanupInterval pause between removals of expired outcomes from {@code wallet.operation_dedupe}
+ */
+@ConfigurationProperties(prefix = "wallet.idempotency")
+public record IdempotencyProperties(
+        @DefaultValue("24h") Duration ttl,
+        @DefaultValue("1h") Duration cleanupInterval) {
+}
@@ -0,0 +1,21 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the ledger engine ({@code wallet.engine=ledger}).
+ *
+ * @param snapshotInterval    pause between folding new ledger operations into wallet snapshots
+ * @param snapshotConcurrency number of wallets folded concurrently
+ * @param lease               how long the replica that folds snapshots and creates partitions keeps the job
+ *                            after its last renewal; longer than {@code snapshotInterval}
+ */
+@ConfigurationProperties(prefix = "wallet.ledger")
+public record LedgerProperties(
+        @DefaultValue("5s") Duration snapshotInterval,
+        @DefaultValue("4") int snapshotConcurrency,
+        @DefaultValue("30s") Duration lease) {
+}
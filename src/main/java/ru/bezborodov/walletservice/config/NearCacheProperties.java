@@ -0,0 +1,20 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the in-process wallet cache in front of Redis.
+ *
+ * @param enabled    turns the near cache on
+ * @param maxSize    maximum number of wallets kept per replica
+ * @param expiration upper bound on staleness if an invalidation message is lost
+ */
+@ConfigurationProperties(prefix = "wallet.near-cache")
+public record NearCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("10000") long maxSize,
+        @DefaultValue("30s") Duration expiration) {
+}
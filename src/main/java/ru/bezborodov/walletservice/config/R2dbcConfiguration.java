@@ -0,0 +1,44 @@
+package ru.bezborodov.walletservice.config;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import ru.bezborodov.walletservice.entity.Money;
+
+import java.util.List;
+
+/**
+ * Maps {@link Money} to the {@code BIGINT} minor-units columns, both for entities and for query parameters.
+ */
+@Configuration
+public class R2dbcConfiguration {
+
+    @Bean
+    public R2dbcCustomConversions r2dbcCustomConversions(ConnectionFactory connectionFactory) {
+        return R2dbcCustomConversions.of(DialectResolver.getDialect(connectionFactory),
+                List.of(new MoneyReadingConverter(), new MoneyWritingConverter()));
+    }
+
+    @ReadingConverter
+    static class MoneyReadingConverter implements Converter<Long, Money> {
+
+        @Override
+        public Money convert(Long minorUnits) {
+            return Money.ofMinorUnits(minorUnits);
+        }
+    }
+
+    @WritingConverter
+    static class MoneyWritingConverter implements Converter<Money, Long> {
+
+        @Override
+        public Long convert(Money money) {
+            return money.minorUnits();
+        }
+    }
+}
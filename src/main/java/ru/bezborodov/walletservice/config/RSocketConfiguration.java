@@ -0,0 +1,32 @@
+package ru.bezborodov.walletservice.config;
+
+import jakarta.validation.Validator;
+import org.springframework.boot.autoconfigure.rsocket.RSocketMessageHandlerCustomizer;
+import org.springframework.boot.rsocket.messaging.RSocketStrategiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import ru.bezborodov.walletservice.controller.codec.WalletBinaryCodec;
+
+@Configuration
+public class RSocketConfiguration {
+
+    /**
+     * Registers the binary codec ahead of the default CBOR and JSON ones, which stay available to clients that
+     * declare another data MIME type.
+     */
+    @Bean
+    public RSocketStrategiesCustomizer walletBinaryCodecCustomizer() {
+        return strategies -> strategies
+                .encoders(encoders -> encoders.add(0, new WalletBinaryCodec.Encoder()))
+                .decoders(decoders -> decoders.add(0, new WalletBinaryCodec.Decoder()));
+    }
+
+    /**
+     * Validates {@code @Valid} payloads with the same constraints as the REST endpoints.
+     */
+    @Bean
+    public RSocketMessageHandlerCustomizer walletValidationCustomizer(Validator validator) {
+        return handler -> handler.setValidator(new SpringValidatorAdapter(validator));
+    }
+}
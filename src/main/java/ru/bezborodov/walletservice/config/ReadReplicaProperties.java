@@ -0,0 +1,33 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the read-only replica serving balance reads of the sql engine.
+ *
+ * @param enabled         routes cache misses of balance reads to the replica
+ * @param url             R2DBC url of the replica
+ * @param username        user of the replica connections
+ * @param password        password of the replica connections
+ * @param poolInitialSize connections opened at startup
+ * @param poolMaxSize     upper bound of the replica pool, independent of the primary pool
+ * @param poolMaxIdleTime idle time after which a replica connection is closed
+ * @param maxLag          replication lag above which all reads go to the primary; the last write of a wallet
+ *                        is remembered for this long plus two lag poll intervals
+ * @param lagPollInterval pause between measurements of the replication lag
+ */
+@ConfigurationProperties(prefix = "wallet.read-replica")
+public record ReadReplicaProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("r2dbc:postgresql://localhost:5430/wallet_db") String url,
+        @DefaultValue("user") String username,
+        @DefaultValue("password") String password,
+        @DefaultValue("5") int poolInitialSize,
+        @DefaultValue("20") int poolMaxSize,
+        @DefaultValue("1m") Duration poolMaxIdleTime,
+        @DefaultValue("5s") Duration maxLag,
+        @DefaultValue("500ms") Duration lagPollInterval) {
+}
@@ -0,0 +1,27 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the background job that compares the Redis wallet cache with {@code wallet.wallet}.
+ *
+ * @param enabled       runs the job on the replica holding its lease
+ * @param rowsPerSecond upper bound of the wallets compared per second, across all replicas
+ * @param pageSize      wallets read from Postgres per keyset page
+ * @param chunkSize     keys per {@code MGET}; the chunks of a page are pipelined
+ * @param passPause     pause between the end of a full pass over the table and the start of the next one
+ * @param lease         lease of the replica that runs the job; another replica resumes from the checkpoint
+ *                      when it expires
+ */
+@ConfigurationProperties(prefix = "wallet.reconciliation")
+public record ReconciliationProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("2000") int rowsPerSecond,
+        @DefaultValue("500") int pageSize,
+        @DefaultValue("100") int chunkSize,
+        @DefaultValue("10m") Duration passPause,
+        @DefaultValue("30s") Duration lease) {
+}
@@ -5,9 +5,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import ru.bezborodov.walletservice.cache.WalletRedisSerializer;
 import ru.bezborodov.walletservice.entity.Wallet;
 
 @Configuration
@@ -15,10 +15,9 @@ public class RedisConfiguration {
     
     @Bean
     public ReactiveRedisTemplate<String, Wallet> reactiveRedisTemplate(
-            ReactiveRedisConnectionFactory factory) {
+            ReactiveRedisConnectionFactory factory, WalletCacheProperties properties) {
         StringRedisSerializer keySerializer = new StringRedisSerializer();
-        Jackson2JsonRedisSerializer<Wallet> valueSerializer =
-                new Jackson2JsonRedisSerializer<>(Wallet.class);
+        WalletRedisSerializer valueSerializer = new WalletRedisSerializer(properties.serializer());
         RedisSerializationContext.RedisSerializationContextBuilder<String, Wallet> builder =
                 RedisSerializationContext.newSerializationContext(keySerializer);
         RedisSerializationContext<String, Wallet> context =
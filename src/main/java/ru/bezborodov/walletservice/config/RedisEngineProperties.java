@@ -0,0 +1,20 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the Redis-authoritative engine ({@code wallet.engine=redis}).
+ *
+ * @param flushBatchSize maximum number of stream entries persisted per flush
+ * @param flushInterval  pause between flushes
+ * @param flushLease     lease of the replica that runs the flusher; another replica takes over when it expires
+ */
+@ConfigurationProperties(prefix = "wallet.redis-engine")
+public record RedisEngineProperties(
+        @DefaultValue("500") int flushBatchSize,
+        @DefaultValue("100ms") Duration flushInterval,
+        @DefaultValue("10s") Duration flushLease) {
+}
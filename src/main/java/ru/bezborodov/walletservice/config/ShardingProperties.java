@@ -0,0 +1,28 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the sharded engine ({@code wallet.engine=sharded}).
+ *
+ * @param shards         number of virtual shards wallets are hashed to; must be the same on every replica
+ * @param lease          lease of a shard owner; another replica takes the shard over when it expires
+ * @param renewInterval  pause between lease renewals and shard rebalancing
+ * @param advertisedUrl  base URL other replicas forward operations to; derived from the host address when empty
+ * @param forwardTimeout timeout of an operation forwarded to the owner of its shard
+ * @param maxBatchSize   maximum number of operations of a shard persisted in one statement
+ * @param linger         how long the first operation of a batch waits for others
+ */
+@ConfigurationProperties(prefix = "wallet.sharding")
+public record ShardingProperties(
+        @DefaultValue("64") int shards,
+        @DefaultValue("10s") Duration lease,
+        @DefaultValue("3s") Duration renewInterval,
+        @DefaultValue("") String advertisedUrl,
+        @DefaultValue("2s") Duration forwardTimeout,
+        @DefaultValue("128") int maxBatchSize,
+        @DefaultValue("500us") Duration linger) {
+}
@@ -0,0 +1,16 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of striped wallets, whose balance is split across sub-balance rows.
+ *
+ * @param refreshInterval pause between reloads of the stripe counts restriped on other replicas
+ */
+@ConfigurationProperties(prefix = "wallet.striping")
+public record StripingProperties(
+        @DefaultValue("30s") Duration refreshInterval) {
+}
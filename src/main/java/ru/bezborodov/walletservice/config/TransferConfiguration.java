@@ -0,0 +1,18 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import ru.bezborodov.walletservice.service.WalletEngine;
+
+@Configuration
+public class TransferConfiguration {
+
+    /**
+     * Fails startup when transfers are explicitly enabled on an engine that cannot apply them.
+     */
+    public TransferConfiguration(TransferProperties properties, WalletEngine walletEngine) {
+        if (Boolean.TRUE.equals(properties.enabled()) && !walletEngine.supportsTransfers()) {
+            throw new IllegalStateException("Transfers are not supported by the "
+                    + walletEngine.getClass().getSimpleName() + "; unset wallet.transfers.enabled to run it");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of transfers and payouts.
+ *
+ * @param enabled serves the transfer and payout endpoints; when unset, transfers are served exactly when the
+ *                selected engine supports them, and {@code true} on an engine without transfers fails startup
+ */
+@ConfigurationProperties(prefix = "wallet.transfers")
+public record TransferProperties(
+        Boolean enabled) {
+
+    /**
+     * Resolves the setting for an engine that does or does not support transfers.
+     */
+    public boolean isEnabled(boolean supported) {
+        return this.enabled == null ? supported : this.enabled;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import ru.bezborodov.walletservice.cache.WalletRedisSerializer;
+
+import java.time.Duration;
+
+/**
+ * Settings of the Redis wallet cache.
+ *
+ * @param serializer           format used to write cache entries; both formats are always readable
+ * @param ttl                  expiry of hot wallets, extended on every read
+ * @param coldTtl              expiry of the other wallets
+ * @param hotThreshold         estimated accesses per aging interval from which a wallet is hot
+ * @param agingInterval        pause between halvings of the access counts, which also publish the hot wallets
+ * @param warmUpSize           number of the hottest wallets loaded into the caches before the replica is ready;
+ *                             {@code 0} turns the warm-up off
+ * @param warmUpTimeout        upper bound on the warm-up, after which the replica starts with what it loaded
+ * @param memoryReportInterval pause between reports of the cache memory footprint
+ */
+@ConfigurationProperties(prefix = "wallet.cache")
+public record WalletCacheProperties(
+        @DefaultValue("binary") WalletRedisSerializer.Format serializer,
+        @DefaultValue("1h") Duration ttl,
+        @DefaultValue("5m") Duration coldTtl,
+        @DefaultValue("8") int hotThreshold,
+        @DefaultValue("1m") Duration agingInterval,
+        @DefaultValue("1000") int warmUpSize,
+        @DefaultValue("30s") Duration warmUpTimeout,
+        @DefaultValue("1m") Duration memoryReportInterval) {
+}
@@ -0,0 +1,27 @@
+package ru.bezborodov.walletservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the guards in front of the database lookup of a wallet balance.
+ *
+ * @param negativeTtl                   how long an unknown wallet id is answered as not found without a lookup
+ * @param negativeMaxSize               maximum number of unknown wallet ids remembered per replica
+ * @param bloomFilterEnabled            looks ids absent from the in-memory filter of existing wallets up in the
+ *                                      database directly, skipping the Redis cache
+ * @param bloomFilterExpectedInsertions minimum number of wallets the filter is sized for
+ * @param bloomFilterFalsePositiveRate  share of unknown ids the filter lets through to the Redis cache
+ * @param bloomFilterRefreshInterval    how often the filter is rebuilt to pick up wallets created elsewhere
+ */
+@ConfigurationProperties(prefix = "wallet.lookup")
+public record WalletLookupProperties(
+        @DefaultValue("2s") Duration negativeTtl,
+        @DefaultValue("100000") long negativeMaxSize,
+        @DefaultValue("false") boolean bloomFilterEnabled,
+        @DefaultValue("1000000") long bloomFilterExpectedInsertions,
+        @DefaultValue("0.01") double bloomFilterFalsePositiveRate,
+        @DefaultValue("10m") Duration bloomFilterRefreshInterval) {
+}
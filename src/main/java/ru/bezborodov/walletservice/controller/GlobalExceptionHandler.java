@@ -1,5 +1,6 @@
 package ru.bezborodov.walletservice.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
@@ -9,11 +10,24 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.support.WebExchangeBindException;
 import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.exception.ConcurrencyLimitExceededException;
 import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.OperationInProgressException;
+import ru.bezborodov.walletservice.exception.OperationOutcomeUnknownException;
+import ru.bezborodov.walletservice.exception.ShardNotOwnedException;
 import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.exception.WalletRejectionException;
+
+import java.net.URI;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
+    private static final ProblemTemplate WALLET_NOT_FOUND = new ProblemTemplate(HttpStatus.NOT_FOUND,
+            URI.create("/problems/wallet-not-found"), "Wallet not found");
+    private static final ProblemTemplate INSUFFICIENT_FUNDS = new ProblemTemplate(HttpStatus.BAD_REQUEST,
+            URI.create("/problems/insufficient-funds"), "Insufficient funds");
+    private static final ProblemTemplate OPERATION_IN_PROGRESS = new ProblemTemplate(HttpStatus.CONFLICT,
+            URI.create("/problems/operation-in-progress"), "Operation in progress");
 
     @ExceptionHandler(WebExchangeBindException.class)
     public Mono<ResponseEntity<ProblemDetail>> handleWebExchangeBindException(WebExchangeBindException exception) {
@@ -28,13 +42,36 @@ public class GlobalExceptionHandler {
     }
 
     @ExceptionHandler(WalletNotFoundException.class)
-    public Mono<ResponseEntity<String>> handleWalletNotFoundException(WalletNotFoundException ex) {
-        return Mono.just(new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND));
+    public Mono<ResponseEntity<ProblemDetail>> handleWalletNotFoundException(WalletNotFoundException ex) {
+        return Mono.just(WALLET_NOT_FOUND.toResponse(ex));
     }
 
     @ExceptionHandler(InsufficientFundsException.class)
-    public Mono<ResponseEntity<String>> handleInsufficientFundsException(InsufficientFundsException ex) {
-        return Mono.just(new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST));
+    public Mono<ResponseEntity<ProblemDetail>> handleInsufficientFundsException(InsufficientFundsException ex) {
+        return Mono.just(INSUFFICIENT_FUNDS.toResponse(ex));
+    }
+
+    @ExceptionHandler(OperationInProgressException.class)
+    public Mono<ResponseEntity<ProblemDetail>> handleOperationInProgressException(OperationInProgressException ex) {
+        return Mono.just(OPERATION_IN_PROGRESS.toResponse(ex));
+    }
+
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public Mono<ResponseEntity<String>> handleConcurrencyLimitExceededException(ConcurrencyLimitExceededException ex) {
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .body(ex.getMessage()));
+    }
+
+    @ExceptionHandler(ShardNotOwnedException.class)
+    public Mono<ResponseEntity<String>> handleShardNotOwnedException(ShardNotOwnedException ex) {
+        return Mono.just(new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
+    @ExceptionHandler(OperationOutcomeUnknownException.class)
+    public Mono<ResponseEntity<String>> handleOperationOutcomeUnknownException(OperationOutcomeUnknownException ex) {
+        return Mono.just(new ResponseEntity<>(ex.getMessage(), HttpStatus.GATEWAY_TIMEOUT));
     }
 
     @ExceptionHandler(Exception.class)
@@ -42,8 +79,37 @@ public class GlobalExceptionHandler {
         return Mono.just(new ResponseEntity<>(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR));
     }
 
+    @ExceptionHandler(UnsupportedOperationException.class)
+    public Mono<ResponseEntity<String>> handleUnsupportedOperationException(UnsupportedOperationException ex) {
+        return Mono.just(new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_IMPLEMENTED));
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public Mono<ResponseEntity<String>> handleIllegalArgumentException(IllegalArgumentException ex) {
         return Mono.just(new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST));
     }
+
+    /**
+     * Constant part of the problem response of a business rejection, built once; a response only adds the
+     * rejection message as {@code detail}.
+     */
+    private record ProblemTemplate(HttpStatus status, URI type, String title, HttpHeaders headers) {
+
+        ProblemTemplate(HttpStatus status, URI type, String title) {
+            this(status, type, title, problemHeaders());
+        }
+
+        ResponseEntity<ProblemDetail> toResponse(WalletRejectionException ex) {
+            ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(this.status, ex.getMessage());
+            problemDetail.setType(this.type);
+            problemDetail.setTitle(this.title);
+            return new ResponseEntity<>(problemDetail, this.headers, this.status);
+        }
+
+        private static HttpHeaders problemHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_PROBLEM_JSON);
+            return HttpHeaders.readOnlyHttpHeaders(headers);
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package ru.bezborodov.walletservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.controller.payload.RequestPayload;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.ShardNotOwnedException;
+import ru.bezborodov.walletservice.service.ShardedWalletEngine;
+
+/**
+ * Receives operations forwarded by other replicas to the owner of their shard. An operation on a shard this
+ * replica does not serve is answered with {@code 421 Misdirected Request} without being applied.
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "sharded")
+public class ShardForwardingController {
+    private final ShardedWalletEngine shardedWalletEngine;
+
+    @PutMapping(ShardedWalletEngine.FORWARD_PATH)
+    public Mono<ResponseEntity<Wallet>> applyForwarded(@RequestBody RequestPayload payload) {
+        return this.shardedWalletEngine.applyOwned(payload.id(), payload.type(), payload.amount())
+                .map(ResponseEntity::ok)
+                .onErrorResume(ShardNotOwnedException.class,
+                        ex -> Mono.just(ResponseEntity.status(HttpStatusCode.valueOf(421)).build()));
+    }
+}
@@ -1,33 +1,160 @@
 package ru.bezborodov.walletservice.controller;
 
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.config.BalanceStreamProperties;
+import ru.bezborodov.walletservice.config.BulkOperationProperties;
+import ru.bezborodov.walletservice.controller.payload.BalancesRequestPayload;
+import ru.bezborodov.walletservice.controller.payload.OperationResultPayload;
+import ru.bezborodov.walletservice.controller.payload.PayoutRequestPayload;
 import ru.bezborodov.walletservice.controller.payload.RequestPayload;
+import ru.bezborodov.walletservice.controller.payload.TransferRequestPayload;
 import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.ConcurrencyLimitExceededException;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.metrics.WalletMetrics;
 import ru.bezborodov.walletservice.service.WalletService;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
+@Slf4j
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/v1/wallets")
 public class WalletController {
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final WalletService walletService;
+    private final BulkOperationProperties bulkOperationProperties;
+    private final WalletMetrics walletMetrics;
+    private final BalanceStreamProperties balanceStreamProperties;
+    private final Validator validator;
 
     @PutMapping
-    public Mono<ResponseEntity<Void>> performOperation(@Valid @RequestBody Mono<RequestPayload> payloadMono) {
-        return payloadMono.flatMap(payload -> this.walletService.performOperation(payload.id(),
-                        payload.type(), payload.amount()))
+    public Mono<ResponseEntity<Void>> performOperation(
+            @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody Mono<RequestPayload> payloadMono) {
+        return this.walletMetrics.timeRequestDecode(payloadMono).flatMap(payload -> applyOperation(payload,
+                        idempotencyKey != null ? idempotencyKey : payload.idempotencyKey()))
                 .then(Mono.just(ResponseEntity.noContent().build()));
     }
 
+    /**
+     * Applies a stream of operations with bounded concurrency and streams back one result per input,
+     * in input order. The upload is consumed on demand, so memory use does not grow with its size.
+     * Operations shed by the concurrency limit are reported as {@code overloaded} and may be resent. Every line
+     * is validated on its own, and a line that is invalid or fails unexpectedly gets an {@code invalid} or
+     * {@code error} result instead of ending the stream.
+     */
+    @PutMapping(path = "/bulk",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<OperationResultPayload> performOperations(@RequestBody Flux<RequestPayload> payloads) {
+        return payloads.flatMapSequential(this::performBulkOperation, this.bulkOperationProperties.concurrency());
+    }
+
+    /**
+     * Moves money between two wallets in one transaction and returns both new balances.
+     */
+    @PostMapping("/transfers")
+    public Mono<List<OperationResultPayload>> transfer(@Valid @RequestBody Mono<TransferRequestPayload> payloadMono) {
+        return payloadMono.flatMap(payload -> this.walletService.transfer(payload.fromId(),
+                        Map.of(payload.toId(), payload.amount())))
+                .map(WalletController::toResults);
+    }
+
+    /**
+     * Pays out from one wallet to many in one transaction: either every payout is applied or none is.
+     * Returns the new balances of the source and of every destination wallet.
+     */
+    @PostMapping("/payouts")
+    public Mono<List<OperationResultPayload>> payout(@Valid @RequestBody Mono<PayoutRequestPayload> payloadMono) {
+        return payloadMono.flatMap(payload -> this.walletService.transfer(payload.fromId(), payload.toCredits()))
+                .map(WalletController::toResults);
+    }
+
+    /**
+     * Returns one result per requested id, in request order: {@code ok} with the balance or {@code not_found}.
+     */
+    @PostMapping("/balances")
+    public Mono<List<OperationResultPayload>> getBalances(@Valid @RequestBody Mono<BalancesRequestPayload> payloadMono) {
+        return payloadMono.flatMap(payload -> this.walletService.findWalletBalances(payload.ids())
+                .map(wallets -> payload.ids().stream()
+                        .map(id -> {
+                            Wallet wallet = wallets.get(id);
+                            return wallet != null
+                                    ? OperationResultPayload.ok(wallet)
+                                    : OperationResultPayload.notFound(id);
+                        })
+                        .toList()));
+    }
+
     @GetMapping("/{walletId}")
     public Mono<ResponseEntity<Wallet>> getAmount(@PathVariable UUID walletId) {
         return this.walletService.findWalletBalance(walletId)
                 .map(ResponseEntity::ok);
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Streams the balance as server-sent {@code balance} events: the current one first, then every change.
+     * A slow client receives only the latest balance, and idle streams carry keep-alive comments.
+     */
+    @GetMapping(path = "/{walletId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Wallet>> streamBalance(@PathVariable UUID walletId) {
+        Flux<ServerSentEvent<Wallet>> heartbeats = Flux.interval(this.balanceStreamProperties.heartbeat())
+                .onBackpressureDrop()
+                .map(tick -> ServerSentEvent.<Wallet>builder().comment("heartbeat").build());
+        return this.walletService.streamWalletBalance(walletId)
+                .map(wallet -> ServerSentEvent.builder(wallet).event("balance").build())
+                .mergeWith(heartbeats);
+    }
+
+    private static List<OperationResultPayload> toResults(List<Wallet> wallets) {
+        return wallets.stream().map(OperationResultPayload::ok).toList();
+    }
+
+    private Mono<Wallet> applyOperation(RequestPayload payload, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return this.walletService.performOperation(payload.id(), payload.type(), payload.amount());
+        }
+        return this.walletService.performOperation(payload.id(), payload.type(), payload.amount(), idempotencyKey);
+    }
+
+    private Mono<OperationResultPayload> performBulkOperation(RequestPayload payload) {
+        Set<ConstraintViolation<RequestPayload>> violations = this.validator.validate(payload);
+        if (!violations.isEmpty()) {
+            return Mono.just(OperationResultPayload.invalid(payload.id(), payload.idempotencyKey(),
+                    violations.stream()
+                            .map(ConstraintViolation::getMessage)
+                            .sorted()
+                            .collect(Collectors.joining("; "))));
+        }
+        return applyOperation(payload, payload.idempotencyKey())
+                .map(OperationResultPayload::ok)
+                .onErrorResume(WalletNotFoundException.class,
+                        ex -> Mono.just(OperationResultPayload.notFound(payload.id())))
+                .onErrorResume(InsufficientFundsException.class,
+                        ex -> Mono.just(OperationResultPayload.insufficientFunds(payload.id())))
+                .onErrorResume(ConcurrencyLimitExceededException.class,
+                        ex -> Mono.just(OperationResultPayload.overloaded(payload.id())))
+                .onErrorResume(ex -> {
+                    log.error("Bulk operation on wallet {} failed", payload.id(), ex);
+                    return Mono.just(OperationResultPayload.failed(payload.id(), payload.idempotencyKey()));
+                });
+    }
+}
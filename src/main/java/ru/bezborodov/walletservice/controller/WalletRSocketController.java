@@ -0,0 +1,78 @@
+package ru.bezborodov.walletservice.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.controller.payload.BalancesRequestPayload;
+import ru.bezborodov.walletservice.controller.payload.PayoutRequestPayload;
+import ru.bezborodov.walletservice.controller.payload.RequestPayload;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.service.WalletService;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The {@link WalletController} operations over RSocket, for internal callers that keep one multiplexed
+ * connection open instead of an HTTP request per operation. Routes are prefixed with {@code wallets.};
+ * payloads use {@link ru.bezborodov.walletservice.controller.codec.WalletBinaryCodec} when the connection
+ * declares its MIME type, and JSON or CBOR otherwise. Failures are answered with an application error carrying
+ * the same message as the REST error response.
+ */
+@Controller
+@RequiredArgsConstructor
+@MessageMapping("wallets")
+public class WalletRSocketController {
+    private final WalletService walletService;
+
+    @MessageMapping("operation")
+    public Mono<Wallet> performOperation(@Valid @Payload RequestPayload payload) {
+        if (payload.idempotencyKey() == null) {
+            return this.walletService.performOperation(payload.id(), payload.type(), payload.amount());
+        }
+        return this.walletService.performOperation(payload.id(), payload.type(), payload.amount(),
+                payload.idempotencyKey());
+    }
+
+    @MessageMapping("balance")
+    public Mono<Wallet> getBalance(@Payload UUID walletId) {
+        return this.walletService.findWalletBalance(walletId);
+    }
+
+    /**
+     * Streams the wallets that exist among the requested ids, in request order; unknown ids are skipped.
+     */
+    @MessageMapping("balances")
+    public Flux<Wallet> getBalances(@Payload UUID[] walletIds) {
+        if (walletIds.length == 0 || walletIds.length > BalancesRequestPayload.MAX_IDS) {
+            return Flux.error(new IllegalArgumentException("Ids must contain from 1 to 1000 wallet ids"));
+        }
+        return this.walletService.findWalletBalances(Arrays.asList(walletIds))
+                .flatMapIterable(wallets -> Arrays.stream(walletIds)
+                        .map(wallets::get)
+                        .filter(Objects::nonNull)
+                        .toList());
+    }
+
+    /**
+     * Streams the source and destination wallets of an atomic payout once it is committed.
+     */
+    @MessageMapping("payouts")
+    public Flux<Wallet> payout(@Valid @Payload PayoutRequestPayload payload) {
+        return this.walletService.transfer(payload.fromId(), payload.toCredits())
+                .flatMapIterable(wallets -> wallets);
+    }
+
+    /**
+     * Streams the current balance and then every change; RSocket keep-alive frames replace the SSE heartbeats.
+     */
+    @MessageMapping("events")
+    public Flux<Wallet> streamBalance(@Payload UUID walletId) {
+        return this.walletService.streamWalletBalance(walletId);
+    }
+}
@@ -0,0 +1,37 @@
+package ru.bezborodov.walletservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.service.WalletStripes;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Operator endpoint for striped wallets: {@code GET /actuator/walletstripes} lists them, and
+ * {@code POST /actuator/walletstripes/{walletId}} with {@code {"stripes": n}} converts an existing wallet.
+ */
+@Component
+@RequiredArgsConstructor
+@Endpoint(id = "walletstripes")
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "sql", matchIfMissing = true)
+public class WalletStripesEndpoint {
+    private final WalletStripes walletStripes;
+
+    @ReadOperation
+    public Map<UUID, Integer> stripeCounts() {
+        return this.walletStripes.stripeCounts();
+    }
+
+    @WriteOperation
+    public Mono<Wallet> restripe(@Selector UUID walletId, int stripes) {
+        return this.walletStripes.restripe(walletId, stripes);
+    }
+}
@@ -0,0 +1,177 @@
+package ru.bezborodov.walletservice.controller.codec;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import ru.bezborodov.walletservice.cache.WalletRedisSerializer;
+import ru.bezborodov.walletservice.controller.payload.PayoutRequestPayload;
+import ru.bezborodov.walletservice.controller.payload.RequestPayload;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of the RSocket payloads, big-endian, amounts in minor units:
+ * <ul>
+ *     <li>{@link Wallet}: the binary layout of the Redis cache entries, see {@link WalletRedisSerializer};</li>
+ *     <li>{@link UUID}: 16 bytes, {@code UUID[]}: 16 bytes per id;</li>
+ *     <li>{@link RequestPayload}: id (16), operation type ordinal (1), amount (8), then the optional idempotency
+ *     key in UTF-8 up to the end of the payload;</li>
+ *     <li>{@link PayoutRequestPayload}: source id (16), then destination id (16) and amount (8) per payout.</li>
+ * </ul>
+ */
+public final class WalletBinaryCodec {
+    public static final MimeType MIME_TYPE = new MimeType("application", "vnd.wallet.binary");
+
+    private static final Set<Class<?>> TYPES =
+            Set.of(Wallet.class, UUID.class, UUID[].class, RequestPayload.class, PayoutRequestPayload.class);
+    private static final int ID_SIZE = 16;
+    private static final int AMOUNT_SIZE = 8;
+    private static final OperationType[] OPERATION_TYPES = OperationType.values();
+    private static final WalletRedisSerializer WALLET_SERIALIZER =
+            new WalletRedisSerializer(WalletRedisSerializer.Format.BINARY);
+
+    private WalletBinaryCodec() {
+    }
+
+    private static boolean supports(ResolvableType type) {
+        return TYPES.contains(type.toClass());
+    }
+
+    public static final class Encoder extends AbstractEncoder<Object> {
+
+        public Encoder() {
+            super(MIME_TYPE);
+        }
+
+        @Override
+        public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+            return supports(elementType) && super.canEncode(elementType, mimeType);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                       ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+            return Flux.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints));
+        }
+
+        @Override
+        public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                      MimeType mimeType, Map<String, Object> hints) {
+            return bufferFactory.wrap(toBytes(value));
+        }
+
+        private static byte[] toBytes(Object value) {
+            if (value instanceof Wallet wallet) {
+                return WALLET_SERIALIZER.serialize(wallet);
+            }
+            if (value instanceof UUID id) {
+                return putId(ByteBuffer.allocate(ID_SIZE), id).array();
+            }
+            if (value instanceof UUID[] ids) {
+                ByteBuffer buffer = ByteBuffer.allocate(ids.length * ID_SIZE);
+                for (UUID id : ids) {
+                    putId(buffer, id);
+                }
+                return buffer.array();
+            }
+            if (value instanceof RequestPayload payload) {
+                byte[] key = payload.idempotencyKey() != null
+                        ? payload.idempotencyKey().getBytes(StandardCharsets.UTF_8)
+                        : new byte[0];
+                return putId(ByteBuffer.allocate(ID_SIZE + 1 + AMOUNT_SIZE + key.length), payload.id())
+                        .put((byte) payload.type().ordinal())
+                        .putLong(payload.amount().minorUnits())
+                        .put(key)
+                        .array();
+            }
+            PayoutRequestPayload payload = (PayoutRequestPayload) value;
+            ByteBuffer buffer = putId(ByteBuffer.allocate(ID_SIZE + payload.payouts().size() * (ID_SIZE + AMOUNT_SIZE)),
+                    payload.fromId());
+            for (PayoutRequestPayload.Payout payout : payload.payouts()) {
+                putId(buffer, payout.toId()).putLong(payout.amount().minorUnits());
+            }
+            return buffer.array();
+        }
+
+        private static ByteBuffer putId(ByteBuffer buffer, UUID id) {
+            return buffer.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        }
+    }
+
+    public static final class Decoder extends AbstractDataBufferDecoder<Object> {
+
+        public Decoder() {
+            super(MIME_TYPE);
+        }
+
+        @Override
+        public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+            return supports(elementType) && super.canDecode(elementType, mimeType);
+        }
+
+        @Override
+        public Object decode(DataBuffer dataBuffer, ResolvableType targetType, MimeType mimeType,
+                             Map<String, Object> hints) {
+            byte[] bytes = new byte[dataBuffer.readableByteCount()];
+            dataBuffer.read(bytes);
+            DataBufferUtils.release(dataBuffer);
+            try {
+                return fromBytes(targetType.toClass(), bytes);
+            } catch (RuntimeException ex) {
+                throw new DecodingException("Malformed " + targetType.toClass().getSimpleName() + " payload", ex);
+            }
+        }
+
+        private static Object fromBytes(Class<?> type, byte[] bytes) {
+            if (type == Wallet.class) {
+                return WALLET_SERIALIZER.deserialize(bytes);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (type == UUID.class) {
+                return getId(buffer);
+            }
+            if (type == UUID[].class) {
+                UUID[] ids = new UUID[bytes.length / ID_SIZE];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = getId(buffer);
+                }
+                return ids;
+            }
+            if (type == RequestPayload.class) {
+                UUID id = getId(buffer);
+                OperationType operationType = OPERATION_TYPES[buffer.get()];
+                Money amount = Money.ofMinorUnits(buffer.getLong());
+                String key = buffer.hasRemaining()
+                        ? new String(bytes, buffer.position(), buffer.remaining(), StandardCharsets.UTF_8)
+                        : null;
+                return new RequestPayload(id, operationType, amount, key);
+            }
+            UUID fromId = getId(buffer);
+            List<PayoutRequestPayload.Payout> payouts = new ArrayList<>(buffer.remaining() / (ID_SIZE + AMOUNT_SIZE));
+            while (buffer.hasRemaining()) {
+                payouts.add(new PayoutRequestPayload.Payout(getId(buffer), Money.ofMinorUnits(buffer.getLong())));
+            }
+            return new PayoutRequestPayload(fromId, payouts);
+        }
+
+        private static UUID getId(ByteBuffer buffer) {
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+    }
+}
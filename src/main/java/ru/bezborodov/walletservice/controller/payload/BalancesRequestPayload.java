@@ -0,0 +1,15 @@
+package ru.bezborodov.walletservice.controller.payload;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.UUID;
+
+public record BalancesRequestPayload(
+        @NotNull(message = "Ids must not be null")
+        @Size(min = 1, max = BalancesRequestPayload.MAX_IDS, message = "Ids must contain from 1 to 1000 wallet ids")
+        List<@NotNull(message = "Id must not be null") UUID> ids) {
+
+    public static final int MAX_IDS = 1000;
+}
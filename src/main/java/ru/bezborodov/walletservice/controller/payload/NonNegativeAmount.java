@@ -0,0 +1,37 @@
+package ru.bezborodov.walletservice.controller.payload;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import jakarta.validation.Payload;
+import ru.bezborodov.walletservice.entity.Money;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotated {@link Money} must be zero or positive; {@code null} is valid.
+ */
+@Documented
+@Constraint(validatedBy = NonNegativeAmount.Validator.class)
+@Target({ElementType.METHOD, ElementType.FIELD, ElementType.ANNOTATION_TYPE, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface NonNegativeAmount {
+
+    String message() default "Amount must be greater than or equal to 0.0";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+    class Validator implements ConstraintValidator<NonNegativeAmount, Money> {
+
+        @Override
+        public boolean isValid(Money value, ConstraintValidatorContext context) {
+            return value == null || !value.isNegative();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.bezborodov.walletservice.controller.payload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonValue;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.util.UUID;
+
+/**
+ * Result of one operation or lookup. {@code idempotencyKey} and {@code error} are only set on {@code invalid}
+ * and {@code error} results, so a client can tell which input was not applied.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record OperationResultPayload(
+        UUID id,
+        Status status,
+        Money balance,
+        String idempotencyKey,
+        String error) {
+
+    public static OperationResultPayload ok(Wallet wallet) {
+        return new OperationResultPayload(wallet.getId(), Status.OK, wallet.getBalance(), null, null);
+    }
+
+    public static OperationResultPayload notFound(UUID id) {
+        return new OperationResultPayload(id, Status.NOT_FOUND, null, null, null);
+    }
+
+    public static OperationResultPayload insufficientFunds(UUID id) {
+        return new OperationResultPayload(id, Status.INSUFFICIENT_FUNDS, null, null, null);
+    }
+
+    public static OperationResultPayload overloaded(UUID id) {
+        return new OperationResultPayload(id, Status.OVERLOADED, null, null, null);
+    }
+
+    public static OperationResultPayload invalid(UUID id, String idempotencyKey, String error) {
+        return new OperationResultPayload(id, Status.INVALID, null, idempotencyKey, error);
+    }
+
+    public static OperationResultPayload failed(UUID id, String idempotencyKey) {
+        return new OperationResultPayload(id, Status.ERROR, null, idempotencyKey, null);
+    }
+
+    public enum Status {
+        OK("ok"),
+        NOT_FOUND("not_found"),
+        INSUFFICIENT_FUNDS("insufficient_funds"),
+        OVERLOADED("overloaded"),
+        INVALID("invalid"),
+        ERROR("error");
+
+        private final String status;
+
+        Status(String status) {
+            this.status = status;
+        }
+
+        @JsonValue
+        public String getStatus() {
+            return status;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ru.bezborodov.walletservice.controller.payload;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import ru.bezborodov.walletservice.entity.Money;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public record PayoutRequestPayload(
+        @NotNull(message = "Source id must not be null")
+        UUID fromId,
+        @NotNull(message = "Payouts must not be null")
+        @Size(min = 1, max = PayoutRequestPayload.MAX_PAYOUTS, message = "Payouts must contain from 1 to 1000 entries")
+        List<@NotNull(message = "Payout must not be null") @Valid Payout> payouts) {
+
+    public static final int MAX_PAYOUTS = 1000;
+
+    public record Payout(
+            @NotNull(message = "Destination id must not be null")
+            UUID toId,
+            @NotNull(message = "Amount must not be null")
+            @NonNegativeAmount(message = "Amount must be greater than or equal to 0.0")
+            Money amount) {
+    }
+
+    /**
+     * Returns the amount per destination wallet in request order, adding up payouts to the same wallet.
+     */
+    public Map<UUID, Money> toCredits() {
+        Map<UUID, Money> credits = new LinkedHashMap<>();
+        for (Payout payout : this.payouts) {
+            credits.merge(payout.toId(), payout.amount(), Money::plus);
+        }
+        return credits;
+    }
+}
@@ -1,10 +1,10 @@
 package ru.bezborodov.walletservice.controller.payload;
 
-import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import ru.bezborodov.walletservice.entity.Money;
 import ru.bezborodov.walletservice.entity.OperationType;
 
-import java.math.BigDecimal;
 import java.util.UUID;
 
 public record RequestPayload(
@@ -13,6 +13,12 @@ public record RequestPayload(
         @NotNull(message = "Operation type must not be null")
         OperationType type,
         @NotNull(message = "Amount must not be null")
-        @DecimalMin(value = "0.0", message = "Amount must be greater than or equal to 0.0")
-        BigDecimal amount) {
+        @NonNegativeAmount(message = "Amount must be greater than or equal to 0.0")
+        Money amount,
+        @Size(min = 1, max = 128, message = "Idempotency key must be from 1 to 128 characters long")
+        String idempotencyKey) {
+
+    public RequestPayload(UUID id, OperationType type, Money amount) {
+        this(id, type, amount, null);
+    }
 }
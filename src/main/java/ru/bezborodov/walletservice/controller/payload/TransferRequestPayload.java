@@ -0,0 +1,16 @@
+package ru.bezborodov.walletservice.controller.payload;
+
+import jakarta.validation.constraints.NotNull;
+import ru.bezborodov.walletservice.entity.Money;
+
+import java.util.UUID;
+
+public record TransferRequestPayload(
+        @NotNull(message = "Source id must not be null")
+        UUID fromId,
+        @NotNull(message = "Destination id must not be null")
+        UUID toId,
+        @NotNull(message = "Amount must not be null")
+        @NonNegativeAmount(message = "Amount must be greater than or equal to 0.0")
+        Money amount) {
+}
@@ -0,0 +1,189 @@
+package ru.bezborodov.walletservice.entity;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable amount of money with two decimal places, stored as a {@code long} of minor units (1/100).
+ * <p>
+ * Arithmetic is overflow-checked and throws {@link ArithmeticException} instead of wrapping around.
+ * In JSON an amount is a plain number such as {@code 1000.50}; amounts with more than two decimal places
+ * are rejected rather than rounded.
+ */
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money> {
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+    private static final long MINOR_UNITS_PER_UNIT = 100;
+    private static final int MAX_INTEGER_DIGITS = 17;
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money ofMinorUnits(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * Converts an amount with at most two decimal places. The scale and the number of integer digits are checked
+     * before rescaling, so an amount such as {@code 1e100000000} is rejected without building its digits.
+     */
+    public static Money of(BigDecimal amount) {
+        BigDecimal stripped = amount.stripTrailingZeros();
+        if (stripped.scale() > SCALE || stripped.precision() - stripped.scale() > MAX_INTEGER_DIGITS) {
+            throw new IllegalArgumentException("Amount must have at most " + SCALE
+                    + " decimal places and fit into 64 bits: " + amount);
+        }
+        try {
+            return ofMinorUnits(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Amount must have at most " + SCALE
+                    + " decimal places and fit into 64 bits: " + amount);
+        }
+    }
+
+    /**
+     * Parses a plain decimal such as {@code 1000.5} or {@code -0.05} without allocating intermediate objects;
+     * exponent notation such as {@code 1.5E3} goes through {@link #of(BigDecimal)}.
+     */
+    public static Money parse(CharSequence text) {
+        int length = text.length();
+        int index = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            index++;
+        }
+        long units = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        try {
+            for (; index < length; index++) {
+                char c = text.charAt(index);
+                if (c == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                    continue;
+                }
+                if (c == 'e' || c == 'E') {
+                    return of(new BigDecimal(text.toString()));
+                }
+                if (c < '0' || c > '9') {
+                    throw new IllegalArgumentException("Invalid amount: " + text);
+                }
+                digits++;
+                if (fractionDigits == SCALE) {
+                    if (c != '0') {
+                        throw new IllegalArgumentException("Amount must have at most " + SCALE
+                                + " decimal places: " + text);
+                    }
+                    continue;
+                }
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+                units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+            }
+            for (int scale = Math.max(fractionDigits, 0); scale < SCALE; scale++) {
+                units = Math.multiplyExact(units, 10);
+            }
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Amount does not fit into 64 bits: " + text);
+        }
+        if (digits == 0) {
+            throw new IllegalArgumentException("Invalid amount: " + text);
+        }
+        return ofMinorUnits(negative ? -units : units);
+    }
+
+    public long minorUnits() {
+        return this.minorUnits;
+    }
+
+    public Money plus(Money other) {
+        return ofMinorUnits(Math.addExact(this.minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinorUnits(Math.subtractExact(this.minorUnits, other.minorUnits));
+    }
+
+    public Money negate() {
+        return ofMinorUnits(Math.negateExact(this.minorUnits));
+    }
+
+    public int signum() {
+        return Long.signum(this.minorUnits);
+    }
+
+    public boolean isNegative() {
+        return this.minorUnits < 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(this.minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(this.minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof Money money && this.minorUnits == money.minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        long units = this.minorUnits / MINOR_UNITS_PER_UNIT;
+        long cents = Math.abs(this.minorUnits % MINOR_UNITS_PER_UNIT);
+        String sign = this.minorUnits < 0 && units == 0 ? "-" : "";
+        return sign + units + (cents < 10 ? ".0" : ".") + cents;
+    }
+
+    public static final class Serializer extends JsonSerializer<Money> {
+
+        @Override
+        public void serialize(Money money, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(money.toString());
+        }
+    }
+
+    public static final class Deserializer extends JsonDeserializer<Money> {
+
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT
+                    && token != JsonToken.VALUE_STRING) {
+                return (Money) context.handleUnexpectedToken(Money.class, parser);
+            }
+            String text = parser.getText();
+            try {
+                return parse(text);
+            } catch (IllegalArgumentException ex) {
+                throw context.weirdStringException(text, Money.class, ex.getMessage());
+            }
+        }
+    }
+}
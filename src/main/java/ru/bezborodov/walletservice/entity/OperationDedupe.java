@@ -0,0 +1,28 @@
+package ru.bezborodov.walletservice.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("operation_dedupe")
+public class OperationDedupe {
+
+    @Id
+    private String idempotencyKey;
+
+    private UUID walletId;
+
+    private String status;
+
+    private Money balance;
+
+    private OffsetDateTime createdAt;
+}
@@ -0,0 +1,19 @@
+package ru.bezborodov.walletservice.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("shard_epoch")
+public class ShardEpoch {
+
+    @Id
+    private Integer shard;
+
+    private long epoch;
+}
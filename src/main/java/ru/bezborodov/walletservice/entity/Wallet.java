@@ -1,12 +1,14 @@
 package ru.bezborodov.walletservice.entity;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
 import org.springframework.data.relational.core.mapping.Table;
 
-import java.math.BigDecimal;
 import java.util.UUID;
 
 @Data
@@ -18,5 +20,18 @@ public class Wallet {
     @Id
     private UUID id;
 
-    private BigDecimal balance;
+    private Money balance;
+
+    /**
+     * Increases with every committed change of this wallet's balance, or {@code null} when the engine cannot
+     * order the change, e.g. on a striped wallet. Only returned by writes; it is not a column.
+     */
+    @ReadOnlyProperty
+    @EqualsAndHashCode.Exclude
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
+
+    public Wallet(UUID id, Money balance) {
+        this(id, balance, null);
+    }
 }
@@ -0,0 +1,26 @@
+package ru.bezborodov.walletservice.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("wallet_operation")
+public class WalletOperation {
+
+    @Id
+    private Long id;
+
+    private UUID walletId;
+
+    private Money amount;
+
+    private OffsetDateTime createdAt;
+}
@@ -0,0 +1,21 @@
+package ru.bezborodov.walletservice.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("wallet_stripe")
+public class WalletStripe {
+
+    private UUID walletId;
+
+    private int stripe;
+
+    private Money balance;
+}
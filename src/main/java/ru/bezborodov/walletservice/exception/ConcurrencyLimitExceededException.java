@@ -0,0 +1,16 @@
+package ru.bezborodov.walletservice.exception;
+
+import java.time.Duration;
+
+public class ConcurrencyLimitExceededException extends WalletRejectionException {
+    private final Duration retryAfter;
+
+    public ConcurrencyLimitExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
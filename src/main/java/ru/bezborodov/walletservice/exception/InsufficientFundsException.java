@@ -1,6 +1,6 @@
 package ru.bezborodov.walletservice.exception;
 
-public class InsufficientFundsException extends RuntimeException{
+public class InsufficientFundsException extends WalletRejectionException {
     public InsufficientFundsException(String message) {
         super(message);
     }
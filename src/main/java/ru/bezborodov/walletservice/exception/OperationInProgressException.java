@@ -0,0 +1,7 @@
+package ru.bezborodov.walletservice.exception;
+
+public class OperationInProgressException extends WalletRejectionException {
+    public OperationInProgressException(String message) {
+        super(message);
+    }
+}
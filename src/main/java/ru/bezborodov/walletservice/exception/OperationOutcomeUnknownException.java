@@ -0,0 +1,11 @@
+package ru.bezborodov.walletservice.exception;
+
+/**
+ * The operation may or may not have been applied, e.g. its owner did not answer in time. Retrying it could
+ * apply it twice, so callers must not retry it blindly.
+ */
+public class OperationOutcomeUnknownException extends RuntimeException {
+    public OperationOutcomeUnknownException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
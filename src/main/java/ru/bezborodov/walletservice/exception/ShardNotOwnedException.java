@@ -0,0 +1,7 @@
+package ru.bezborodov.walletservice.exception;
+
+public class ShardNotOwnedException extends RuntimeException {
+    public ShardNotOwnedException(String message) {
+        super(message);
+    }
+}
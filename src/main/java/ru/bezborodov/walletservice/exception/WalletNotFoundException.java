@@ -1,6 +1,6 @@
 package ru.bezborodov.walletservice.exception;
 
-public class WalletNotFoundException extends RuntimeException{
+public class WalletNotFoundException extends WalletRejectionException {
     public WalletNotFoundException(String message) {
         super(message);
     }
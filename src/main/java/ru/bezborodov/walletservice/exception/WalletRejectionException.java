@@ -0,0 +1,11 @@
+package ru.bezborodov.walletservice.exception;
+
+/**
+ * Expected business outcome that rejects an operation or a lookup. Rejections are as frequent as successes,
+ * so they are created without a stack trace and without suppressed exceptions.
+ */
+public abstract class WalletRejectionException extends RuntimeException {
+    protected WalletRejectionException(String message) {
+        super(message, null, false, false);
+    }
+}
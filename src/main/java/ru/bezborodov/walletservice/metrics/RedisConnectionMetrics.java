@@ -0,0 +1,55 @@
+package ru.bezborodov.walletservice.metrics;
+
+import io.lettuce.core.event.connection.ConnectionActivatedEvent;
+import io.lettuce.core.event.connection.ConnectionDeactivatedEvent;
+import io.lettuce.core.event.connection.ReconnectFailedEvent;
+import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis connection gauges fed from the Lettuce event bus. Command latencies are already recorded by
+ * Spring Boot as {@code lettuce.command.*}.
+ */
+@Component
+public class RedisConnectionMetrics {
+    private final ClientResources clientResources;
+    private final AtomicLong activeConnections = new AtomicLong();
+    private final Counter failedReconnects;
+    private Disposable subscription;
+
+    public RedisConnectionMetrics(ClientResources clientResources, MeterRegistry meterRegistry) {
+        this.clientResources = clientResources;
+        Gauge.builder("wallet.redis.connections.active", this.activeConnections, AtomicLong::get)
+                .register(meterRegistry);
+        this.failedReconnects = Counter.builder("wallet.redis.reconnects.failed").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void subscribe() {
+        this.subscription = this.clientResources.eventBus().get()
+                .subscribe(event -> {
+                    if (event instanceof ConnectionActivatedEvent) {
+                        this.activeConnections.incrementAndGet();
+                    } else if (event instanceof ConnectionDeactivatedEvent) {
+                        this.activeConnections.decrementAndGet();
+                    } else if (event instanceof ReconnectFailedEvent) {
+                        this.failedReconnects.increment();
+                    }
+                });
+    }
+
+    @PreDestroy
+    void unsubscribe() {
+        if (this.subscription != null) {
+            this.subscription.dispose();
+        }
+    }
+}
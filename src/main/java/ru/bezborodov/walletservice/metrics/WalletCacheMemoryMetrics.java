@@ -0,0 +1,79 @@
+package ru.bezborodov.walletservice.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.cache.WalletNearCache;
+import ru.bezborodov.walletservice.config.WalletCacheProperties;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodic report of the cache memory footprint: memory used by Redis and its number of keys, read with
+ * {@code INFO memory} and {@code DBSIZE}, and the number of near cache entries on this replica.
+ */
+@Slf4j
+@Component
+public class WalletCacheMemoryMetrics {
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final WalletNearCache walletNearCache;
+    private final WalletCacheProperties properties;
+    private final AtomicLong redisUsedMemory = new AtomicLong();
+    private final AtomicLong redisKeys = new AtomicLong();
+    private Disposable reporting;
+
+    public WalletCacheMemoryMetrics(ReactiveStringRedisTemplate redisTemplate,
+                                    WalletNearCache walletNearCache,
+                                    WalletCacheProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.walletNearCache = walletNearCache;
+        this.properties = properties;
+        Gauge.builder("wallet.cache.redis.memory", this.redisUsedMemory, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("wallet.cache.redis.keys", this.redisKeys, AtomicLong::get).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        this.reporting = Flux.interval(this.properties.memoryReportInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> report()
+                        .onErrorResume(error -> {
+                            log.warn("Reading the Redis memory footprint failed: {}", error.toString());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (this.reporting != null) {
+            this.reporting.dispose();
+        }
+    }
+
+    private Mono<Void> report() {
+        return this.redisTemplate.execute(connection -> Mono.zip(
+                        connection.serverCommands().info("memory"), connection.serverCommands().dbSize()))
+                .next()
+                .doOnNext(info -> {
+                    Properties memory = info.getT1();
+                    this.redisUsedMemory.set(Long.parseLong(memory.getProperty("used_memory", "0")));
+                    this.redisKeys.set(info.getT2());
+                    log.info("Cache footprint: redis used_memory={} ({}), keys={}; near cache entries={}",
+                            this.redisUsedMemory.get(), memory.getProperty("used_memory_human", "?"),
+                            this.redisKeys.get(), this.walletNearCache.estimatedSize());
+                })
+                .then();
+    }
+}
@@ -0,0 +1,122 @@
+package ru.bezborodov.walletservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the wallet hot paths. All meters are registered up front, so recording costs no registry lookup.
+ * <p>
+ * Timers measure from subscription to termination of the wrapped {@link Mono}, and publish histograms so that
+ * percentiles can be aggregated across replicas on the Prometheus side.
+ */
+@Component
+public class WalletMetrics {
+    private final Timer requestDecode;
+    private final Map<OperationType, Timer> operations = new EnumMap<>(OperationType.class);
+    private final Timer transfer;
+    private final Timer balanceRead;
+    private final Timer redisGet;
+    private final Timer redisSet;
+    private final Timer storageApply;
+    private final Timer storageFind;
+    private final Counter nearCacheHits;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter insufficientFunds;
+    private final Counter notFound;
+
+    public WalletMetrics(MeterRegistry registry) {
+        this.requestDecode = timer(registry, "wallet.request.decode", "stage", "decode");
+        for (OperationType type : OperationType.values()) {
+            this.operations.put(type, timer(registry, "wallet.operation", "type", type.name()));
+        }
+        this.transfer = timer(registry, "wallet.operation", "type", "TRANSFER");
+        this.balanceRead = timer(registry, "wallet.balance.read", "stage", "total");
+        this.redisGet = timer(registry, "wallet.redis", "command", "get");
+        this.redisSet = timer(registry, "wallet.redis", "command", "set");
+        this.storageApply = timer(registry, "wallet.storage", "query", "apply");
+        this.storageFind = timer(registry, "wallet.storage", "query", "find");
+        this.nearCacheHits = Counter.builder("wallet.cache.lookups").tag("result", "near_hit").register(registry);
+        this.cacheHits = Counter.builder("wallet.cache.lookups").tag("result", "hit").register(registry);
+        this.cacheMisses = Counter.builder("wallet.cache.lookups").tag("result", "miss").register(registry);
+        this.insufficientFunds = Counter.builder("wallet.rejections")
+                .tag("reason", "insufficient_funds").register(registry);
+        this.notFound = Counter.builder("wallet.rejections").tag("reason", "not_found").register(registry);
+    }
+
+    public <T> Mono<T> timeRequestDecode(Mono<T> source) {
+        return time(this.requestDecode, source);
+    }
+
+    public <T> Mono<T> timeOperation(OperationType type, Mono<T> source) {
+        return time(this.operations.get(type), source).doOnError(this::countRejection);
+    }
+
+    public <T> Mono<T> timeTransfer(Mono<T> source) {
+        return time(this.transfer, source).doOnError(this::countRejection);
+    }
+
+    public <T> Mono<T> timeBalanceRead(Mono<T> source) {
+        return time(this.balanceRead, source).doOnError(this::countRejection);
+    }
+
+    public <T> Mono<T> timeRedisGet(Mono<T> source) {
+        return time(this.redisGet, source);
+    }
+
+    public <T> Mono<T> timeRedisSet(Mono<T> source) {
+        return time(this.redisSet, source);
+    }
+
+    public <T> Mono<T> timeStorageApply(Mono<T> source) {
+        return time(this.storageApply, source);
+    }
+
+    public <T> Mono<T> timeStorageFind(Mono<T> source) {
+        return time(this.storageFind, source);
+    }
+
+    public void nearCacheHit() {
+        this.nearCacheHits.increment();
+    }
+
+    public void cacheHit() {
+        this.cacheHits.increment();
+    }
+
+    public void cacheMiss() {
+        this.cacheMisses.increment();
+    }
+
+    private void countRejection(Throwable error) {
+        if (error instanceof InsufficientFundsException) {
+            this.insufficientFunds.increment();
+        } else if (error instanceof WalletNotFoundException) {
+            this.notFound.increment();
+        }
+    }
+
+    private static Timer timer(MeterRegistry registry, String name, String tagKey, String tagValue) {
+        return Timer.builder(name)
+                .tag(tagKey, tagValue)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static <T> Mono<T> time(Timer timer, Mono<T> source) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return source.doFinally(signal -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+}
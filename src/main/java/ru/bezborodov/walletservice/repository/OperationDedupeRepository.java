@@ -0,0 +1,41 @@
+package ru.bezborodov.walletservice.repository;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationDedupe;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public interface OperationDedupeRepository extends ReactiveCrudRepository<OperationDedupe, String> {
+
+    @Query(value = "SELECT * FROM wallet.operation_dedupe WHERE idempotency_key = :key")
+    Mono<OperationDedupe> findById(@Param("key") String key);
+
+    /**
+     * Claims an idempotency key. Emits the key when it is claimed by the current transaction and completes
+     * empty when it was already used; waits for a concurrent transaction that holds the same key.
+     */
+    @Query(value = "INSERT INTO wallet.operation_dedupe (idempotency_key, wallet_id) VALUES (:key, :walletId) " +
+            "ON CONFLICT DO NOTHING RETURNING idempotency_key")
+    Mono<String> reserve(@Param("key") String key, @Param("walletId") UUID walletId);
+
+    @Query(value = "UPDATE wallet.operation_dedupe SET status = :status, balance = :balance " +
+            "WHERE idempotency_key = :key")
+    Mono<Void> complete(@Param("key") String key, @Param("status") String status, @Param("balance") Money balance);
+
+    /**
+     * Gives up a claimed key whose operation failed without an outcome, so that a retry can apply it.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM wallet.operation_dedupe WHERE idempotency_key = :key AND status IS NULL")
+    Mono<Integer> release(@Param("key") String key);
+
+    @Modifying
+    @Query(value = "DELETE FROM wallet.operation_dedupe WHERE created_at < :before")
+    Mono<Integer> deleteCreatedBefore(@Param("before") OffsetDateTime before);
+}
@@ -0,0 +1,35 @@
+package ru.bezborodov.walletservice.repository;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.ShardEpoch;
+
+import java.util.UUID;
+
+/**
+ * Fencing of shard owners. A new owner advances the epoch of its shard before serving it, and every write
+ * of an owner is conditional on its epoch, so a replica that lost its lease can no longer change balances.
+ * The flusher of the Redis engine is fenced the same way on a reserved negative shard.
+ */
+public interface ShardEpochRepository extends Repository<ShardEpoch, Integer> {
+
+    @Query(value = "INSERT INTO wallet.shard_epoch (shard, epoch) VALUES (:shard, 1) " +
+            "ON CONFLICT (shard) DO UPDATE SET epoch = wallet.shard_epoch.epoch + 1 RETURNING epoch")
+    Mono<Long> advance(@Param("shard") int shard);
+
+    /**
+     * Writes many balances of a shard in one statement; {@code balances} are in minor units, index-aligned with
+     * {@code ids}. The epoch row is share-locked, so the write either precedes a takeover or sees the new epoch
+     * and updates nothing.
+     */
+    @Modifying
+    @Query(value = "WITH e AS (SELECT shard FROM wallet.shard_epoch WHERE shard = :shard AND epoch = :epoch FOR SHARE) " +
+            "UPDATE wallet.wallet AS w SET balance = v.balance " +
+            "FROM unnest(CAST(:ids AS uuid[]), CAST(:balances AS bigint[])) AS v(id, balance) " +
+            "WHERE w.id = v.id AND EXISTS (SELECT 1 FROM e)")
+    Mono<Integer> updateBalances(@Param("shard") int shard, @Param("epoch") long epoch,
+                                 @Param("ids") UUID[] ids, @Param("balances") Long[] balances);
+}
@@ -0,0 +1,75 @@
+package ru.bezborodov.walletservice.repository;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.entity.WalletOperation;
+
+import java.util.UUID;
+
+/**
+ * Ledger queries. The balance of a wallet is its snapshot in {@code wallet.wallet.balance} plus every
+ * ledger operation after {@code snapshot_operation_id}. Writers serialize on the wallet row lock, which
+ * is taken without updating the row, so appends create no dead tuples on {@code wallet.wallet}.
+ */
+public interface WalletOperationRepository extends ReactiveCrudRepository<WalletOperation, Long> {
+
+    @Query(value = "SELECT w.id, w.balance + CAST(COALESCE((SELECT SUM(o.amount) FROM wallet.wallet_operation o " +
+            "WHERE o.wallet_id = w.id AND o.id > w.snapshot_operation_id), 0) AS BIGINT) AS balance " +
+            "FROM wallet.wallet w WHERE w.id = :id")
+    Mono<Wallet> findBalance(@Param("id") UUID id);
+
+    @Query(value = "SELECT w.id, w.balance + CAST(COALESCE((SELECT SUM(o.amount) FROM wallet.wallet_operation o " +
+            "WHERE o.wallet_id = w.id AND o.id > w.snapshot_operation_id), 0) AS BIGINT) AS balance " +
+            "FROM wallet.wallet w WHERE w.id = ANY(:ids)")
+    Flux<Wallet> findBalances(@Param("ids") UUID[] ids);
+
+    /**
+     * Serializes writers of a wallet without creating a new row version. Must run in the same
+     * transaction as, and before, {@link #appendDelta} or {@link #foldIntoSnapshot}.
+     */
+    @Query(value = "SELECT id FROM wallet.wallet WHERE id = :id FOR NO KEY UPDATE")
+    Mono<UUID> lockWallet(@Param("id") UUID id);
+
+    /**
+     * Locks several wallets like {@link #lockWallet} in id order and emits the ids of those that exist.
+     */
+    @Query(value = "SELECT id FROM wallet.wallet WHERE id = ANY(:ids) ORDER BY id FOR NO KEY UPDATE")
+    Flux<UUID> lockWallets(@Param("ids") UUID[] ids);
+
+    /**
+     * Appends {@code delta} to the ledger unless the balance would become negative.
+     * Emits the updated wallet versioned by the id of the appended operation, which follows the commit order of
+     * the wallet's writers as they hold its lock; completes empty when funds are insufficient.
+     */
+    @Query(value = "WITH b AS (SELECT w.id, w.balance + CAST(COALESCE((SELECT SUM(o.amount) " +
+            "FROM wallet.wallet_operation o WHERE o.wallet_id = w.id AND o.id > w.snapshot_operation_id), 0) " +
+            "AS BIGINT) AS balance FROM wallet.wallet w WHERE w.id = :id), " +
+            "i AS (INSERT INTO wallet.wallet_operation (wallet_id, amount) " +
+            "SELECT b.id, :delta FROM b WHERE b.balance + :delta >= 0 RETURNING id, wallet_id) " +
+            "SELECT b.id, b.balance + :delta AS balance, i.id AS version FROM b JOIN i ON i.wallet_id = b.id")
+    Mono<Wallet> appendDelta(@Param("id") UUID id, @Param("delta") Money delta);
+
+    /**
+     * Folds the operations after the snapshot of a wallet into {@code wallet.wallet.balance}.
+     */
+    @Query(value = "WITH d AS (SELECT CAST(SUM(o.amount) AS BIGINT) AS amount, MAX(o.id) AS last_id " +
+            "FROM wallet.wallet_operation o JOIN wallet.wallet w ON o.wallet_id = w.id " +
+            "WHERE w.id = :id AND o.id > w.snapshot_operation_id) " +
+            "UPDATE wallet.wallet AS t SET balance = t.balance + d.amount, snapshot_operation_id = d.last_id " +
+            "FROM d WHERE t.id = :id AND d.last_id IS NOT NULL")
+    Mono<Void> foldIntoSnapshot(@Param("id") UUID id);
+
+    @Query(value = "SELECT COALESCE(MAX(id), 0) FROM wallet.wallet_operation")
+    Mono<Long> findLastId();
+
+    @Query(value = "SELECT COALESCE(MAX(snapshot_operation_id), 0) FROM wallet.wallet")
+    Mono<Long> findLastSnapshotId();
+
+    @Query(value = "SELECT DISTINCT wallet_id FROM wallet.wallet_operation WHERE id > :fromId AND id <= :toId")
+    Flux<UUID> findWalletIdsBetween(@Param("fromId") long fromId, @Param("toId") long toId);
+}
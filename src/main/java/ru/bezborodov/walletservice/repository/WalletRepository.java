@@ -1,19 +1,80 @@
 package ru.bezborodov.walletservice.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Money;
 import ru.bezborodov.walletservice.entity.Wallet;
 
-import java.math.BigDecimal;
 import java.util.UUID;
 
 public interface WalletRepository extends ReactiveCrudRepository<Wallet, UUID> {
+    String NEXT_VERSION = "nextval('wallet.balance_version_seq')";
 
     @Query(value = "SELECT * FROM wallet.wallet  WHERE id=:id")
     Mono<Wallet> findById(@Param("id") UUID id);
 
+    @Query(value = "SELECT * FROM wallet.wallet WHERE id = ANY(:ids)")
+    Flux<Wallet> findAllByIds(@Param("ids") UUID[] ids);
+
+    @Query(value = "SELECT EXISTS(SELECT 1 FROM wallet.wallet WHERE id = :id)")
+    Mono<Boolean> existsById(@Param("id") UUID id);
+
+    @Query(value = "SELECT id FROM wallet.wallet")
+    Flux<UUID> findAllIds();
+
+    /**
+     * Keyset page of wallets with ids above {@code after} in id order, with the sub-balances of their stripes
+     * included. Each page is an index range scan, however deep into the table it starts.
+     */
+    @Query(value = WalletStripeRepository.SELECT_TOTALS + "WHERE w.id > :after ORDER BY w.id LIMIT :limit")
+    Flux<Wallet> findTotalsAfter(@Param("after") UUID after, @Param("limit") int limit);
+
     @Query(value = "UPDATE wallet.wallet SET balance = :balance WHERE id = :id")
-    Mono<Void> updateBalance(@Param("id") UUID id, @Param("balance") BigDecimal balance);
+    Mono<Void> updateBalance(@Param("id") UUID id, @Param("balance") Money balance);
+
+    /**
+     * Atomically adds {@code delta} to the balance in a single round trip.
+     * Emits the updated wallet with the sub-balances of its stripes included and a {@link #nextVersion() version}
+     * drawn under the row lock, or completes empty when the wallet does not exist or the resulting balance would
+     * become negative.
+     */
+    @Query(value = "UPDATE wallet.wallet AS w SET balance = w.balance + :delta " +
+            "WHERE w.id = :id AND w.balance + :delta >= 0 " +
+            "RETURNING w.id, w.balance + CAST(COALESCE((SELECT SUM(s.balance) FROM wallet.wallet_stripe s " +
+            "WHERE s.wallet_id = w.id), 0) AS BIGINT) AS balance, " + NEXT_VERSION + " AS version")
+    Mono<Wallet> applyDelta(@Param("id") UUID id, @Param("delta") Money delta);
+
+    /**
+     * Adds many deltas in one statement; {@code deltas} are in minor units, index-aligned with {@code ids}.
+     * Emits the updated wallets with the sub-balances of their stripes included and their versions.
+     */
+    @Query(value = "UPDATE wallet.wallet AS w SET balance = w.balance + v.delta " +
+            "FROM unnest(CAST(:ids AS uuid[]), CAST(:deltas AS bigint[])) AS v(id, delta) " +
+            "WHERE w.id = v.id " +
+            "RETURNING w.id, w.balance + CAST(COALESCE((SELECT SUM(s.balance) FROM wallet.wallet_stripe s " +
+            "WHERE s.wallet_id = w.id), 0) AS BIGINT) AS balance, " + NEXT_VERSION + " AS version")
+    Flux<Wallet> applyDeltas(@Param("ids") UUID[] ids, @Param("deltas") Long[] deltas);
+
+    @Query(value = "SELECT * FROM wallet.wallet WHERE id = ANY(:ids) ORDER BY id FOR UPDATE")
+    Flux<Wallet> lockAllById(@Param("ids") UUID[] ids);
+
+    /**
+     * Draws a balance version. Drawn while the row lock of a wallet is held, the versions of its changes follow
+     * their commit order, so the balance events of a wallet can be ordered across replicas.
+     */
+    @Query(value = "SELECT " + NEXT_VERSION)
+    Mono<Long> nextVersion();
+
+    /**
+     * Writes many balances in one statement; {@code balances} are in minor units, index-aligned with {@code ids}.
+     */
+    @Modifying
+    @Query(value = "UPDATE wallet.wallet AS w SET balance = v.balance " +
+            "FROM unnest(CAST(:ids AS uuid[]), CAST(:balances AS bigint[])) AS v(id, balance) " +
+            "WHERE w.id = v.id")
+    Mono<Integer> updateBalances(@Param("ids") UUID[] ids, @Param("balances") Long[] balances);
 }
@@ -0,0 +1,69 @@
+package ru.bezborodov.walletservice.repository;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.entity.WalletStripe;
+
+import java.util.UUID;
+
+/**
+ * Striped wallet queries. The balance of a wallet is {@code wallet.wallet.balance} plus all its rows in
+ * {@code wallet.wallet_stripe}; writers of different stripes do not contend on a row lock.
+ */
+public interface WalletStripeRepository extends Repository<WalletStripe, UUID> {
+    /**
+     * Selects {@code id} and total {@code balance} of wallets {@code w}; also run on the read replica.
+     */
+    String SELECT_TOTALS = "SELECT w.id, w.balance + CAST(COALESCE((SELECT SUM(s.balance) " +
+            "FROM wallet.wallet_stripe s WHERE s.wallet_id = w.id), 0) AS BIGINT) AS balance FROM wallet.wallet w ";
+    String FIND_TOTAL = SELECT_TOTALS + "WHERE w.id = :id";
+    String FIND_TOTALS = SELECT_TOTALS + "WHERE w.id = ANY(:ids)";
+
+    @Query(value = FIND_TOTAL)
+    Mono<Wallet> findTotal(@Param("id") UUID id);
+
+    @Query(value = FIND_TOTALS)
+    Flux<Wallet> findTotals(@Param("ids") UUID[] ids);
+
+    /**
+     * Adds {@code delta} to one stripe unless it would become negative.
+     * Emits the wallet with its total balance, or completes empty when the stripe is short or does not exist.
+     * The other stripes are read from the statement snapshot without a lock, so the total can miss the delta of
+     * a concurrent writer of another stripe; it is not cached.
+     */
+    @Query(value = "WITH s AS (UPDATE wallet.wallet_stripe SET balance = balance + :delta " +
+            "WHERE wallet_id = :id AND stripe = :stripe AND balance + :delta >= 0 " +
+            "RETURNING wallet_id, stripe, balance) " +
+            "SELECT w.id, w.balance + s.balance + CAST(COALESCE((SELECT SUM(o.balance) " +
+            "FROM wallet.wallet_stripe o WHERE o.wallet_id = s.wallet_id AND o.stripe <> s.stripe), 0) AS BIGINT) " +
+            "AS balance FROM s JOIN wallet.wallet w ON w.id = s.wallet_id")
+    Mono<Wallet> applyDelta(@Param("id") UUID id, @Param("stripe") int stripe, @Param("delta") Money delta);
+
+    /**
+     * Locks the stripes of a wallet in stripe order and emits their balances in minor units.
+     */
+    @Query(value = "SELECT balance FROM wallet.wallet_stripe WHERE wallet_id = :id ORDER BY stripe FOR UPDATE")
+    Flux<Long> lockBalances(@Param("id") UUID id);
+
+    @Modifying
+    @Query(value = "DELETE FROM wallet.wallet_stripe WHERE wallet_id = :id")
+    Mono<Integer> deleteStripes(@Param("id") UUID id);
+
+    /**
+     * Creates stripes {@code 0..balances.length - 1} of a wallet; {@code balances} are in minor units.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO wallet.wallet_stripe (wallet_id, stripe, balance) " +
+            "SELECT :id, v.ordinality - 1, v.balance " +
+            "FROM unnest(CAST(:balances AS bigint[])) WITH ORDINALITY AS v(balance, ordinality)")
+    Mono<Integer> insertStripes(@Param("id") UUID id, @Param("balances") Long[] balances);
+
+    @Query(value = "SELECT wallet_id FROM wallet.wallet_stripe")
+    Flux<UUID> findStripeWalletIds();
+}
@@ -0,0 +1,116 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import ru.bezborodov.walletservice.exception.ConcurrencyLimitExceededException;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AIMD concurrency limit of one request budget. A request that completes within the latency threshold while
+ * the limit is in use grows the limit by {@code 1 / limit}, i.e. by one per limit-sized window of requests;
+ * a slower or failed request multiplies it by the backoff ratio, at most once per window: requests that started
+ * before the last backoff do not back off again, so one latency spike costs one backoff however many requests
+ * it slowed down. Requests above the limit are rejected at once with {@link ConcurrencyLimitExceededException},
+ * so queues form in clients rather than in the connection pool.
+ */
+final class AdaptiveConcurrencyLimiter {
+    private final String budget;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final Duration retryAfter;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejections;
+    private double limit;
+    private volatile int currentLimit;
+    private long lastBackoffNanos = System.nanoTime();
+
+    AdaptiveConcurrencyLimiter(String budget,
+                               int initialLimit,
+                               int minLimit,
+                               int maxLimit,
+                               Duration latencyThreshold,
+                               double backoffRatio,
+                               Duration retryAfter,
+                               MeterRegistry registry) {
+        this.budget = budget;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.retryAfter = retryAfter;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.currentLimit = (int) this.limit;
+        Gauge.builder("wallet.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("budget", budget)
+                .register(registry);
+        Gauge.builder("wallet.concurrency.in.flight", this.inFlight, AtomicInteger::get)
+                .description("Requests currently holding a concurrency permit")
+                .tag("budget", budget)
+                .register(registry);
+        this.rejections = Counter.builder("wallet.concurrency.rejections")
+                .description("Requests rejected above the concurrency limit")
+                .tag("budget", budget)
+                .register(registry);
+    }
+
+    <T> Mono<T> limit(Mono<T> source) {
+        return Mono.defer(() -> {
+            int current = this.inFlight.incrementAndGet();
+            if (current > getLimit()) {
+                this.inFlight.decrementAndGet();
+                this.rejections.increment();
+                return Mono.error(new ConcurrencyLimitExceededException(
+                        "Too many concurrent " + this.budget + " requests", this.retryAfter));
+            }
+            long start = System.nanoTime();
+            boolean[] dropped = new boolean[1];
+            return source
+                    .doOnError(error -> dropped[0] = !(error instanceof WalletNotFoundException
+                            || error instanceof InsufficientFundsException))
+                    .doFinally(signal -> {
+                        this.inFlight.decrementAndGet();
+                        if (signal != SignalType.CANCEL) {
+                            onSample(start, System.nanoTime() - start, current, dropped[0]);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Reads the limit without taking the lock of {@link #onSample}, as every request checks it.
+     */
+    int getLimit() {
+        return this.currentLimit;
+    }
+
+    int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Adjusts the limit after a request that started at {@code startNanos} and ran with {@code inFlight} requests
+     * in flight, itself included. The limit grows only while at least half of it is used, so an idle budget does
+     * not inflate it.
+     */
+    synchronized void onSample(long startNanos, long latencyNanos, int inFlight, boolean dropped) {
+        if (dropped || latencyNanos > this.latencyThresholdNanos) {
+            if (startNanos - this.lastBackoffNanos >= 0) {
+                this.limit = Math.max(this.minLimit, this.limit * this.backoffRatio);
+                this.lastBackoffNanos = System.nanoTime();
+            }
+        } else if (inFlight * 2 >= this.limit) {
+            this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+        }
+        this.currentLimit = (int) this.limit;
+    }
+}
@@ -0,0 +1,77 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.config.ConcurrencyLimitProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * {@link WalletService} seen by the controllers: sheds load above the adaptive concurrency limits of reads and
+ * operations before it reaches the cache and the database. Balance streams are not limited, as they hold no
+ * connection while idle.
+ */
+@Primary
+@Service
+public class ConcurrencyLimitedWalletService implements WalletService {
+    private final WalletServiceImpl delegate;
+    private final ConcurrencyLimitProperties properties;
+    private final AdaptiveConcurrencyLimiter readLimiter;
+    private final AdaptiveConcurrencyLimiter writeLimiter;
+
+    public ConcurrencyLimitedWalletService(WalletServiceImpl delegate,
+                                           ConcurrencyLimitProperties properties,
+                                           MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.readLimiter = new AdaptiveConcurrencyLimiter("read", properties.initialLimit(), properties.minLimit(),
+                properties.maxLimit(), properties.readLatencyThreshold(), properties.backoffRatio(),
+                properties.retryAfter(), meterRegistry);
+        this.writeLimiter = new AdaptiveConcurrencyLimiter("write", properties.initialLimit(), properties.minLimit(),
+                properties.maxLimit(), properties.writeLatencyThreshold(), properties.backoffRatio(),
+                properties.retryAfter(), meterRegistry);
+    }
+
+    @Override
+    public Mono<Wallet> performOperation(UUID id, OperationType type, Money amount) {
+        return limit(this.writeLimiter, Mono.defer(() -> this.delegate.performOperation(id, type, amount)));
+    }
+
+    @Override
+    public Mono<Wallet> performOperation(UUID id, OperationType type, Money amount, String idempotencyKey) {
+        return limit(this.writeLimiter,
+                Mono.defer(() -> this.delegate.performOperation(id, type, amount, idempotencyKey)));
+    }
+
+    @Override
+    public Mono<List<Wallet>> transfer(UUID sourceId, Map<UUID, Money> credits) {
+        return limit(this.writeLimiter, Mono.defer(() -> this.delegate.transfer(sourceId, credits)));
+    }
+
+    @Override
+    public Mono<Wallet> findWalletBalance(UUID id) {
+        return limit(this.readLimiter, Mono.defer(() -> this.delegate.findWalletBalance(id)));
+    }
+
+    @Override
+    public Mono<Map<UUID, Wallet>> findWalletBalances(List<UUID> ids) {
+        return limit(this.readLimiter, Mono.defer(() -> this.delegate.findWalletBalances(ids)));
+    }
+
+    @Override
+    public Flux<Wallet> streamWalletBalance(UUID id) {
+        return this.delegate.streamWalletBalance(id);
+    }
+
+    private <T> Mono<T> limit(AdaptiveConcurrencyLimiter limiter, Mono<T> source) {
+        return this.properties.enabled() ? limiter.limit(source) : source;
+    }
+}
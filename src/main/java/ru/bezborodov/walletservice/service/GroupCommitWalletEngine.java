@@ -0,0 +1,197 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.bezborodov.walletservice.config.GroupCommitProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Collects concurrent operations for up to {@code linger} or {@code maxBatchSize} items and commits
+ * them in one transaction: the touched rows are locked in id order, the operations are applied in
+ * arrival order so that every caller gets its own outcome, and all new balances are written back
+ * with a single {@code UPDATE ... FROM unnest(...)}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "group-commit")
+public class GroupCommitWalletEngine implements WalletEngine {
+    private static final Sinks.EmitFailureHandler EMIT_RETRY =
+            Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100));
+
+    private final WalletRepository walletRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final GroupCommitProperties properties;
+    private final DistributionSummary batchSize;
+    private final DistributionSummary batchFillRatio;
+    private final Sinks.Many<PendingOperation> pending = Sinks.many().unicast().onBackpressureBuffer();
+
+    public GroupCommitWalletEngine(WalletRepository walletRepository,
+                                   TransactionalOperator transactionalOperator,
+                                   GroupCommitProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.walletRepository = walletRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.properties = properties;
+        this.batchSize = DistributionSummary.builder("wallet.group.commit.batch.size")
+                .description("Operations committed per transaction")
+                .register(meterRegistry);
+        this.batchFillRatio = DistributionSummary.builder("wallet.group.commit.batch.fill.ratio")
+                .description("Batch size relative to wallet.group-commit.max-batch-size")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        this.pending.asFlux()
+                .bufferTimeout(this.properties.maxBatchSize(), this.properties.linger())
+                .flatMap(this::commit, this.properties.maxInFlightBatches())
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        this.pending.tryEmitComplete();
+    }
+
+    @Override
+    public Mono<Wallet> apply(UUID id, OperationType type, Money amount) {
+        return Mono.defer(() -> {
+            PendingOperation operation = new PendingOperation(id, type, amount, Sinks.one());
+            this.pending.emitNext(operation, EMIT_RETRY);
+            return operation.result().asMono();
+        });
+    }
+
+    @Override
+    public Mono<Wallet> findWallet(UUID id) {
+        return this.walletRepository.findById(id);
+    }
+
+    @Override
+    public Flux<Wallet> findWallets(List<UUID> ids) {
+        return this.walletRepository.findAllByIds(ids.toArray(UUID[]::new));
+    }
+
+    /**
+     * Applies the transfer in its own transaction, outside the batches, with {@link WalletTransfers}; it locks
+     * rows in the same id order as the batches do.
+     */
+    @Override
+    public Flux<Wallet> transfer(UUID sourceId, Map<UUID, Money> credits) {
+        return WalletTransfers.transfer(this.walletRepository, sourceId, credits,
+                        debit -> Mono.error(
+                                new InsufficientFundsException("Insufficient funds in wallet: " + sourceId)))
+                .as(this.transactionalOperator::transactional);
+    }
+
+    @Override
+    public boolean supportsTransfers() {
+        return true;
+    }
+
+    private Mono<Void> commit(List<PendingOperation> batch) {
+        this.batchSize.record(batch.size());
+        this.batchFillRatio.record((double) batch.size() / this.properties.maxBatchSize());
+        UUID[] ids = batch.stream()
+                .map(PendingOperation::id)
+                .distinct()
+                .toArray(UUID[]::new);
+        return this.walletRepository.lockAllById(ids)
+                .collectMap(Wallet::getId, Wallet::getBalance)
+                .flatMap(balances -> this.walletRepository.nextVersion().flatMap(version -> {
+                    Map<UUID, Money> updated = new LinkedHashMap<>();
+                    List<Outcome> outcomes = applyBatch(batch, balances, updated, version);
+                    return persist(updated).thenReturn(outcomes);
+                }))
+                .as(this.transactionalOperator::transactional)
+                .doOnNext(outcomes -> outcomes.forEach(Outcome::complete))
+                .doOnError(error -> {
+                    log.error("Group commit of {} operations failed", batch.size(), error);
+                    batch.forEach(operation -> operation.result().tryEmitError(error));
+                })
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Applies the batch to the locked balances. All its changes share one version, drawn under the locks.
+     */
+    private static List<Outcome> applyBatch(List<PendingOperation> batch,
+                                            Map<UUID, Money> balances,
+                                            Map<UUID, Money> updated,
+                                            long version) {
+        List<Outcome> outcomes = new ArrayList<>(batch.size());
+        for (PendingOperation operation : batch) {
+            UUID id = operation.id();
+            Money balance = balances.get(id);
+            if (balance == null) {
+                outcomes.add(new Outcome(operation, null,
+                        new WalletNotFoundException("Wallet not found: " + id)));
+                continue;
+            }
+            long newMinorUnits;
+            try {
+                newMinorUnits = operation.type() == OperationType.WITHDRAW
+                        ? Math.subtractExact(balance.minorUnits(), operation.amount().minorUnits())
+                        : Math.addExact(balance.minorUnits(), operation.amount().minorUnits());
+            } catch (ArithmeticException ex) {
+                outcomes.add(new Outcome(operation, null, ex));
+                continue;
+            }
+            if (newMinorUnits < 0) {
+                outcomes.add(new Outcome(operation, null,
+                        new InsufficientFundsException("Insufficient funds in wallet: " + id)));
+                continue;
+            }
+            Money newBalance = Money.ofMinorUnits(newMinorUnits);
+            balances.put(id, newBalance);
+            updated.put(id, newBalance);
+            outcomes.add(new Outcome(operation, new Wallet(id, newBalance, version), null));
+        }
+        return outcomes;
+    }
+
+    private Mono<Void> persist(Map<UUID, Money> updated) {
+        if (updated.isEmpty()) {
+            return Mono.empty();
+        }
+        return this.walletRepository.updateBalances(updated.keySet().toArray(UUID[]::new),
+                        updated.values().stream().map(Money::minorUnits).toArray(Long[]::new))
+                .then();
+    }
+
+    private record PendingOperation(UUID id, OperationType type, Money amount, Sinks.One<Wallet> result) {
+    }
+
+    private record Outcome(PendingOperation operation, Wallet wallet, RuntimeException error) {
+
+        void complete() {
+            if (this.error != null) {
+                this.operation.result().tryEmitError(this.error);
+            } else {
+                this.operation.result().tryEmitValue(this.wallet);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package ru.bezborodov.walletservice.service;
+
+import io.r2dbc.spi.R2dbcException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.config.LedgerProperties;
+import ru.bezborodov.walletservice.repository.WalletOperationRepository;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background maintenance of the ledger engine.
+ * <p>
+ * Folds the ledger operations appended since the previous run into the snapshots of the affected wallets,
+ * and keeps monthly partitions of {@code wallet.wallet_operation} created ahead of time. Folding is only an
+ * optimization of {@code findWallet}: a wallet that is not folded still reads correctly as snapshot + delta.
+ * <p>
+ * Only the replica holding the lease folds and creates partitions; it renews and releases the lease atomically in
+ * Redis, and a new holder resumes folding after the newest snapshot. Every replica still creates the partitions it
+ * needs at startup, so partition creation tolerates a concurrent replica creating the same partition.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "ledger")
+public class LedgerSnapshotter {
+    static final String LEASE_KEY = "wallet:ledger:maintenance:lease";
+    private static final Duration PARTITION_CHECK_INTERVAL = Duration.ofHours(1);
+    private static final RedisScript<Long> RENEW_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/renew-lease.lua"), Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/release-lease.lua"), Long.class);
+    /**
+     * {@code duplicate_table}, and {@code unique_violation} on the catalog when two sessions create the same
+     * partition at once despite {@code IF NOT EXISTS}.
+     */
+    private static final Set<String> CONCURRENTLY_CREATED = Set.of("42P07", "23505");
+    private static final String CREATE_PARTITION_QUERY =
+            "CREATE TABLE IF NOT EXISTS wallet.wallet_operation_y%04dm%02d PARTITION OF wallet.wallet_operation " +
+                    "FOR VALUES FROM ('%s 00:00:00+00') TO ('%s 00:00:00+00')";
+
+    private final WalletOperationRepository walletOperationRepository;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final LedgerProperties properties;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong lastScannedId = new AtomicLong();
+    private Disposable snapshots;
+    private Disposable partitions;
+
+    @PostConstruct
+    void start() {
+        ensurePartitions().block();
+        this.snapshots = Flux.interval(this.properties.snapshotInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> acquireLease()
+                        .filter(Boolean::booleanValue)
+                        .flatMap(leader -> snapshot())
+                        .onErrorResume(error -> {
+                            log.error("Folding wallet ledger into snapshots failed", error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+        this.partitions = Flux.interval(PARTITION_CHECK_INTERVAL)
+                .onBackpressureDrop()
+                .concatMap(tick -> acquireLease()
+                        .filter(Boolean::booleanValue)
+                        .flatMap(leader -> ensurePartitions())
+                        .onErrorResume(error -> {
+                            log.error("Creating wallet ledger partitions failed", error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (this.snapshots != null) {
+            this.snapshots.dispose();
+        }
+        if (this.partitions != null) {
+            this.partitions.dispose();
+        }
+        this.redisTemplate.execute(RELEASE_SCRIPT, List.of(LEASE_KEY), List.of(this.instanceId))
+                .then()
+                .onErrorResume(error -> {
+                    log.warn("Releasing the ledger maintenance lease failed: {}", error.toString());
+                    return Mono.empty();
+                })
+                .block(this.properties.lease());
+    }
+
+    /**
+     * Takes the lease when it is free, resuming after the newest snapshot, or renews the lease this replica holds.
+     */
+    Mono<Boolean> acquireLease() {
+        return this.redisTemplate.opsForValue()
+                .setIfAbsent(LEASE_KEY, this.instanceId, this.properties.lease())
+                .flatMap(acquired -> {
+                    if (acquired) {
+                        return this.walletOperationRepository.findLastSnapshotId()
+                                .doOnNext(lastId -> {
+                                    this.lastScannedId.set(lastId);
+                                    log.info("Acquired ledger maintenance lease, folding after operation {}", lastId);
+                                })
+                                .thenReturn(true);
+                    }
+                    return this.redisTemplate.execute(RENEW_SCRIPT, List.of(LEASE_KEY),
+                                    List.of(this.instanceId, Long.toString(this.properties.lease().toMillis())))
+                            .next()
+                            .map(renewed -> renewed == 1);
+                });
+    }
+
+    Mono<Void> snapshot() {
+        long fromId = this.lastScannedId.get();
+        return this.walletOperationRepository.findLastId()
+                .filter(toId -> toId > fromId)
+                .flatMap(toId -> this.walletOperationRepository.findWalletIdsBetween(fromId, toId)
+                        .flatMap(this::fold, this.properties.snapshotConcurrency())
+                        .count()
+                        .doOnNext(folded -> {
+                            this.lastScannedId.set(toId);
+                            log.debug("Folded ledger operations up to {} into {} wallet snapshots", toId, folded);
+                        }))
+                .then();
+    }
+
+    private Mono<UUID> fold(UUID walletId) {
+        return this.walletOperationRepository.lockWallet(walletId)
+                .flatMap(lockedId -> this.walletOperationRepository.foldIntoSnapshot(walletId).thenReturn(lockedId))
+                .as(this.transactionalOperator::transactional);
+    }
+
+    private Mono<Void> ensurePartitions() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        return Flux.just(current, current.plusMonths(1))
+                .concatMap(month -> this.databaseClient.sql(String.format(CREATE_PARTITION_QUERY,
+                                month.getYear(), month.getMonthValue(), month.atDay(1), month.plusMonths(1).atDay(1)))
+                        .then()
+                        .onErrorResume(LedgerSnapshotter::isConcurrentlyCreated, error -> {
+                            log.debug("Ledger partition for {} was created concurrently", month);
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private static boolean isConcurrentlyCreated(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof R2dbcException r2dbcException) {
+                return CONCURRENTLY_CREATED.contains(r2dbcException.getSqlState());
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,89 @@
+package ru.bezborodov.walletservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.WalletOperationRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Engine that appends every operation to the {@code wallet.wallet_operation} ledger instead of updating
+ * the wallet row. {@link LedgerSnapshotter} periodically folds the ledger into {@code wallet.wallet.balance}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "ledger")
+public class LedgerWalletEngine implements WalletEngine {
+    private final WalletOperationRepository walletOperationRepository;
+
+    @Override
+    @Transactional
+    public Mono<Wallet> apply(UUID id, OperationType type, Money amount) {
+        Money delta = type == OperationType.WITHDRAW ? amount.negate() : amount;
+        return this.walletOperationRepository.lockWallet(id)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(new WalletNotFoundException("Wallet not found: " + id))))
+                .flatMap(lockedId -> this.walletOperationRepository.appendDelta(id, delta)
+                        .switchIfEmpty(Mono.defer(() -> Mono.error(
+                                new InsufficientFundsException("Insufficient funds in wallet: " + id)))));
+    }
+
+    /**
+     * Locks all wallets of the transfer in id order, so opposite transfers wait for each other instead of
+     * deadlocking, then appends the debit and every credit to the ledger.
+     */
+    @Override
+    @Transactional
+    public Flux<Wallet> transfer(UUID sourceId, Map<UUID, Money> credits) {
+        Money total = credits.values().stream().reduce(Money.ZERO, Money::plus);
+        List<UUID> ids = new ArrayList<>(credits.size() + 1);
+        ids.add(sourceId);
+        ids.addAll(credits.keySet());
+        return this.walletOperationRepository.lockWallets(ids.toArray(UUID[]::new))
+                .collectList()
+                .flatMapMany(locked -> {
+                    for (UUID id : ids) {
+                        if (!locked.contains(id)) {
+                            return Flux.<Wallet>error(new WalletNotFoundException("Wallet not found: " + id));
+                        }
+                    }
+                    return this.walletOperationRepository.appendDelta(sourceId, total.negate())
+                            .switchIfEmpty(Mono.defer(() -> Mono.error(
+                                    new InsufficientFundsException("Insufficient funds in wallet: " + sourceId))))
+                            .concatWith(Flux.fromIterable(credits.entrySet())
+                                    .concatMap(credit -> this.walletOperationRepository
+                                            .appendDelta(credit.getKey(), credit.getValue())));
+                });
+    }
+
+    @Override
+    public boolean supportsTransfers() {
+        return true;
+    }
+
+    @Override
+    public boolean joinsCallerTransaction() {
+        return true;
+    }
+
+    @Override
+    public Mono<Wallet> findWallet(UUID id) {
+        return this.walletOperationRepository.findBalance(id);
+    }
+
+    @Override
+    public Flux<Wallet> findWallets(List<UUID> ids) {
+        return this.walletOperationRepository.findBalances(ids.toArray(UUID[]::new));
+    }
+}
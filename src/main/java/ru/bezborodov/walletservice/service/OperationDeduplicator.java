@@ -0,0 +1,221 @@
+package ru.bezborodov.walletservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.config.IdempotencyProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationDedupe;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.OperationInProgressException;
+import ru.bezborodov.walletservice.exception.OperationOutcomeUnknownException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.OperationDedupeRepository;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Makes operations idempotent per client-supplied key.
+ * <p>
+ * The key is claimed in {@code wallet.operation_dedupe} together with the outcome. With an engine that
+ * {@link WalletEngine#joinsCallerTransaction() joins the caller's transaction} ({@code sql}, {@code ledger}) the
+ * claim, the balance change and the outcome commit together, so a key is applied at most once, and a concurrent
+ * request with the same key waits for that transaction and replays its outcome.
+ * <p>
+ * The {@code group-commit}, {@code redis} and {@code sharded} engines apply the operation in their own batch or
+ * script, possibly on another replica. Holding a connection across such an operation would let keyed requests
+ * take every pooled connection while their batches wait for one, so the key is claimed and completed in two short
+ * transactions around the operation instead. A concurrent request with the same key is rejected with
+ * {@link OperationInProgressException} meanwhile. An operation that fails gives up its claim, unless its
+ * {@link OperationOutcomeUnknownException outcome is unknown}; such a key, like one whose process stopped after
+ * the operation was applied and before the outcome was recorded, stays claimed without an outcome until it
+ * expires, so the operation is not applied twice but is not replayed either.
+ * <p>
+ * A Redis {@code SET NX} in front of the table is the only extra round trip for new keys; replays are answered
+ * from Redis, or from the table when Redis has no outcome yet, without touching the wallet.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OperationDeduplicator {
+    static final String KEY_PREFIX = "idempotency:";
+    static final int MAX_KEY_LENGTH = 128;
+    private static final String PENDING = "pending";
+
+    private final OperationDedupeRepository operationDedupeRepository;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final TransactionalOperator transactionalOperator;
+    private final IdempotencyProperties properties;
+    private final WalletEngine walletEngine;
+    private Disposable cleanup;
+
+    @PostConstruct
+    void start() {
+        this.cleanup = Flux.interval(this.properties.cleanupInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> this.operationDedupeRepository
+                        .deleteCreatedBefore(OffsetDateTime.now().minus(this.properties.ttl()))
+                        .doOnNext(deleted -> log.debug("Removed {} expired idempotency keys", deleted))
+                        .onErrorResume(error -> {
+                            log.error("Removing expired idempotency keys failed", error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (this.cleanup != null) {
+            this.cleanup.dispose();
+        }
+    }
+
+    /**
+     * Runs {@code operation} once per {@code key} and replays its outcome afterwards.
+     * {@code onApplied} runs after the commit, only for the execution that applied the operation.
+     */
+    public Mono<Wallet> execute(String key, UUID walletId, Mono<Wallet> operation,
+                                Function<Wallet, Mono<Wallet>> onApplied) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return Mono.error(new IllegalArgumentException(
+                    "Idempotency key must be from 1 to " + MAX_KEY_LENGTH + " characters long"));
+        }
+        String redisKey = KEY_PREFIX + key;
+        ReactiveValueOperations<String, String> values = this.redisTemplate.opsForValue();
+        return values.setIfAbsent(redisKey, PENDING, this.properties.ttl())
+                .flatMap(firstSeen -> {
+                    if (firstSeen) {
+                        return executeOnce(key, walletId, operation);
+                    }
+                    return values.get(redisKey)
+                            .filter(outcome -> !PENDING.equals(outcome))
+                            .map(outcome -> new Execution(Outcome.decode(outcome), false, true))
+                            .switchIfEmpty(Mono.defer(() -> executeOnce(key, walletId, operation)));
+                })
+                .flatMap(execution -> {
+                    Outcome outcome = execution.outcome();
+                    if (!outcome.walletId().equals(walletId)) {
+                        return Mono.error(new IllegalArgumentException(
+                                "Idempotency key was already used for another wallet: " + key));
+                    }
+                    if (!execution.cached()) {
+                        cacheOutcome(redisKey, outcome);
+                    }
+                    if (execution.applied() && outcome.status() == Status.OK) {
+                        return onApplied.apply(outcome.toWallet());
+                    }
+                    return outcome.toMono();
+                });
+    }
+
+    private Mono<Execution> executeOnce(String key, UUID walletId, Mono<Wallet> operation) {
+        if (this.walletEngine.joinsCallerTransaction()) {
+            return this.operationDedupeRepository.reserve(key, walletId)
+                    .flatMap(reserved -> applyOperation(walletId, operation)
+                            .flatMap(outcome -> completeKey(key, outcome)))
+                    .switchIfEmpty(Mono.defer(() -> findExecution(key)))
+                    .as(this.transactionalOperator::transactional);
+        }
+        return this.operationDedupeRepository.reserve(key, walletId)
+                .as(this.transactionalOperator::transactional)
+                .flatMap(reserved -> applyOperation(walletId, operation)
+                        .onErrorResume(error -> !(error instanceof OperationOutcomeUnknownException),
+                                error -> this.operationDedupeRepository.release(key)
+                                .as(this.transactionalOperator::transactional)
+                                .then(Mono.error(error)))
+                        .flatMap(outcome -> completeKey(key, outcome)
+                                .as(this.transactionalOperator::transactional)))
+                .switchIfEmpty(Mono.defer(() -> findExecution(key)));
+    }
+
+    private static Mono<Outcome> applyOperation(UUID walletId, Mono<Wallet> operation) {
+        return operation
+                .map(Outcome::applied)
+                .onErrorResume(WalletNotFoundException.class,
+                        ex -> Mono.just(Outcome.rejected(walletId, Status.NOT_FOUND)))
+                .onErrorResume(InsufficientFundsException.class,
+                        ex -> Mono.just(Outcome.rejected(walletId, Status.INSUFFICIENT_FUNDS)));
+    }
+
+    private Mono<Execution> completeKey(String key, Outcome outcome) {
+        return this.operationDedupeRepository.complete(key, outcome.status().name(), outcome.balance())
+                .thenReturn(new Execution(outcome, true, false));
+    }
+
+    /**
+     * Replays the recorded outcome of a key claimed by another request; a claim without an outcome is still
+     * being applied.
+     */
+    private Mono<Execution> findExecution(String key) {
+        return this.operationDedupeRepository.findById(key)
+                .flatMap(dedupe -> dedupe.getStatus() == null
+                        ? Mono.error(new OperationInProgressException(
+                                "Operation with idempotency key is still in progress: " + key))
+                        : Mono.just(new Execution(Outcome.of(dedupe), false, false)));
+    }
+
+    private void cacheOutcome(String redisKey, Outcome outcome) {
+        this.redisTemplate.opsForValue()
+                .set(redisKey, outcome.encode(), this.properties.ttl())
+                .subscribe(null, error -> log.warn("Caching outcome of {} failed", redisKey, error));
+    }
+
+    enum Status {
+        OK,
+        NOT_FOUND,
+        INSUFFICIENT_FUNDS
+    }
+
+    private record Execution(Outcome outcome, boolean applied, boolean cached) {
+    }
+
+    record Outcome(UUID walletId, Status status, Money balance) {
+
+        static Outcome applied(Wallet wallet) {
+            return new Outcome(wallet.getId(), Status.OK, wallet.getBalance());
+        }
+
+        static Outcome rejected(UUID walletId, Status status) {
+            return new Outcome(walletId, status, null);
+        }
+
+        static Outcome of(OperationDedupe dedupe) {
+            return new Outcome(dedupe.getWalletId(), Status.valueOf(dedupe.getStatus()), dedupe.getBalance());
+        }
+
+        static Outcome decode(String value) {
+            String[] parts = value.split(":", 3);
+            return new Outcome(UUID.fromString(parts[1]), Status.valueOf(parts[0]),
+                    parts.length > 2 ? Money.parse(parts[2]) : null);
+        }
+
+        String encode() {
+            String encoded = this.status.name() + ":" + this.walletId;
+            return this.balance == null ? encoded : encoded + ":" + this.balance;
+        }
+
+        Wallet toWallet() {
+            return new Wallet(this.walletId, this.balance);
+        }
+
+        Mono<Wallet> toMono() {
+            return switch (this.status) {
+                case OK -> Mono.just(toWallet());
+                case NOT_FOUND -> Mono.error(new WalletNotFoundException("Wallet not found: " + this.walletId));
+                case INSUFFICIENT_FUNDS -> Mono.error(
+                        new InsufficientFundsException("Insufficient funds in wallet: " + this.walletId));
+            };
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.bezborodov.walletservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Engine in which Redis holds the authoritative balance, in minor units.
+ * <p>
+ * Operations run as one Lua script that enforces {@code balance >= 0} and appends the new balance to the
+ * {@value #OPERATIONS_STREAM} stream; {@link RedisWalletFlusher} persists the stream to {@code wallet.wallet}.
+ * Balances are loaded from Postgres on first use. Redis must run with AOF persistence in this mode.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "redis")
+public class RedisWalletEngine implements WalletEngine {
+    static final String BALANCE_KEY_PREFIX = "wallet:balance:";
+    static final String OPERATIONS_STREAM = "wallet:operations";
+    private static final long APPLIED = 1;
+    private static final long NOT_LOADED = 0;
+    private static final int ENTRY_SEQUENCE_BITS = 20;
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> APPLY_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/apply-wallet-operation.lua"), List.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final WalletRepository walletRepository;
+
+    @Override
+    public Mono<Wallet> apply(UUID id, OperationType type, Money amount) {
+        return Mono.defer(() -> {
+            long minorUnits = amount.minorUnits();
+            long delta = type == OperationType.WITHDRAW ? -minorUnits : minorUnits;
+            return executeScript(id, delta)
+                    .flatMap(result -> result.get(0) == NOT_LOADED
+                            ? loadBalance(id).then(executeScript(id, delta))
+                            : Mono.just(result))
+                    .flatMap(result -> toWallet(id, result));
+        });
+    }
+
+    @Override
+    public Mono<Wallet> findWallet(UUID id) {
+        String balanceKey = BALANCE_KEY_PREFIX + id;
+        return this.redisTemplate.opsForValue().get(balanceKey)
+                .switchIfEmpty(Mono.defer(() -> loadBalance(id)
+                        .then(this.redisTemplate.opsForValue().get(balanceKey))))
+                .map(balance -> new Wallet(id, Money.ofMinorUnits(Long.parseLong(balance))))
+                .onErrorResume(WalletNotFoundException.class, ex -> Mono.empty());
+    }
+
+    @Override
+    public Flux<Wallet> findWallets(List<UUID> ids) {
+        return this.redisTemplate.opsForValue()
+                .multiGet(ids.stream().map(id -> BALANCE_KEY_PREFIX + id).toList())
+                .flatMapMany(balances -> Flux.range(0, ids.size())
+                        .flatMap(index -> {
+                            String balance = balances.get(index);
+                            return balance != null
+                                    ? Mono.just(new Wallet(ids.get(index), Money.ofMinorUnits(Long.parseLong(balance))))
+                                    : findWallet(ids.get(index));
+                        }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<List<Long>> executeScript(UUID id, long delta) {
+        return this.redisTemplate.execute(APPLY_SCRIPT,
+                        List.of(BALANCE_KEY_PREFIX + id, OPERATIONS_STREAM),
+                        List.of(id.toString(), Long.toString(delta)))
+                .next()
+                .map(result -> (List<Long>) result);
+    }
+
+    private Mono<Boolean> loadBalance(UUID id) {
+        return this.walletRepository.findById(id)
+                .switchIfEmpty(Mono.error(new WalletNotFoundException("Wallet not found: " + id)))
+                .flatMap(wallet -> this.redisTemplate.opsForValue()
+                        .setIfAbsent(BALANCE_KEY_PREFIX + id, Long.toString(wallet.getBalance().minorUnits())));
+    }
+
+    /**
+     * Versions a change by the id of its stream entry, which the script assigns atomically with the change.
+     */
+    private static long version(long entryMillis, long entrySequence) {
+        return entryMillis << ENTRY_SEQUENCE_BITS | entrySequence;
+    }
+
+    private static Mono<Wallet> toWallet(UUID id, List<Long> result) {
+        long status = result.get(0);
+        if (status == APPLIED) {
+            return Mono.just(new Wallet(id, Money.ofMinorUnits(result.get(1)), version(result.get(2), result.get(3))));
+        }
+        if (status == NOT_LOADED) {
+            return Mono.error(new WalletNotFoundException("Wallet not found: " + id));
+        }
+        return Mono.error(new InsufficientFundsException("Insufficient funds in wallet: " + id));
+    }
+}
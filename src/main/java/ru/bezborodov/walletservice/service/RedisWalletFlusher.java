@@ -0,0 +1,209 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.config.RedisEngineProperties;
+import ru.bezborodov.walletservice.repository.ShardEpochRepository;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind of the Redis-authoritative engine: persists the operations stream to {@code wallet.wallet}.
+ * <p>
+ * Only the replica holding the flusher lease writes. Stream entries carry absolute balances and are deleted
+ * only after they are persisted, so entries left by a crashed replica are simply replayed by the next lease
+ * holder. The number of unflushed entries and the age of the oldest one are published as gauges.
+ * <p>
+ * The lease is renewed and released only by its holder, atomically in Redis. Every new holder also advances
+ * the fencing epoch of the reserved shard {@link #FLUSHER_FENCE} in {@link ShardEpochRepository}, and writes
+ * are conditional on it: a holder that paused past its lease cannot overwrite balances flushed by its successor
+ * with older ones, and leaves its entries to the successor.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "redis")
+public class RedisWalletFlusher {
+    static final String FLUSHER_LEASE_KEY = "wallet:operations:flusher";
+    /**
+     * Shard number of the flusher epoch; shards of the sharded engine are never negative.
+     */
+    static final int FLUSHER_FENCE = -1;
+    private static final long NO_EPOCH = 0;
+    private static final RedisScript<Long> RENEW_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/renew-lease.lua"), Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/release-lease.lua"), Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ShardEpochRepository shardEpochRepository;
+    private final RedisEngineProperties properties;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong pendingOperations = new AtomicLong();
+    private final AtomicLong flushLagMillis = new AtomicLong();
+    private volatile long epoch = NO_EPOCH;
+    private Disposable flushing;
+
+    public RedisWalletFlusher(ReactiveStringRedisTemplate redisTemplate,
+                              ShardEpochRepository shardEpochRepository,
+                              RedisEngineProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.shardEpochRepository = shardEpochRepository;
+        this.properties = properties;
+        Gauge.builder("wallet.redis.engine.pending.operations", this.pendingOperations, AtomicLong::get)
+                .description("Operations applied in Redis but not yet persisted to Postgres")
+                .register(meterRegistry);
+        TimeGauge.builder("wallet.redis.engine.flush.lag", this.flushLagMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Age of the oldest operation not yet persisted to Postgres")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        this.flushing = Flux.interval(this.properties.flushInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> flush()
+                        .onErrorResume(error -> {
+                            log.error("Flushing wallet operations failed", error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (this.flushing != null) {
+            this.flushing.dispose();
+        }
+        if (this.epoch != NO_EPOCH) {
+            releaseLease()
+                    .onErrorResume(error -> {
+                        log.warn("Releasing the wallet operations flusher lease failed: {}", error.toString());
+                        return Mono.empty();
+                    })
+                    .block(this.properties.flushLease());
+        }
+    }
+
+    Mono<Void> flush() {
+        return acquireLease()
+                .filter(Boolean::booleanValue)
+                .flatMap(leader -> flushBatch())
+                .then(updateLag());
+    }
+
+    /**
+     * Takes the lease when it is free and advances the epoch, or renews the lease this replica holds.
+     */
+    private Mono<Boolean> acquireLease() {
+        return this.redisTemplate.opsForValue()
+                .setIfAbsent(FLUSHER_LEASE_KEY, this.instanceId, this.properties.flushLease())
+                .flatMap(acquired -> {
+                    if (acquired) {
+                        return this.shardEpochRepository.advance(FLUSHER_FENCE)
+                                .doOnNext(advanced -> {
+                                    this.epoch = advanced;
+                                    log.info("Acquired wallet operations flusher lease at epoch {}, " +
+                                            "replaying unflushed operations", advanced);
+                                })
+                                .thenReturn(true)
+                                .onErrorResume(error -> releaseLease().then(Mono.error(error)));
+                    }
+                    if (this.epoch == NO_EPOCH) {
+                        return Mono.just(false);
+                    }
+                    return this.redisTemplate.execute(RENEW_SCRIPT, List.of(FLUSHER_LEASE_KEY),
+                                    List.of(this.instanceId, Long.toString(this.properties.flushLease().toMillis())))
+                            .next()
+                            .map(renewed -> renewed == 1)
+                            .doOnNext(renewed -> {
+                                if (!renewed) {
+                                    log.warn("Lost wallet operations flusher lease at epoch {}", this.epoch);
+                                    this.epoch = NO_EPOCH;
+                                }
+                            });
+                });
+    }
+
+    private Mono<Long> releaseLease() {
+        this.epoch = NO_EPOCH;
+        return this.redisTemplate.execute(RELEASE_SCRIPT, List.of(FLUSHER_LEASE_KEY), List.of(this.instanceId))
+                .next();
+    }
+
+    private Mono<Void> flushBatch() {
+        ReactiveStreamOperations<String, String, String> streams = this.redisTemplate.opsForStream();
+        return streams.range(RedisWalletEngine.OPERATIONS_STREAM, Range.unbounded(),
+                        Limit.limit().count(this.properties.flushBatchSize()))
+                .collectList()
+                .filter(records -> !records.isEmpty())
+                .flatMap(records -> persist(records)
+                        .filter(Boolean::booleanValue)
+                        .flatMap(persisted -> streams.delete(RedisWalletEngine.OPERATIONS_STREAM,
+                                records.stream().map(MapRecord::getId).toArray(RecordId[]::new))))
+                .then();
+    }
+
+    /**
+     * Writes the latest balance of every wallet in the records at the current epoch, and returns whether they
+     * were written; nothing is written once a newer holder advanced the epoch.
+     */
+    private Mono<Boolean> persist(List<MapRecord<String, String, String>> records) {
+        Map<UUID, Long> balances = new LinkedHashMap<>();
+        for (MapRecord<String, String, String> record : records) {
+            Map<String, String> operation = record.getValue();
+            balances.put(UUID.fromString(operation.get("id")),
+                    Long.parseLong(operation.get("balance")));
+        }
+        long fence = this.epoch;
+        return this.shardEpochRepository.updateBalances(FLUSHER_FENCE, fence,
+                        balances.keySet().toArray(UUID[]::new), balances.values().toArray(Long[]::new))
+                .map(updated -> {
+                    if (updated == 0) {
+                        log.warn("Wallet operations flusher was fenced off at epoch {}, " +
+                                "leaving {} operations to the new lease holder", fence, records.size());
+                        this.epoch = NO_EPOCH;
+                        return false;
+                    }
+                    log.debug("Flushed {} operations to {} wallets", records.size(), updated);
+                    return true;
+                });
+    }
+
+    private Mono<Void> updateLag() {
+        ReactiveStreamOperations<String, String, String> streams = this.redisTemplate.opsForStream();
+        Mono<Long> size = streams.size(RedisWalletEngine.OPERATIONS_STREAM);
+        Mono<Long> lag = streams.range(RedisWalletEngine.OPERATIONS_STREAM, Range.unbounded(), Limit.limit().count(1))
+                .next()
+                .map(record -> Math.max(0L, System.currentTimeMillis() - record.getId().getTimestamp()))
+                .defaultIfEmpty(0L);
+        return Mono.zip(size, lag)
+                .doOnNext(sizeAndLag -> {
+                    this.pendingOperations.set(sizeAndLag.getT1());
+                    this.flushLagMillis.set(sizeAndLag.getT2());
+                })
+                .then();
+    }
+}
@@ -0,0 +1,198 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.config.ReadReplicaProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * {@link SqlWalletEngine} whose reads go to the {@link WalletReplica} when it is known to have replayed the last
+ * write of the wallet.
+ * <p>
+ * Every operation records its time under {@code wallet:last-write:<id>} before it is acknowledged. A read goes to
+ * the replica only if that write is older than the replication lag plus the age the lag may have reached since it
+ * was measured, so a client always reads its own writes. The record outlives {@code maxLag} by that age too, so a
+ * wallet with no recorded write was last written long enough ago for any lag the replica is still used at.
+ * When the lag is unknown or above {@code maxLag}, or Redis fails, reads go to the primary.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnExpression(WalletReplica.ENABLED)
+public class ReplicaRoutingWalletEngine implements WalletEngine {
+    static final String LAST_WRITE_PREFIX = "wallet:last-write:";
+
+    private final SqlWalletEngine primary;
+    private final WalletReplica replica;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ReadReplicaProperties properties;
+    private final Counter replicaReads;
+    private final Counter recentWriteReads;
+    private final Counter replicaLagReads;
+
+    public ReplicaRoutingWalletEngine(SqlWalletEngine primary,
+                                      WalletReplica replica,
+                                      ReactiveStringRedisTemplate redisTemplate,
+                                      ReadReplicaProperties properties,
+                                      MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replica = replica;
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.replicaReads = route(meterRegistry, "replica", "fresh");
+        this.recentWriteReads = route(meterRegistry, "primary", "recent_write");
+        this.replicaLagReads = route(meterRegistry, "primary", "replica_lag");
+    }
+
+    @Override
+    public Mono<Wallet> apply(UUID id, OperationType type, Money amount) {
+        return this.primary.apply(id, type, amount)
+                .flatMap(wallet -> recordWrite(id).thenReturn(wallet));
+    }
+
+    @Override
+    public Flux<Wallet> transfer(UUID sourceId, Map<UUID, Money> credits) {
+        return this.primary.transfer(sourceId, credits)
+                .flatMap(wallet -> recordWrite(wallet.getId()).thenReturn(wallet));
+    }
+
+    @Override
+    public boolean supportsTransfers() {
+        return this.primary.supportsTransfers();
+    }
+
+    @Override
+    public boolean joinsCallerTransaction() {
+        return this.primary.joinsCallerTransaction();
+    }
+
+    @Override
+    public boolean isBalanceApproximate(UUID id) {
+        return this.primary.isBalanceApproximate(id);
+    }
+
+    @Override
+    public Mono<Wallet> findWallet(UUID id) {
+        long lag = this.replica.lagMillis();
+        if (!isReplicaUsable(lag)) {
+            this.replicaLagReads.increment();
+            return this.primary.findWallet(id);
+        }
+        return this.redisTemplate.opsForValue().get(LAST_WRITE_PREFIX + id)
+                .map(Long::parseLong)
+                .defaultIfEmpty(0L)
+                .onErrorReturn(Long.MAX_VALUE)
+                .flatMap(lastWrite -> {
+                    if (!isReplayed(lastWrite, lag)) {
+                        this.recentWriteReads.increment();
+                        return this.primary.findWallet(id);
+                    }
+                    this.replicaReads.increment();
+                    return this.replica.findTotal(id)
+                            .switchIfEmpty(Mono.defer(() -> this.primary.findWallet(id)));
+                });
+    }
+
+    @Override
+    public Flux<Wallet> findWallets(List<UUID> ids) {
+        long lag = this.replica.lagMillis();
+        if (!isReplicaUsable(lag)) {
+            this.replicaLagReads.increment(ids.size());
+            return this.primary.findWallets(ids);
+        }
+        List<String> keys = ids.stream().map(id -> LAST_WRITE_PREFIX + id).toList();
+        return this.redisTemplate.opsForValue().multiGet(keys)
+                .onErrorResume(error -> Mono.just(List.of()))
+                .flatMapMany(lastWrites -> {
+                    List<UUID> fresh = new ArrayList<>();
+                    List<UUID> stale = new ArrayList<>();
+                    for (int i = 0; i < ids.size(); i++) {
+                        String lastWrite = i < lastWrites.size() ? lastWrites.get(i) : null;
+                        boolean replayed = !lastWrites.isEmpty()
+                                && isReplayed(lastWrite == null ? 0L : Long.parseLong(lastWrite), lag);
+                        (replayed ? fresh : stale).add(ids.get(i));
+                    }
+                    this.replicaReads.increment(fresh.size());
+                    this.recentWriteReads.increment(stale.size());
+                    return Flux.merge(findOnReplica(fresh), findOnPrimary(stale));
+                });
+    }
+
+    /**
+     * Reads wallets on the replica; those it does not have yet are read on the primary.
+     */
+    private Flux<Wallet> findOnReplica(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return this.replica.findTotals(ids)
+                .collectList()
+                .flatMapMany(found -> {
+                    Set<UUID> foundIds = new HashSet<>();
+                    found.forEach(wallet -> foundIds.add(wallet.getId()));
+                    List<UUID> missing = ids.stream().filter(id -> !foundIds.contains(id)).toList();
+                    return Flux.fromIterable(found).concatWith(findOnPrimary(missing));
+                });
+    }
+
+    private Flux<Wallet> findOnPrimary(List<UUID> ids) {
+        return ids.isEmpty() ? Flux.empty() : this.primary.findWallets(ids);
+    }
+
+    /**
+     * Records the time of a committed write. A failure is only logged: the operation is already committed, and
+     * failing it would invite a retry that applies it twice.
+     */
+    private Mono<Boolean> recordWrite(UUID id) {
+        return this.redisTemplate.opsForValue()
+                .set(LAST_WRITE_PREFIX + id, Long.toString(System.currentTimeMillis()),
+                        this.properties.maxLag().plus(lagStaleness()))
+                .onErrorResume(error -> {
+                    log.warn("Recording the last write of wallet {} failed: {}", id, error.toString());
+                    return Mono.just(false);
+                });
+    }
+
+    private boolean isReplicaUsable(long lag) {
+        return lag != WalletReplica.UNKNOWN_LAG && lag <= this.properties.maxLag().toMillis();
+    }
+
+    /**
+     * The lag may have grown since it was measured, so {@link #lagStaleness()} is added to it.
+     */
+    private boolean isReplayed(long lastWrite, long lag) {
+        return System.currentTimeMillis() - lastWrite > lag + lagStaleness().toMillis();
+    }
+
+    /**
+     * How old the measured lag may be: one poll interval between measurements plus the poll timeout, which is
+     * one interval as well.
+     */
+    private Duration lagStaleness() {
+        return this.properties.lagPollInterval().multipliedBy(2);
+    }
+
+    private static Counter route(MeterRegistry registry, String target, String reason) {
+        return Counter.builder("wallet.read.routes")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
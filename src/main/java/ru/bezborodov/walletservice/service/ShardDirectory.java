@@ -0,0 +1,158 @@
+package ru.bezborodov.walletservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.config.ShardingProperties;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Maps wallets to virtual shards and keeps the shard leases in Redis.
+ * <p>
+ * A lease {@code wallet:shard:<n>} holds the instance id and the URL of its owner. Live replicas heartbeat into
+ * the {@code wallet:shard:members} sorted set, from which each replica derives its fair share of the shards.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "sharded")
+public class ShardDirectory {
+    static final String SHARD_LEASE_PREFIX = "wallet:shard:";
+    static final String MEMBERS_KEY = "wallet:shard:members";
+    private static final RedisScript<Long> RENEW_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/renew-lease.lua"), Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/release-lease.lua"), Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ShardingProperties properties;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final String url;
+    private final String token;
+    private volatile Map<Integer, String> ownerUrls = Map.of();
+
+    public ShardDirectory(ReactiveStringRedisTemplate redisTemplate,
+                          ShardingProperties properties,
+                          Environment environment) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.url = properties.advertisedUrl().isEmpty()
+                ? "http://" + hostAddress() + ":" + environment.getProperty("server.port", "8080")
+                : properties.advertisedUrl();
+        this.token = this.instanceId + " " + this.url;
+    }
+
+    public int shardOf(UUID walletId) {
+        return Math.floorMod(walletId.hashCode(), this.properties.shards());
+    }
+
+    public int shards() {
+        return this.properties.shards();
+    }
+
+    public String url() {
+        return this.url;
+    }
+
+    /**
+     * Returns the URL of the owner of a shard as of the last {@link #refreshOwners()}, or {@code null} when the
+     * shard is free.
+     */
+    public String ownerUrl(int shard) {
+        return this.ownerUrls.get(shard);
+    }
+
+    /**
+     * Records this replica as alive and returns the number of live replicas, itself included.
+     */
+    public Mono<Long> heartbeat() {
+        long now = System.currentTimeMillis();
+        return this.redisTemplate.opsForZSet().add(MEMBERS_KEY, this.instanceId, now)
+                .then(this.redisTemplate.opsForZSet().removeRangeByScore(MEMBERS_KEY,
+                        Range.closed(0d, (double) (now - this.properties.lease().toMillis()))))
+                .then(this.redisTemplate.opsForZSet().size(MEMBERS_KEY))
+                .map(members -> Math.max(1L, members));
+    }
+
+    public Mono<Void> leave() {
+        return this.redisTemplate.opsForZSet().remove(MEMBERS_KEY, this.instanceId).then();
+    }
+
+    public Mono<Boolean> tryAcquire(int shard) {
+        return this.redisTemplate.opsForValue().setIfAbsent(leaseKey(shard), this.token, this.properties.lease())
+                .doOnNext(acquired -> {
+                    if (acquired) {
+                        log.info("Acquired lease of shard {}", shard);
+                    }
+                });
+    }
+
+    /**
+     * Extends the lease of a shard, emitting {@code false} when it is no longer held by this replica. The owner
+     * is compared and the lease extended in one script, so a lease taken over in between is never extended.
+     */
+    public Mono<Boolean> renew(int shard) {
+        return this.redisTemplate.execute(RENEW_SCRIPT, List.of(leaseKey(shard)),
+                        List.of(this.token, Long.toString(this.properties.lease().toMillis())))
+                .next()
+                .map(renewed -> renewed == 1)
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * Gives up the lease of a shard if this replica still holds it, compared and deleted in one script.
+     */
+    public Mono<Void> release(int shard) {
+        return this.redisTemplate.execute(RELEASE_SCRIPT, List.of(leaseKey(shard)), List.of(this.token))
+                .next()
+                .filter(released -> released == 1)
+                .doOnNext(released -> log.info("Released lease of shard {}", shard))
+                .then();
+    }
+
+    /**
+     * Reloads the owners of all shards with one {@code MGET}.
+     */
+    public Mono<Void> refreshOwners() {
+        List<String> keys = new ArrayList<>(this.properties.shards());
+        for (int shard = 0; shard < this.properties.shards(); shard++) {
+            keys.add(leaseKey(shard));
+        }
+        return this.redisTemplate.opsForValue().multiGet(keys)
+                .doOnNext(owners -> {
+                    Map<Integer, String> urls = new HashMap<>();
+                    for (int shard = 0; shard < owners.size(); shard++) {
+                        String owner = owners.get(shard);
+                        if (owner != null) {
+                            urls.put(shard, owner.substring(owner.indexOf(' ') + 1));
+                        }
+                    }
+                    this.ownerUrls = Map.copyOf(urls);
+                })
+                .then();
+    }
+
+    private static String leaseKey(int shard) {
+        return SHARD_LEASE_PREFIX + shard;
+    }
+
+    private static String hostAddress() {
+        try {
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException ex) {
+            return "localhost";
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.http.client.HttpClient;
+import ru.bezborodov.walletservice.config.ShardingProperties;
+import ru.bezborodov.walletservice.controller.payload.RequestPayload;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.OperationOutcomeUnknownException;
+import ru.bezborodov.walletservice.exception.ShardNotOwnedException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.exception.WalletRejectionException;
+import ru.bezborodov.walletservice.repository.ShardEpochRepository;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Engine in which every wallet belongs to one of {@code wallet.sharding.shards} virtual shards, and every shard
+ * is served by the single replica holding its {@link ShardDirectory lease}.
+ * <p>
+ * The owner keeps the balances of its shards in memory and applies the operations of a shard one batch at a
+ * time, so balances are checked without reading the database; each batch is written through with one statement
+ * fenced by the shard epoch before its callers are answered. Other replicas forward operations to the owner.
+ * A new owner advances the epoch and reloads balances from the database on first use, so a handover, a restart
+ * or a replica that lost its lease without noticing cannot lose or overwrite an operation.
+ * <p>
+ * A forwarded operation is rerouted only when the owner answers that it does not own the shard, which means it
+ * did not apply it. A forward that times out or fails after being sent is never resent, because the owner may
+ * have applied it; the caller gets {@link OperationOutcomeUnknownException} instead.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "sharded")
+public class ShardedWalletEngine implements WalletEngine {
+    public static final String FORWARD_PATH = "/internal/v1/shards/operations";
+    private static final int MISDIRECTED_REQUEST = 421;
+
+    private final ShardDirectory shardDirectory;
+    private final WalletRepository walletRepository;
+    private final ShardEpochRepository shardEpochRepository;
+    private final ShardingProperties properties;
+    private final WebClient webClient;
+    private final Map<Integer, Shard> owned = new ConcurrentHashMap<>();
+    private Disposable maintenance;
+
+    public ShardedWalletEngine(ShardDirectory shardDirectory,
+                               WalletRepository walletRepository,
+                               ShardEpochRepository shardEpochRepository,
+                               ShardingProperties properties,
+                               WebClient.Builder webClientBuilder,
+                               MeterRegistry meterRegistry) {
+        this.shardDirectory = shardDirectory;
+        this.walletRepository = walletRepository;
+        this.shardEpochRepository = shardEpochRepository;
+        this.properties = properties;
+        this.webClient = webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create().disableRetry(true)))
+                .build();
+        Gauge.builder("wallet.shards.owned", this.owned, Map::size)
+                .description("Virtual shards served by this replica")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        this.maintenance = Flux.interval(Duration.ZERO, this.properties.renewInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> rebalance()
+                        .onErrorResume(error -> {
+                            log.error("Renewing shard leases failed", error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (this.maintenance != null) {
+            this.maintenance.dispose();
+        }
+        Flux.fromIterable(List.copyOf(this.owned.keySet()))
+                .concatMap(this::release)
+                .then(this.shardDirectory.leave())
+                .block(this.properties.lease());
+    }
+
+    @Override
+    public Mono<Wallet> apply(UUID id, OperationType type, Money amount) {
+        return applyOwned(id, type, amount)
+                .onErrorResume(ShardNotOwnedException.class, ex -> route(id, type, amount))
+                .onErrorResume(ShardNotOwnedException.class,
+                        ex -> this.shardDirectory.refreshOwners().then(Mono.defer(() -> route(id, type, amount))));
+    }
+
+    /**
+     * Applies an operation on a shard served by this replica, failing with {@link ShardNotOwnedException}
+     * without applying it otherwise.
+     */
+    public Mono<Wallet> applyOwned(UUID id, OperationType type, Money amount) {
+        return Mono.defer(() -> {
+            int shardId = this.shardDirectory.shardOf(id);
+            Shard shard = this.owned.get(shardId);
+            return shard != null ? shard.submit(id, type, amount) : Mono.error(notOwned(shardId));
+        });
+    }
+
+    @Override
+    public Mono<Wallet> findWallet(UUID id) {
+        Money balance = cachedBalance(id);
+        return balance != null ? Mono.just(new Wallet(id, balance)) : this.walletRepository.findById(id);
+    }
+
+    @Override
+    public Flux<Wallet> findWallets(List<UUID> ids) {
+        List<Wallet> cached = new ArrayList<>();
+        List<UUID> remaining = new ArrayList<>();
+        for (UUID id : ids) {
+            Money balance = cachedBalance(id);
+            if (balance != null) {
+                cached.add(new Wallet(id, balance));
+            } else {
+                remaining.add(id);
+            }
+        }
+        Flux<Wallet> loaded = remaining.isEmpty()
+                ? Flux.empty()
+                : this.walletRepository.findAllByIds(remaining.toArray(UUID[]::new));
+        return Flux.fromIterable(cached).concatWith(loaded);
+    }
+
+    /**
+     * Serves an unowned shard when it is free, and otherwise forwards the operation to its owner.
+     */
+    private Mono<Wallet> route(UUID id, OperationType type, Money amount) {
+        int shardId = this.shardDirectory.shardOf(id);
+        String ownerUrl = this.shardDirectory.ownerUrl(shardId);
+        if (ownerUrl != null && !ownerUrl.equals(this.shardDirectory.url())) {
+            return forward(ownerUrl, id, type, amount);
+        }
+        return this.shardDirectory.tryAcquire(shardId)
+                .flatMap(acquired -> acquired ? activate(shardId) : this.shardDirectory.refreshOwners())
+                .then(Mono.defer(() -> {
+                    if (this.owned.containsKey(shardId)) {
+                        return applyOwned(id, type, amount);
+                    }
+                    String currentOwnerUrl = this.shardDirectory.ownerUrl(shardId);
+                    return currentOwnerUrl != null && !currentOwnerUrl.equals(this.shardDirectory.url())
+                            ? forward(currentOwnerUrl, id, type, amount)
+                            : Mono.error(notOwned(shardId));
+                }));
+    }
+
+    private Mono<Wallet> forward(String ownerUrl, UUID id, OperationType type, Money amount) {
+        return this.webClient.put()
+                .uri(ownerUrl + FORWARD_PATH)
+                .bodyValue(new RequestPayload(id, type, amount))
+                .exchangeToMono(response -> {
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToMono(Wallet.class);
+                    }
+                    int status = response.statusCode().value();
+                    return response.releaseBody().then(Mono.<Wallet>error(
+                            status == MISDIRECTED_REQUEST ? notOwned(this.shardDirectory.shardOf(id))
+                                    : status == HttpStatus.NOT_FOUND.value()
+                                    ? new WalletNotFoundException("Wallet not found: " + id)
+                                    : status == HttpStatus.BAD_REQUEST.value()
+                                    ? new InsufficientFundsException("Insufficient funds in wallet: " + id)
+                                    : new IllegalStateException("Forwarding to " + ownerUrl + " failed: " + status)));
+                })
+                .timeout(this.properties.forwardTimeout())
+                .onErrorMap(error -> !(error instanceof WalletRejectionException)
+                                && !(error instanceof ShardNotOwnedException),
+                        error -> new OperationOutcomeUnknownException(
+                                "Outcome of operation on wallet " + id + " forwarded to " + ownerUrl + " is unknown",
+                                error));
+    }
+
+    /**
+     * Renews the leases of owned shards, gives up the shards above the fair share and takes free shards up to it.
+     */
+    Mono<Void> rebalance() {
+        return this.shardDirectory.heartbeat()
+                .flatMap(members -> {
+                    int fairShare = (int) ((this.shardDirectory.shards() + members - 1) / members);
+                    return Flux.fromIterable(List.copyOf(this.owned.keySet()))
+                            .concatMap(shardId -> this.shardDirectory.renew(shardId)
+                                    .flatMap(held -> held ? Mono.<Void>empty() : lose(shardId)))
+                            .thenMany(Flux.fromIterable(List.copyOf(this.owned.keySet()))
+                                    .skip(fairShare)
+                                    .concatMap(this::release))
+                            .then(this.shardDirectory.refreshOwners())
+                            .thenMany(Flux.range(0, this.shardDirectory.shards())
+                                    .filter(shardId -> this.shardDirectory.ownerUrl(shardId) == null)
+                                    .concatMap(shardId -> this.owned.size() >= fairShare
+                                            ? Mono.<Void>empty()
+                                            : this.shardDirectory.tryAcquire(shardId)
+                                            .filter(Boolean::booleanValue)
+                                            .flatMap(acquired -> activate(shardId))))
+                            .then(this.shardDirectory.refreshOwners());
+                });
+    }
+
+    private Mono<Void> activate(int shardId) {
+        return this.shardEpochRepository.advance(shardId)
+                .doOnNext(epoch -> {
+                    this.owned.put(shardId, new Shard(shardId, epoch));
+                    log.info("Serving shard {} at epoch {}", shardId, epoch);
+                })
+                .onErrorResume(error -> this.shardDirectory.release(shardId).then(Mono.error(error)))
+                .then();
+    }
+
+    /**
+     * Hands a shard over: stops accepting operations, lets the queued ones finish, then frees the lease.
+     */
+    private Mono<Void> release(int shardId) {
+        Shard shard = this.owned.remove(shardId);
+        if (shard == null) {
+            return Mono.empty();
+        }
+        shard.close();
+        return shard.drained.then(this.shardDirectory.release(shardId));
+    }
+
+    private Mono<Void> lose(int shardId) {
+        Shard shard = this.owned.remove(shardId);
+        if (shard != null) {
+            log.warn("Lost lease of shard {}", shardId);
+            shard.close();
+        }
+        return Mono.empty();
+    }
+
+    private Money cachedBalance(UUID id) {
+        Shard shard = this.owned.get(this.shardDirectory.shardOf(id));
+        return shard != null ? shard.balances.get(id) : null;
+    }
+
+    private static ShardNotOwnedException notOwned(int shardId) {
+        return new ShardNotOwnedException("Shard " + shardId + " is not served by this replica");
+    }
+
+    private final class Shard {
+        private final int id;
+        private final long epoch;
+        private final Map<UUID, Money> balances = new ConcurrentHashMap<>();
+        private final Sinks.Many<PendingOperation> pending = Sinks.many().unicast().onBackpressureBuffer();
+        private final Mono<Void> drained;
+        private long changes;
+
+        private Shard(int id, long epoch) {
+            this.id = id;
+            this.epoch = epoch;
+            this.drained = this.pending.asFlux()
+                    .bufferTimeout(properties.maxBatchSize(), properties.linger())
+                    .concatMap(this::commit)
+                    .then()
+                    .cache();
+            this.drained.subscribe();
+        }
+
+        Mono<Wallet> submit(UUID walletId, OperationType type, Money amount) {
+            PendingOperation operation = new PendingOperation(walletId, type, amount, Sinks.one());
+            Sinks.EmitResult result;
+            while ((result = this.pending.tryEmitNext(operation)) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                Thread.onSpinWait();
+            }
+            return result.isSuccess() ? operation.result().asMono() : Mono.error(notOwned(this.id));
+        }
+
+        void close() {
+            Sinks.EmitResult result;
+            while ((result = this.pending.tryEmitComplete()) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                Thread.onSpinWait();
+            }
+        }
+
+        /**
+         * Applies a batch and writes it through. When the write fails for another reason than fencing, it may
+         * still have committed, so the balances of the batch are forgotten and the next batch reloads them.
+         */
+        private Mono<Void> commit(List<PendingOperation> batch) {
+            UUID[] unknown = batch.stream()
+                    .map(PendingOperation::id)
+                    .filter(walletId -> !this.balances.containsKey(walletId))
+                    .distinct()
+                    .toArray(UUID[]::new);
+            Mono<Void> load = unknown.length == 0
+                    ? Mono.empty()
+                    : walletRepository.findAllByIds(unknown)
+                    .doOnNext(wallet -> this.balances.put(wallet.getId(), wallet.getBalance()))
+                    .then();
+            return load
+                    .then(Mono.defer(() -> {
+                        Map<UUID, Money> updated = new LinkedHashMap<>();
+                        List<Outcome> outcomes = applyBatch(batch, updated);
+                        return persist(updated).then(Mono.fromRunnable(() -> {
+                            this.balances.putAll(updated);
+                            outcomes.forEach(Outcome::complete);
+                        }));
+                    }))
+                    .onErrorResume(error -> {
+                        if (error instanceof ShardNotOwnedException) {
+                            log.warn("Shard {} was taken over at a newer epoch than {}", this.id, this.epoch);
+                            owned.remove(this.id, this);
+                            close();
+                        } else {
+                            log.error("Committing {} operations of shard {} failed", batch.size(), this.id, error);
+                            batch.forEach(operation -> this.balances.remove(operation.id()));
+                        }
+                        batch.forEach(operation -> operation.result().tryEmitError(error));
+                        return Mono.empty();
+                    })
+                    .then();
+        }
+
+        private List<Outcome> applyBatch(List<PendingOperation> batch, Map<UUID, Money> updated) {
+            List<Outcome> outcomes = new ArrayList<>(batch.size());
+            for (PendingOperation operation : batch) {
+                UUID walletId = operation.id();
+                Money balance = updated.containsKey(walletId) ? updated.get(walletId) : this.balances.get(walletId);
+                if (balance == null) {
+                    outcomes.add(new Outcome(operation, null,
+                            new WalletNotFoundException("Wallet not found: " + walletId)));
+                    continue;
+                }
+                long newMinorUnits;
+                try {
+                    newMinorUnits = operation.type() == OperationType.WITHDRAW
+                            ? Math.subtractExact(balance.minorUnits(), operation.amount().minorUnits())
+                            : Math.addExact(balance.minorUnits(), operation.amount().minorUnits());
+                } catch (ArithmeticException ex) {
+                    outcomes.add(new Outcome(operation, null, ex));
+                    continue;
+                }
+                if (newMinorUnits < 0) {
+                    outcomes.add(new Outcome(operation, null,
+                            new InsufficientFundsException("Insufficient funds in wallet: " + walletId)));
+                    continue;
+                }
+                Money newBalance = Money.ofMinorUnits(newMinorUnits);
+                updated.put(walletId, newBalance);
+                outcomes.add(new Outcome(operation, new Wallet(walletId, newBalance, nextVersion()), null));
+            }
+            return outcomes;
+        }
+
+        /**
+         * Versions a change by the epoch of this owner and the changes it applied, so the versions of a wallet
+         * keep growing across handovers. Batches are applied one at a time.
+         */
+        private long nextVersion() {
+            return this.epoch << Integer.SIZE | ++this.changes;
+        }
+
+        private Mono<Void> persist(Map<UUID, Money> updated) {
+            if (updated.isEmpty()) {
+                return Mono.empty();
+            }
+            return shardEpochRepository.updateBalances(this.id, this.epoch,
+                            updated.keySet().toArray(UUID[]::new),
+                            updated.values().stream().map(Money::minorUnits).toArray(Long[]::new))
+                    .flatMap(count -> count == 0 ? Mono.<Void>error(notOwned(this.id)) : Mono.<Void>empty());
+        }
+    }
+
+    private record PendingOperation(UUID id, OperationType type, Money amount, Sinks.One<Wallet> result) {
+    }
+
+    private record Outcome(PendingOperation operation, Wallet wallet, RuntimeException error) {
+
+        void complete() {
+            if (this.error != null) {
+                this.operation.result().tryEmitError(this.error);
+            } else {
+                this.operation.result().tryEmitValue(this.wallet);
+            }
+        }
+    }
+}
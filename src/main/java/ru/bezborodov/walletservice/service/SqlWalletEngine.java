@@ -0,0 +1,98 @@
+package ru.bezborodov.walletservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+import ru.bezborodov.walletservice.repository.WalletStripeRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Default engine: every operation is a single conditional {@code UPDATE ... RETURNING}, on the wallet row
+ * or, for a striped wallet, on one of its {@link WalletStripes stripes}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "sql", matchIfMissing = true)
+public class SqlWalletEngine implements WalletEngine {
+    private final WalletRepository walletRepository;
+    private final WalletStripeRepository walletStripeRepository;
+    private final WalletStripes walletStripes;
+    private final TransactionalOperator transactionalOperator;
+
+    @Override
+    public Mono<Wallet> apply(UUID id, OperationType type, Money amount) {
+        Money delta = type == OperationType.WITHDRAW ? amount.negate() : amount;
+        int stripes = this.walletStripes.stripes(id);
+        if (stripes > 0) {
+            return this.walletStripes.apply(id, stripes, delta);
+        }
+        return this.walletRepository.applyDelta(id, delta)
+                .switchIfEmpty(Mono.defer(() -> rejectOperation(id, type, delta)));
+    }
+
+    @Override
+    public Mono<Wallet> findWallet(UUID id) {
+        return this.walletStripeRepository.findTotal(id);
+    }
+
+    @Override
+    public Flux<Wallet> findWallets(List<UUID> ids) {
+        return this.walletStripeRepository.findTotals(ids.toArray(UUID[]::new));
+    }
+
+    /**
+     * Applies the transfer with {@link WalletTransfers}; a source whose row alone cannot cover the transfer is
+     * debited through its stripes first.
+     */
+    @Override
+    public Flux<Wallet> transfer(UUID sourceId, Map<UUID, Money> credits) {
+        return WalletTransfers.transfer(this.walletRepository, sourceId, credits,
+                        debit -> this.walletStripes.rebalance(sourceId, debit))
+                .as(this.transactionalOperator::transactional);
+    }
+
+    @Override
+    public boolean supportsTransfers() {
+        return true;
+    }
+
+    @Override
+    public boolean joinsCallerTransaction() {
+        return true;
+    }
+
+    /**
+     * The total of a striped wallet reads the other stripes without locking them.
+     */
+    @Override
+    public boolean isBalanceApproximate(UUID id) {
+        return this.walletStripes.stripes(id) > 0;
+    }
+
+    /**
+     * Tells a missing wallet from a short one. A withdrawal the wallet row alone cannot cover still succeeds
+     * when the wallet was striped on another replica and its stripes hold enough.
+     */
+    private Mono<Wallet> rejectOperation(UUID id, OperationType type, Money delta) {
+        if (type == OperationType.DEPOSIT) {
+            return Mono.error(new WalletNotFoundException("Wallet not found: " + id));
+        }
+        return this.walletStripeRepository.findTotal(id)
+                .switchIfEmpty(Mono.error(() -> new WalletNotFoundException("Wallet not found: " + id)))
+                .flatMap(wallet -> wallet.getBalance().plus(delta).isNegative()
+                        ? Mono.error(new InsufficientFundsException("Insufficient funds in wallet: " + id))
+                        : this.walletStripes.rebalance(id, delta));
+    }
+}
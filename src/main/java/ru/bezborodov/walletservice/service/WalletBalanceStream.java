@@ -0,0 +1,123 @@
+package ru.bezborodov.walletservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+import ru.bezborodov.walletservice.config.BalanceStreamProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fans committed balance changes out to subscribers on every replica through Redis pub/sub.
+ * <p>
+ * Each replica holds one channel subscription and dispatches events to per-wallet topics that exist only while
+ * someone listens. Publishing is fire-and-forget and never waits for subscribers: a topic drops events that a
+ * subscriber has not requested, and every subscriber conflates its backlog to the latest balance.
+ * <p>
+ * Balances are published after their commit, so the events of one wallet can reach Redis out of commit order.
+ * An event carries the {@link Wallet#getVersion() version} of its balance when the engine has one, and a topic
+ * drops events older than the newest it has dispatched.
+ */
+@Slf4j
+@Component
+public class WalletBalanceStream {
+    static final String BALANCE_CHANNEL = "wallet:balance-events";
+
+    private final BalanceStreamProperties properties;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final Map<UUID, Topic> topics = new ConcurrentHashMap<>();
+    private Disposable subscription;
+
+    public WalletBalanceStream(BalanceStreamProperties properties, ReactiveStringRedisTemplate redisTemplate) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        if (!this.properties.enabled()) {
+            return;
+        }
+        this.subscription = this.redisTemplate.listenToChannel(BALANCE_CHANNEL)
+                .doOnNext(message -> onMessage(message.getMessage()))
+                .doOnError(error -> log.warn("Balance event listener failed, resubscribing", error))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void unsubscribe() {
+        if (this.subscription != null) {
+            this.subscription.dispose();
+        }
+    }
+
+    public void publish(Wallet wallet) {
+        if (!this.properties.enabled()) {
+            return;
+        }
+        String message = wallet.getId() + ":" + wallet.getBalance().minorUnits();
+        if (wallet.getVersion() != null) {
+            message += ":" + wallet.getVersion();
+        }
+        this.redisTemplate.convertAndSend(BALANCE_CHANNEL, message)
+                .subscribe(null, error -> log.warn("Publishing balance of {} failed", wallet.getId(), error));
+    }
+
+    /**
+     * Emits every balance of the wallet committed after subscription, on any replica.
+     */
+    public Flux<Wallet> listen(UUID walletId) {
+        if (!this.properties.enabled()) {
+            return Flux.error(new IllegalStateException("Balance stream is disabled"));
+        }
+        return Flux.defer(() -> this.topics.compute(walletId, (id, topic) -> {
+                    Topic current = topic != null ? topic : new Topic();
+                    current.subscribers++;
+                    return current;
+                }).sink.asFlux())
+                .onBackpressureLatest()
+                .doFinally(signal -> this.topics.computeIfPresent(walletId,
+                        (id, topic) -> --topic.subscribers == 0 ? null : topic));
+    }
+
+    /**
+     * Dispatches an event {@code <wallet id>:<balance>[:<version>]}. Events are received one at a time.
+     */
+    void onMessage(String message) {
+        String[] parts = message.split(":");
+        if (parts.length < 2) {
+            return;
+        }
+        UUID walletId = UUID.fromString(parts[0]);
+        Topic topic = this.topics.get(walletId);
+        if (topic == null) {
+            return;
+        }
+        Long version = parts.length > 2 ? Long.valueOf(parts[2]) : null;
+        if (version != null) {
+            if (version < topic.version) {
+                return;
+            }
+            topic.version = version;
+        }
+        topic.sink.tryEmitNext(new Wallet(walletId, Money.ofMinorUnits(Long.parseLong(parts[1])), version));
+    }
+
+    private static final class Topic {
+        private final Sinks.Many<Wallet> sink = Sinks.many().multicast().directBestEffort();
+        private int subscribers;
+        private long version = Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,238 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.cache.WalletNearCache;
+import ru.bezborodov.walletservice.config.ReconciliationProperties;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+import ru.bezborodov.walletservice.repository.WalletStripeRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background comparison of the {@code wallet:<id>} cache entries with {@code wallet.wallet}.
+ * <p>
+ * The table is read in keyset pages of {@code pageSize} wallets, no faster than {@code rowsPerSecond}, and each
+ * page is compared with Redis by pipelined {@code MGET}s. A mismatch may be an operation committed but not yet
+ * cached, so the wallet is read again from both stores; an entry that still differs is evicted, and the next
+ * read loads the stored balance. Evicting rather than overwriting cannot replace a newer balance written
+ * concurrently by an operation.
+ * <p>
+ * Only the replica holding the lease runs the job. The last compared id is checkpointed in Redis after every
+ * page, so a restart or another replica resumes where the job stopped. Wallets that are not cached are skipped.
+ * Only engines that keep {@code wallet.wallet} authoritative are compared.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression(WalletCacheReconciler.ENABLED)
+public class WalletCacheReconciler {
+    static final String ENABLED = "${wallet.reconciliation.enabled:false} "
+            + "and '${wallet.engine:sql}' matches 'sql|group-commit|sharded'";
+    static final String LEASE_KEY = "wallet:reconciliation:lease";
+    static final String CHECKPOINT_KEY = "wallet:reconciliation:checkpoint";
+    static final String PASS_PAUSE_KEY = "wallet:reconciliation:pause";
+    static final UUID FIRST_ID = new UUID(0L, 0L);
+    private static final RedisScript<Long> RENEW_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/renew-lease.lua"), Long.class);
+
+    private final WalletRepository walletRepository;
+    private final WalletStripeRepository walletStripeRepository;
+    private final ReactiveRedisTemplate<String, Wallet> walletTemplate;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final WalletNearCache walletNearCache;
+    private final ReconciliationProperties properties;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Counter comparedWallets;
+    private final Counter evictedWallets;
+    private final AtomicLong passCompared = new AtomicLong();
+    private final AtomicLong passEvicted = new AtomicLong();
+    private Disposable reconciling;
+
+    public WalletCacheReconciler(WalletRepository walletRepository,
+                                 WalletStripeRepository walletStripeRepository,
+                                 ReactiveRedisTemplate<String, Wallet> walletTemplate,
+                                 ReactiveStringRedisTemplate redisTemplate,
+                                 WalletNearCache walletNearCache,
+                                 ReconciliationProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.walletRepository = walletRepository;
+        this.walletStripeRepository = walletStripeRepository;
+        this.walletTemplate = walletTemplate;
+        this.redisTemplate = redisTemplate;
+        this.walletNearCache = walletNearCache;
+        this.properties = properties;
+        this.comparedWallets = Counter.builder("wallet.reconciliation.wallets")
+                .description("Cached wallets compared with Postgres")
+                .register(meterRegistry);
+        this.evictedWallets = Counter.builder("wallet.reconciliation.discrepancies")
+                .description("Cache entries that differed from Postgres and were evicted")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        this.reconciling = Flux.interval(pageInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> reconcileNextPage()
+                        .onErrorResume(error -> {
+                            log.error("Reconciling the wallet cache failed", error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (this.reconciling != null) {
+            this.reconciling.dispose();
+        }
+    }
+
+    /**
+     * One page per interval keeps the job within {@code rowsPerSecond}; a slow page delays the next one.
+     */
+    private Duration pageInterval() {
+        return Duration.ofNanos(Duration.ofSeconds(1).toNanos() * this.properties.pageSize()
+                / this.properties.rowsPerSecond());
+    }
+
+    Mono<Void> reconcileNextPage() {
+        return acquireLease()
+                .filter(Boolean::booleanValue)
+                .flatMap(leader -> this.redisTemplate.hasKey(PASS_PAUSE_KEY))
+                .filter(paused -> !paused)
+                .flatMap(running -> this.redisTemplate.opsForValue().get(CHECKPOINT_KEY)
+                        .map(UUID::fromString)
+                        .defaultIfEmpty(FIRST_ID))
+                .flatMap(after -> this.walletRepository.findTotalsAfter(after, this.properties.pageSize())
+                        .collectList())
+                .flatMap(page -> page.isEmpty() ? finishPass() : reconcile(page).then(checkpoint(page)));
+    }
+
+    private Mono<Void> checkpoint(List<Wallet> page) {
+        return this.redisTemplate.opsForValue()
+                .set(CHECKPOINT_KEY, page.get(page.size() - 1).getId().toString())
+                .then();
+    }
+
+    private Mono<Boolean> acquireLease() {
+        return this.redisTemplate.opsForValue().setIfAbsent(LEASE_KEY, this.instanceId, this.properties.lease())
+                .flatMap(acquired -> {
+                    if (acquired) {
+                        log.info("Acquired wallet cache reconciliation lease");
+                        return Mono.just(true);
+                    }
+                    return this.redisTemplate.execute(RENEW_SCRIPT, List.of(LEASE_KEY),
+                                    List.of(this.instanceId, Long.toString(this.properties.lease().toMillis())))
+                            .next()
+                            .map(renewed -> renewed == 1)
+                            .defaultIfEmpty(false);
+                });
+    }
+
+    private Mono<Void> reconcile(List<Wallet> page) {
+        return compare(page)
+                .doOnNext(comparison -> {
+                    this.comparedWallets.increment(comparison.cached());
+                    this.passCompared.addAndGet(comparison.cached());
+                })
+                .map(Comparison::differing)
+                .filter(suspects -> !suspects.isEmpty())
+                .flatMap(suspects -> this.walletStripeRepository.findTotals(suspects.toArray(UUID[]::new))
+                        .collectList()
+                        .flatMap(this::compare))
+                .map(Comparison::differing)
+                .filter(stale -> !stale.isEmpty())
+                .flatMap(this::evict);
+    }
+
+    /**
+     * Compares the given wallets with their cache entries, one pipelined {@code MGET} per chunk.
+     */
+    private Mono<Comparison> compare(List<Wallet> stored) {
+        int chunkSize = this.properties.chunkSize();
+        List<List<Wallet>> chunks = new ArrayList<>();
+        for (int from = 0; from < stored.size(); from += chunkSize) {
+            chunks.add(stored.subList(from, Math.min(from + chunkSize, stored.size())));
+        }
+        return Flux.fromIterable(chunks)
+                .flatMap(chunk -> this.walletTemplate.opsForValue()
+                        .multiGet(chunk.stream().map(wallet -> cacheKey(wallet.getId())).toList())
+                        .map(cached -> compareChunk(chunk, cached)), chunks.size())
+                .reduce((left, right) -> new Comparison(left.cached() + right.cached(),
+                        concat(left.differing(), right.differing())))
+                .defaultIfEmpty(new Comparison(0, List.of()));
+    }
+
+    private static Comparison compareChunk(List<Wallet> stored, List<Wallet> cached) {
+        int found = 0;
+        List<UUID> differing = new ArrayList<>();
+        for (int i = 0; i < stored.size(); i++) {
+            Wallet entry = cached.get(i);
+            if (entry != null) {
+                found++;
+                if (!Objects.equals(entry.getBalance(), stored.get(i).getBalance())) {
+                    differing.add(stored.get(i).getId());
+                }
+            }
+        }
+        return new Comparison(found, differing);
+    }
+
+    private Mono<Void> evict(List<UUID> stale) {
+        return this.walletTemplate.delete(stale.stream().map(this::cacheKey).toArray(String[]::new))
+                .thenMany(Flux.fromIterable(stale))
+                .doOnNext(id -> {
+                    log.warn("Evicted the cache entry of wallet {}: its balance differs from Postgres", id);
+                    this.walletNearCache.invalidate(id);
+                })
+                .flatMap(this.walletNearCache::publishInvalidation)
+                .then(Mono.fromRunnable(() -> {
+                    this.evictedWallets.increment(stale.size());
+                    this.passEvicted.addAndGet(stale.size());
+                }));
+    }
+
+    private Mono<Void> finishPass() {
+        log.info("Wallet cache reconciliation pass finished: {} cached wallets compared, {} evicted",
+                this.passCompared.getAndSet(0), this.passEvicted.getAndSet(0));
+        return this.redisTemplate.opsForValue().set(PASS_PAUSE_KEY, this.instanceId, this.properties.passPause())
+                .then(this.redisTemplate.delete(CHECKPOINT_KEY))
+                .then();
+    }
+
+    private String cacheKey(UUID id) {
+        return WalletServiceImpl.WALLET_CACHE_PREFIX + id;
+    }
+
+    private static List<UUID> concat(List<UUID> left, List<UUID> right) {
+        List<UUID> all = new ArrayList<>(left);
+        all.addAll(right);
+        return all;
+    }
+
+    /**
+     * @param cached    number of compared wallets that had a cache entry
+     * @param differing ids of the wallets whose cache entry holds another balance
+     */
+    private record Comparison(int cached, List<UUID> differing) {
+    }
+}
@@ -0,0 +1,49 @@
+package ru.bezborodov.walletservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.cache.WalletAccessTracker;
+import ru.bezborodov.walletservice.config.WalletCacheProperties;
+
+/**
+ * Loads the hottest wallets across all replicas into Redis and the near cache at startup, so that a restarted
+ * replica or a flushed Redis does not send every first read to the database.
+ * <p>
+ * Application runners complete before Spring Boot reports the application ready, so the replica only
+ * receives traffic once the warm-up is done or has timed out.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WalletCacheWarmer implements ApplicationRunner {
+    private static final int CHUNK_SIZE = 500;
+
+    private final WalletServiceImpl walletService;
+    private final WalletAccessTracker walletAccessTracker;
+    private final WalletCacheProperties properties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (this.properties.warmUpSize() <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        Integer loaded = this.walletAccessTracker.findSharedHottest(this.properties.warmUpSize())
+                .buffer(CHUNK_SIZE)
+                .concatMap(this.walletService::warmUp)
+                .reduce(0, Integer::sum)
+                .timeout(this.properties.warmUpTimeout())
+                .onErrorResume(error -> {
+                    log.warn("Cache warm-up did not complete: {}", error.toString());
+                    return Mono.empty();
+                })
+                .block();
+        log.info("Cache warm-up loaded {} wallets in {} ms", loaded == null ? 0 : loaded,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.bezborodov.walletservice.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Store of record for wallet balances, selected with {@code wallet.engine}.
+ * Rejected operations fail with {@link ru.bezborodov.walletservice.exception.WalletNotFoundException} or
+ * {@link ru.bezborodov.walletservice.exception.InsufficientFundsException}.
+ */
+public interface WalletEngine {
+
+    /**
+     * Applies a balance change and emits the updated wallet.
+     */
+    Mono<Wallet> apply(UUID id, OperationType type, Money amount);
+
+    /**
+     * Reads the authoritative state of a wallet, completing empty when it does not exist.
+     */
+    Mono<Wallet> findWallet(UUID id);
+
+    /**
+     * Reads the authoritative state of several wallets, in no particular order, skipping those that do not exist.
+     */
+    default Flux<Wallet> findWallets(List<UUID> ids) {
+        return Flux.fromIterable(ids).flatMap(this::findWallet);
+    }
+
+    /**
+     * Atomically debits the source wallet by the sum of {@code credits} and credits every destination wallet,
+     * then emits the updated wallets in no particular order. Either all balances change or none does.
+     * Only called on engines that {@link #supportsTransfers() support transfers}.
+     */
+    default Flux<Wallet> transfer(UUID sourceId, Map<UUID, Money> credits) {
+        return Flux.error(new UnsupportedOperationException(
+                "Transfers are not supported by the " + getClass().getSimpleName()));
+    }
+
+    /**
+     * Whether {@link #transfer} is implemented; transfers are served by default only on engines that implement it.
+     */
+    default boolean supportsTransfers() {
+        return false;
+    }
+
+    /**
+     * Whether {@link #apply} runs in the caller's transaction, on the caller's connection. Engines that apply in
+     * their own batch or on another replica must not be called while the caller holds a connection, because the
+     * batch needs one from the same pool.
+     */
+    default boolean joinsCallerTransaction() {
+        return false;
+    }
+
+    /**
+     * Whether the balance that {@link #apply} emits for the wallet may miss concurrent writes, so it is returned
+     * to the caller but must not be cached.
+     */
+    default boolean isBalanceApproximate(UUID id) {
+        return false;
+    }
+}
@@ -0,0 +1,137 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Tags;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.config.ReadReplicaProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.repository.WalletStripeRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-only replica of the wallet database, with its own connection pool so that read spikes do not take
+ * connections from writes.
+ * <p>
+ * The pool is not a {@link io.r2dbc.spi.ConnectionFactory} bean: the primary factory, repositories and
+ * transactions stay auto-configured. The replication lag is measured periodically and is unknown
+ * ({@code -1}) until the first measurement succeeds or after one fails.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression(WalletReplica.ENABLED)
+public class WalletReplica {
+    static final String ENABLED = "${wallet.read-replica.enabled:false} and '${wallet.engine:sql}' == 'sql'";
+    static final long UNKNOWN_LAG = -1;
+
+    /**
+     * Zero on a server that is not a standby or has replayed all received WAL; otherwise the age of the last
+     * replayed transaction.
+     */
+    private static final String FIND_LAG_MILLIS = "SELECT CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS BIGINT) END AS lag";
+
+    private final ReadReplicaProperties properties;
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+    private volatile long lagMillis = UNKNOWN_LAG;
+    private Disposable lagPolling;
+
+    public WalletReplica(ReadReplicaProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(properties.url()).mutate()
+                .option(ConnectionFactoryOptions.USER, properties.username())
+                .option(ConnectionFactoryOptions.PASSWORD, properties.password())
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .name("replica")
+                .initialSize(properties.poolInitialSize())
+                .maxSize(properties.poolMaxSize())
+                .maxIdleTime(properties.poolMaxIdleTime())
+                .postAllocate(connection -> Mono.from(connection
+                                .createStatement("SET SESSION CHARACTERISTICS AS TRANSACTION READ ONLY")
+                                .execute())
+                        .flatMap(result -> Mono.from(result.getRowsUpdated()))
+                        .then())
+                .build());
+        this.databaseClient = DatabaseClient.create(this.connectionPool);
+        new ConnectionPoolMetrics(this.connectionPool, "replica", Tags.empty()).bindTo(meterRegistry);
+        TimeGauge.builder("wallet.replica.lag", this,
+                        TimeUnit.MILLISECONDS, replica -> replica.lagMillis == UNKNOWN_LAG ? Double.NaN : replica.lagMillis)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        this.lagPolling = Flux.interval(Duration.ZERO, this.properties.lagPollInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> pollLag())
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (this.lagPolling != null) {
+            this.lagPolling.dispose();
+        }
+        this.connectionPool.dispose();
+    }
+
+    /**
+     * Returns the last measured replication lag in milliseconds, or {@link #UNKNOWN_LAG}.
+     */
+    public long lagMillis() {
+        return this.lagMillis;
+    }
+
+    public Mono<Wallet> findTotal(UUID id) {
+        return this.databaseClient.sql(WalletStripeRepository.FIND_TOTAL)
+                .bind("id", id)
+                .map(WalletReplica::toWallet)
+                .one();
+    }
+
+    public Flux<Wallet> findTotals(List<UUID> ids) {
+        return this.databaseClient.sql(WalletStripeRepository.FIND_TOTALS)
+                .bind("ids", ids.toArray(UUID[]::new))
+                .map(WalletReplica::toWallet)
+                .all();
+    }
+
+    private Mono<Long> pollLag() {
+        return this.databaseClient.sql(FIND_LAG_MILLIS)
+                .map(row -> row.get("lag", Long.class))
+                .one()
+                .timeout(this.properties.lagPollInterval())
+                .doOnNext(lag -> this.lagMillis = Math.max(lag, 0))
+                .onErrorResume(error -> {
+                    log.warn("Measuring the replication lag failed: {}", error.toString());
+                    this.lagMillis = UNKNOWN_LAG;
+                    return Mono.empty();
+                });
+    }
+
+    private static Wallet toWallet(Readable row) {
+        return new Wallet(row.get("id", UUID.class), Money.ofMinorUnits(row.get("balance", Long.class)));
+    }
+}
@@ -1,15 +1,38 @@
 package ru.bezborodov.walletservice.service;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Money;
 import ru.bezborodov.walletservice.entity.OperationType;
 import ru.bezborodov.walletservice.entity.Wallet;
 
-import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public interface WalletService {
 
- Mono<Void> performOperation(UUID id, OperationType type, BigDecimal amount);
+ Mono<Wallet> performOperation(UUID id, OperationType type, Money amount);
+
+ Mono<Wallet> performOperation(UUID id, OperationType type, Money amount, String idempotencyKey);
 
  Mono<Wallet> findWalletBalance(UUID id);
+
+ /**
+  * Resolves many wallets with one cache round trip and at most one storage query.
+  * The result holds the wallets that exist, keyed by id.
+  */
+ Mono<Map<UUID, Wallet>> findWalletBalances(List<UUID> ids);
+
+ /**
+  * Emits the current balance of the wallet and then every committed change of it, on any replica.
+  * Fails with {@link ru.bezborodov.walletservice.exception.WalletNotFoundException} for an unknown wallet.
+  */
+ Flux<Wallet> streamWalletBalance(UUID id);
+
+ /**
+  * Atomically moves money from one wallet to one or more others: the source is debited by the sum of
+  * {@code credits} and every destination is credited, or nothing changes. Emits the updated wallets.
+  */
+ Mono<List<Wallet>> transfer(UUID sourceId, Map<UUID, Money> credits);
 }
@@ -4,59 +4,282 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.cache.MissingWalletFilter;
+import ru.bezborodov.walletservice.cache.WalletAccessTracker;
+import ru.bezborodov.walletservice.cache.WalletNearCache;
+import ru.bezborodov.walletservice.config.TransferProperties;
+import ru.bezborodov.walletservice.config.WalletCacheProperties;
+import ru.bezborodov.walletservice.entity.Money;
 import ru.bezborodov.walletservice.entity.OperationType;
 import ru.bezborodov.walletservice.entity.Wallet;
-import ru.bezborodov.walletservice.exception.InsufficientFundsException;
 import ru.bezborodov.walletservice.exception.WalletNotFoundException;
-import ru.bezborodov.walletservice.repository.WalletRepository;
+import ru.bezborodov.walletservice.metrics.WalletMetrics;
 
-import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class WalletServiceImpl implements WalletService {
-    private final WalletRepository walletRepository;
+    private final WalletEngine walletEngine;
     private final ReactiveRedisTemplate<String, Wallet> reactiveRedisTemplate;
+    private final WalletNearCache walletNearCache;
+    private final OperationDeduplicator operationDeduplicator;
+    private final MissingWalletFilter missingWalletFilter;
+    private final WalletMetrics walletMetrics;
+    private final WalletBalanceStream walletBalanceStream;
+    private final WalletAccessTracker walletAccessTracker;
+    private final WalletCacheProperties walletCacheProperties;
+    private final TransferProperties transferProperties;
+    private final ConcurrentMap<UUID, Mono<Wallet>> walletLookups = new ConcurrentHashMap<>();
 
-    private static final String WALLET_CACHE_PREFIX = "wallet:";
+    static final String WALLET_CACHE_PREFIX = "wallet:";
     @Override
-    @Transactional
-    public Mono<Void> performOperation(UUID id, OperationType type, BigDecimal amount) {
-        return this.walletRepository.findById(id)
-                .switchIfEmpty(Mono.error(new WalletNotFoundException("Wallet not found: " + id)))
-                .flatMap(wallet -> {
-                    if (type == OperationType.DEPOSIT) {
-                        wallet.setBalance(wallet.getBalance().add(amount));
-                    } else if (type == OperationType.WITHDRAW) {
-                        if (wallet.getBalance().compareTo(amount) < 0) {
-                            return Mono.error(
-                                    new InsufficientFundsException("Insufficient funds in wallet: " + id));
-                        }
-                        wallet.setBalance(wallet.getBalance().subtract(amount));
-                    }
-                    return this.walletRepository.updateBalance(wallet.getId(), wallet.getBalance())
-                            .then(updateCache(wallet));
-                })
-                .then();
+    public Mono<Wallet> performOperation(UUID id, OperationType type, Money amount) {
+        this.walletAccessTracker.record(id);
+        return this.walletMetrics.timeOperation(type, applyToStorage(id, type, amount)
+                .flatMap(wallet -> updateCache(wallet).thenReturn(wallet)));
     }
 
+    @Override
+    public Mono<Wallet> performOperation(UUID id, OperationType type, Money amount, String idempotencyKey) {
+        this.walletAccessTracker.record(id);
+        return this.walletMetrics.timeOperation(type, this.operationDeduplicator.execute(idempotencyKey, id,
+                applyToStorage(id, type, amount), wallet -> updateCache(wallet).thenReturn(wallet)));
+    }
+
+    /**
+     * Refreshes the cache entries of all wallets of the transfer with one pipelined batch of Redis commands.
+     */
+    @Override
+    public Mono<List<Wallet>> transfer(UUID sourceId, Map<UUID, Money> credits) {
+        if (credits.isEmpty() || credits.containsKey(sourceId)) {
+            return Mono.error(new IllegalArgumentException(
+                    "Transfer needs at least one destination wallet other than the source wallet"));
+        }
+        if (!this.transferProperties.isEnabled(this.walletEngine.supportsTransfers())) {
+            return Mono.error(new UnsupportedOperationException("Transfers are disabled"));
+        }
+        this.walletAccessTracker.record(sourceId);
+        return this.walletMetrics.timeTransfer(this.walletEngine.transfer(sourceId, credits)
+                .collectList()
+                .flatMap(wallets -> updateCache(wallets).thenReturn(wallets)));
+    }
+
+    /**
+     * Reads a hot wallet from Redis with {@code GETEX}, so its expiry is extended in the same round trip.
+     */
     @Override
     public Mono<Wallet> findWalletBalance(UUID id) {
+        boolean hot = this.walletAccessTracker.record(id);
+        Wallet nearCached = this.walletNearCache.get(id);
+        if (nearCached != null) {
+            this.walletMetrics.nearCacheHit();
+            return this.walletMetrics.timeBalanceRead(Mono.just(nearCached));
+        }
+        if (this.missingWalletFilter.isKnownMissing(id)) {
+            return this.walletMetrics.timeBalanceRead(
+                    Mono.error(new WalletNotFoundException("Wallet not found: " + id)));
+        }
+        if (this.missingWalletFilter.isLikelyMissing(id)) {
+            return this.walletMetrics.timeBalanceRead(this.walletLookups.computeIfAbsent(id, this::loadWallet)
+                    .switchIfEmpty(Mono.error(() -> new WalletNotFoundException("Wallet not found: " + id))));
+        }
         String cacheKey = WALLET_CACHE_PREFIX + id;
-        return reactiveRedisTemplate.opsForValue()
-                .get(cacheKey)
-                .doOnNext(wallet -> log.info("Found wallet in cache: {}", wallet))
-                .switchIfEmpty(this.walletRepository.findById(id)
-                        .switchIfEmpty(Mono.error(new WalletNotFoundException("Wallet not found: " + id)))
-                        .doOnNext(wallet -> log.info("Found wallet in database: {}", wallet))
-                        .flatMap(wallet -> updateCache(wallet).thenReturn(wallet)));
+        Mono<Wallet> cached = hot
+                ? this.reactiveRedisTemplate.opsForValue().getAndExpire(cacheKey, this.walletCacheProperties.ttl())
+                : this.reactiveRedisTemplate.opsForValue().get(cacheKey);
+        return this.walletMetrics.timeBalanceRead(this.walletMetrics.timeRedisGet(cached)
+                .doOnNext(wallet -> {
+                    log.debug("Found wallet in cache: {}", wallet);
+                    this.walletMetrics.cacheHit();
+                    this.walletNearCache.put(wallet);
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    this.walletMetrics.cacheMiss();
+                    return this.walletLookups.computeIfAbsent(id, this::loadWallet);
+                }))
+                .switchIfEmpty(Mono.error(() -> new WalletNotFoundException("Wallet not found: " + id))));
     }
 
+    @Override
+    public Mono<Map<UUID, Wallet>> findWalletBalances(List<UUID> ids) {
+        Map<UUID, Wallet> found = new HashMap<>();
+        List<UUID> remaining = new ArrayList<>();
+        for (UUID id : new LinkedHashSet<>(ids)) {
+            this.walletAccessTracker.record(id);
+            Wallet nearCached = this.walletNearCache.get(id);
+            if (nearCached != null) {
+                this.walletMetrics.nearCacheHit();
+                found.put(id, nearCached);
+            } else if (!this.missingWalletFilter.isKnownMissing(id)) {
+                remaining.add(id);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return Mono.just(found);
+        }
+        List<String> cacheKeys = remaining.stream().map(id -> WALLET_CACHE_PREFIX + id).toList();
+        return this.walletMetrics.timeRedisGet(this.reactiveRedisTemplate.opsForValue().multiGet(cacheKeys))
+                .flatMap(cached -> {
+                    List<UUID> misses = new ArrayList<>();
+                    for (int i = 0; i < remaining.size(); i++) {
+                        Wallet wallet = cached.get(i);
+                        if (wallet != null) {
+                            this.walletMetrics.cacheHit();
+                            this.walletNearCache.put(wallet);
+                            found.put(wallet.getId(), wallet);
+                        } else {
+                            this.walletMetrics.cacheMiss();
+                            misses.add(remaining.get(i));
+                        }
+                    }
+                    if (misses.isEmpty()) {
+                        return Mono.just(found);
+                    }
+                    return this.walletMetrics.timeStorageFind(this.walletEngine.findWallets(misses).collectList())
+                            .flatMap(loaded -> {
+                                loaded.forEach(wallet -> {
+                                    found.put(wallet.getId(), wallet);
+                                    this.missingWalletFilter.register(wallet.getId());
+                                });
+                                misses.stream()
+                                        .filter(id -> !found.containsKey(id))
+                                        .forEach(this.missingWalletFilter::markMissing);
+                                return fillCache(loaded).thenReturn(found);
+                            });
+                });
+    }
+
+    /**
+     * Subscribes to changes before reading the current balance, so no commit falls between the two;
+     * the snapshot is skipped once a newer change has already been emitted.
+     */
+    @Override
+    public Flux<Wallet> streamWalletBalance(UUID id) {
+        return Flux.defer(() -> {
+            AtomicBoolean changed = new AtomicBoolean();
+            return Flux.merge(
+                    this.walletBalanceStream.listen(id).doOnNext(wallet -> changed.set(true)),
+                    findWalletBalance(id).filter(wallet -> !changed.get()));
+        });
+    }
+
+    /**
+     * Warms the caches up with the given wallets, read in one query, and counts them as hot on this replica.
+     * Emits the number of wallets loaded.
+     */
+    public Mono<Integer> warmUp(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(0);
+        }
+        this.walletAccessTracker.seed(ids);
+        return this.walletMetrics.timeStorageFind(this.walletEngine.findWallets(ids).collectList())
+                .flatMap(wallets -> fillCache(wallets).thenReturn(wallets.size()));
+    }
+
+    /**
+     * Loads the wallet once for all concurrent cache misses on it; the lookup is shared until it terminates.
+     */
+    private Mono<Wallet> loadWallet(UUID id) {
+        return this.walletMetrics.timeStorageFind(this.walletEngine.findWallet(id))
+                .doOnNext(wallet -> {
+                    log.debug("Found wallet in database: {}", wallet);
+                    this.missingWalletFilter.register(id);
+                })
+                .flatMap(wallet -> fillCache(wallet).thenReturn(wallet))
+                .doOnSuccess(wallet -> {
+                    if (wallet == null) {
+                        this.missingWalletFilter.markMissing(id);
+                    }
+                })
+                .doFinally(signal -> this.walletLookups.remove(id))
+                .cache();
+    }
+
+    /**
+     * Caches the written balance, or evicts it when the engine reports it as approximate, so the next read
+     * loads the exact total.
+     */
     private Mono<Boolean> updateCache(Wallet wallet) {
+        this.missingWalletFilter.register(wallet.getId());
+        this.walletBalanceStream.publish(wallet);
+        Mono<Boolean> cached = this.walletEngine.isBalanceApproximate(wallet.getId())
+                ? evict(wallet.getId())
+                : fillCache(wallet);
+        return cached
+                .flatMap(result -> this.walletNearCache.publishInvalidation(wallet.getId()).thenReturn(result));
+    }
+
+    private Mono<Boolean> updateCache(List<Wallet> wallets) {
+        List<Wallet> exact = new ArrayList<>(wallets.size());
+        List<UUID> approximate = new ArrayList<>();
+        for (Wallet wallet : wallets) {
+            this.missingWalletFilter.register(wallet.getId());
+            this.walletBalanceStream.publish(wallet);
+            if (this.walletEngine.isBalanceApproximate(wallet.getId())) {
+                approximate.add(wallet.getId());
+            } else {
+                exact.add(wallet);
+            }
+        }
+        return fillCache(exact)
+                .flatMap(result -> Flux.fromIterable(approximate)
+                        .flatMap(this::evict)
+                        .then()
+                        .thenReturn(result))
+                .flatMap(result -> Flux.fromIterable(wallets)
+                        .flatMap(wallet -> this.walletNearCache.publishInvalidation(wallet.getId()))
+                        .then()
+                        .thenReturn(result));
+    }
+
+    private Mono<Boolean> evict(UUID id) {
+        this.walletNearCache.invalidate(id);
+        return this.reactiveRedisTemplate.delete(WALLET_CACHE_PREFIX + id).thenReturn(true);
+    }
+
+    private Mono<Boolean> fillCache(Wallet wallet) {
+        return this.walletMetrics.timeRedisSet(cache(wallet));
+    }
+
+    /**
+     * Backfills the cache with one {@code SET ... PX} per wallet, as {@code MSET} cannot set an expiry.
+     * The commands are issued together, so Lettuce pipelines them on its shared connection.
+     */
+    private Mono<Boolean> fillCache(List<Wallet> wallets) {
+        if (wallets.isEmpty()) {
+            return Mono.just(true);
+        }
+        return this.walletMetrics.timeRedisSet(Flux.fromIterable(wallets)
+                .flatMap(this::cache, wallets.size())
+                .all(Boolean::booleanValue));
+    }
+
+    private Mono<Boolean> cache(Wallet wallet) {
+        this.walletNearCache.put(wallet);
         String cacheKey = WALLET_CACHE_PREFIX + wallet.getId();
-        return reactiveRedisTemplate.opsForValue().set(cacheKey, wallet);
+        return this.reactiveRedisTemplate.opsForValue().set(cacheKey, wallet, cacheTtl(wallet.getId()));
+    }
+
+    private Duration cacheTtl(UUID id) {
+        return this.walletAccessTracker.isHot(id)
+                ? this.walletCacheProperties.ttl()
+                : this.walletCacheProperties.coldTtl();
+    }
+
+    private Mono<Wallet> applyToStorage(UUID id, OperationType type, Money amount) {
+        return this.walletMetrics.timeStorageApply(this.walletEngine.apply(id, type, amount));
     }
 }
@@ -0,0 +1,171 @@
+package ru.bezborodov.walletservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.config.StripingProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+import ru.bezborodov.walletservice.repository.WalletStripeRepository;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Striped wallets of the sql engine: the balance of a hot wallet is split across sub-balance rows, so
+ * concurrent operations on it update different rows instead of queueing on one row lock.
+ * <p>
+ * The stripe counts are cached locally and reloaded periodically. A stale count is harmless: the wallet row
+ * stays part of the balance, and an operation on a stripe that no longer exists falls back to
+ * {@link #rebalance(UUID, Money)}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wallet.engine", havingValue = "sql", matchIfMissing = true)
+public class WalletStripes {
+    static final int MAX_STRIPES = 256;
+
+    private final StripingProperties properties;
+    private final WalletRepository walletRepository;
+    private final WalletStripeRepository walletStripeRepository;
+    private final TransactionalOperator transactionalOperator;
+    private volatile Map<UUID, Integer> stripeCounts = Map.of();
+    private Disposable refresh;
+
+    public WalletStripes(StripingProperties properties,
+                         WalletRepository walletRepository,
+                         WalletStripeRepository walletStripeRepository,
+                         TransactionalOperator transactionalOperator) {
+        this.properties = properties;
+        this.walletRepository = walletRepository;
+        this.walletStripeRepository = walletStripeRepository;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    @PostConstruct
+    void start() {
+        this.refresh = Flux.interval(Duration.ZERO, this.properties.refreshInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> reload()
+                        .onErrorResume(error -> {
+                            log.error("Reloading wallet stripe counts failed", error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (this.refresh != null) {
+            this.refresh.dispose();
+        }
+    }
+
+    /**
+     * Returns the number of stripes of the wallet, or {@code 0} when it is not striped.
+     */
+    public int stripes(UUID id) {
+        return this.stripeCounts.getOrDefault(id, 0);
+    }
+
+    public Map<UUID, Integer> stripeCounts() {
+        return this.stripeCounts;
+    }
+
+    /**
+     * Applies {@code delta} to a random stripe; when that stripe is short, the wallet is rebalanced instead.
+     */
+    public Mono<Wallet> apply(UUID id, int stripes, Money delta) {
+        int stripe = ThreadLocalRandom.current().nextInt(stripes);
+        return this.walletStripeRepository.applyDelta(id, stripe, delta)
+                .switchIfEmpty(Mono.defer(() -> rebalance(id, delta)));
+    }
+
+    /**
+     * Applies {@code delta} to the whole balance of the wallet and spreads the result evenly across its stripes.
+     */
+    public Mono<Wallet> rebalance(UUID id, Money delta) {
+        return redistribute(id, -1, delta);
+    }
+
+    /**
+     * Splits the balance of the wallet across {@code stripes} sub-balances; {@code 0} moves it back to the wallet row.
+     */
+    public Mono<Wallet> restripe(UUID id, int stripes) {
+        if (stripes < 0 || stripes > MAX_STRIPES) {
+            return Mono.error(new IllegalArgumentException(
+                    "Stripe count must be between 0 and " + MAX_STRIPES + ": " + stripes));
+        }
+        return redistribute(id, stripes, Money.ZERO)
+                .doOnNext(wallet -> {
+                    Map<UUID, Integer> counts = new HashMap<>(this.stripeCounts);
+                    if (stripes == 0) {
+                        counts.remove(id);
+                    } else {
+                        counts.put(id, stripes);
+                    }
+                    this.stripeCounts = Map.copyOf(counts);
+                    log.info("Restriped wallet {} into {} stripes", id, stripes);
+                });
+    }
+
+    /**
+     * Locks the wallet row and its stripes, then rewrites them so that the stripes hold the balance plus
+     * {@code delta} in equal parts. A negative {@code stripes} keeps the current stripe count.
+     */
+    private Mono<Wallet> redistribute(UUID id, int stripes, Money delta) {
+        return this.walletRepository.lockAllById(new UUID[]{id}).next()
+                .switchIfEmpty(Mono.error(() -> new WalletNotFoundException("Wallet not found: " + id)))
+                .flatMap(wallet -> this.walletStripeRepository.lockBalances(id).collectList()
+                        .flatMap(balances -> {
+                            long total = wallet.getBalance().minorUnits();
+                            for (long balance : balances) {
+                                total = Math.addExact(total, balance);
+                            }
+                            total = Math.addExact(total, delta.minorUnits());
+                            if (total < 0) {
+                                return Mono.error(new InsufficientFundsException("Insufficient funds in wallet: " + id));
+                            }
+                            int count = stripes < 0 ? balances.size() : stripes;
+                            return write(id, total, count).thenReturn(new Wallet(id, Money.ofMinorUnits(total)));
+                        }))
+                .as(this.transactionalOperator::transactional);
+    }
+
+    private Mono<Void> write(UUID id, long total, int stripes) {
+        if (stripes == 0) {
+            return this.walletStripeRepository.deleteStripes(id)
+                    .then(this.walletRepository.updateBalance(id, Money.ofMinorUnits(total)));
+        }
+        Long[] balances = new Long[stripes];
+        long share = total / stripes;
+        long remainder = total % stripes;
+        for (int i = 0; i < stripes; i++) {
+            balances[i] = i < remainder ? share + 1 : share;
+        }
+        return this.walletStripeRepository.deleteStripes(id)
+                .then(this.walletStripeRepository.insertStripes(id, balances))
+                .then(this.walletRepository.updateBalance(id, Money.ZERO));
+    }
+
+    Mono<Void> reload() {
+        return this.walletStripeRepository.findStripeWalletIds()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.summingInt(id -> 1)))
+                .doOnNext(counts -> this.stripeCounts = Map.copyOf(counts))
+                .then();
+    }
+}
@@ -0,0 +1,70 @@
+package ru.bezborodov.walletservice.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Transfers of the engines that keep balances in {@code wallet.wallet}. All rows of a transfer are locked in id
+ * order, the order every multi-wallet transaction of these engines locks in, so opposite transfers and group
+ * commits wait for each other instead of deadlocking. All balances then change in one
+ * {@code UPDATE ... FROM unnest(...)}.
+ */
+final class WalletTransfers {
+
+    private WalletTransfers() {
+    }
+
+    /**
+     * Applies a transfer; the caller runs it in a transaction. {@code debitShortSource} is given the debit of a
+     * source whose row alone cannot cover it, and emits the updated source or fails.
+     */
+    static Flux<Wallet> transfer(WalletRepository walletRepository,
+                                 UUID sourceId,
+                                 Map<UUID, Money> credits,
+                                 Function<Money, Mono<Wallet>> debitShortSource) {
+        Money total = credits.values().stream().reduce(Money.ZERO, Money::plus);
+        List<UUID> ids = new ArrayList<>(credits.size() + 1);
+        ids.add(sourceId);
+        ids.addAll(credits.keySet());
+        return walletRepository.lockAllById(ids.toArray(UUID[]::new))
+                .collectMap(Wallet::getId)
+                .flatMapMany(locked -> {
+                    for (UUID id : ids) {
+                        if (!locked.containsKey(id)) {
+                            return Flux.<Wallet>error(new WalletNotFoundException("Wallet not found: " + id));
+                        }
+                    }
+                    if (locked.get(sourceId).getBalance().minus(total).isNegative()) {
+                        return debitShortSource.apply(total.negate())
+                                .flux()
+                                .concatWith(applyDeltas(walletRepository, credits));
+                    }
+                    Map<UUID, Money> deltas = new LinkedHashMap<>();
+                    deltas.put(sourceId, total.negate());
+                    deltas.putAll(credits);
+                    return applyDeltas(walletRepository, deltas);
+                });
+    }
+
+    private static Flux<Wallet> applyDeltas(WalletRepository walletRepository, Map<UUID, Money> deltas) {
+        UUID[] ids = new UUID[deltas.size()];
+        Long[] minorUnits = new Long[deltas.size()];
+        int i = 0;
+        for (Map.Entry<UUID, Money> delta : deltas.entrySet()) {
+            ids[i] = delta.getKey();
+            minorUnits[i++] = delta.getValue().minorUnits();
+        }
+        return walletRepository.applyDeltas(ids, minorUnits);
+    }
+}
@@ -0,0 +1,20 @@
+--liquibase formatted sql
+
+--changeset ValeryBezborodov:create-wallet-operation-table
+--comment create append-only ledger wallet.wallet_operation partitioned by month
+create table wallet.wallet_operation
+(
+    id                BIGSERIAL,
+    wallet_id         UUID             NOT NULL,
+    amount            NUMERIC(19,2)    NOT NULL,
+    created_at        TIMESTAMPTZ      NOT NULL DEFAULT now(),
+    PRIMARY KEY (id, created_at)
+) partition by range (created_at);
+create table wallet.wallet_operation_default partition of wallet.wallet_operation default;
+create index wallet_operation_wallet_id_id_idx on wallet.wallet_operation (wallet_id, id);
+--rollback drop table wallet.wallet_operation;
+
+--changeset ValeryBezborodov:add-wallet-snapshot-operation-id
+--comment last ledger operation folded into wallet.wallet.balance
+alter table wallet.wallet add column snapshot_operation_id BIGINT NOT NULL DEFAULT 0;
+--rollback alter table wallet.wallet drop column snapshot_operation_id;
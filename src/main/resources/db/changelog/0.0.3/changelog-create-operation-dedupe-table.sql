@@ -0,0 +1,14 @@
+--liquibase formatted sql
+
+--changeset ValeryBezborodov:create-operation-dedupe-table
+--comment create table wallet.operation_dedupe with outcomes of idempotent operations
+create table wallet.operation_dedupe
+(
+    idempotency_key   VARCHAR(128)     PRIMARY KEY,
+    wallet_id         UUID             NOT NULL,
+    status            VARCHAR(32),
+    balance           NUMERIC(19,2),
+    created_at        TIMESTAMPTZ      NOT NULL DEFAULT now()
+);
+create index operation_dedupe_created_at_idx on wallet.operation_dedupe (created_at);
+--rollback drop table wallet.operation_dedupe;
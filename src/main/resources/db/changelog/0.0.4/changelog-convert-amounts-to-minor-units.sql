@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+--changeset ValeryBezborodov:convert-amounts-to-minor-units
+--comment store balances and amounts as BIGINT minor units (1/100)
+alter table wallet.wallet alter column balance type BIGINT using (balance * 100)::BIGINT;
+alter table wallet.wallet_operation alter column amount type BIGINT using (amount * 100)::BIGINT;
+alter table wallet.operation_dedupe alter column balance type BIGINT using (balance * 100)::BIGINT;
+comment on column wallet.wallet.balance is 'balance in minor units (1/100)';
+comment on column wallet.wallet_operation.amount is 'signed amount in minor units (1/100)';
+comment on column wallet.operation_dedupe.balance is 'balance in minor units (1/100)';
+--rollback alter table wallet.operation_dedupe alter column balance type NUMERIC(19,2) using balance / 100.0;
+--rollback alter table wallet.wallet_operation alter column amount type NUMERIC(19,2) using amount / 100.0;
+--rollback alter table wallet.wallet alter column balance type NUMERIC(19,2) using balance / 100.0;
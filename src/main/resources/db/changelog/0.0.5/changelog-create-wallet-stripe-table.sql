@@ -0,0 +1,14 @@
+--liquibase formatted sql
+
+--changeset ValeryBezborodov:create-wallet-stripe-table
+--comment create table wallet.wallet_stripe with sub-balances of striped wallets
+create table wallet.wallet_stripe
+(
+    wallet_id   UUID     NOT NULL REFERENCES wallet.wallet (id),
+    stripe      INT      NOT NULL,
+    balance     BIGINT   NOT NULL DEFAULT 0 CHECK (balance >= 0),
+    PRIMARY KEY (wallet_id, stripe)
+);
+comment on table wallet.wallet_stripe is 'sub-balances of striped wallets; the balance of a wallet is wallet.balance plus its stripes';
+comment on column wallet.wallet_stripe.balance is 'balance in minor units (1/100)';
+--rollback drop table wallet.wallet_stripe;
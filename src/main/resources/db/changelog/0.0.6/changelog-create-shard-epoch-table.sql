@@ -0,0 +1,11 @@
+--liquibase formatted sql
+
+--changeset ValeryBezborodov:create-shard-epoch-table
+--comment create table wallet.shard_epoch with fencing epochs of shard owners
+create table wallet.shard_epoch
+(
+    shard   INT      PRIMARY KEY,
+    epoch   BIGINT   NOT NULL
+);
+comment on column wallet.shard_epoch.epoch is 'incremented by every new owner of the shard; writes of older owners are rejected';
+--rollback drop table wallet.shard_epoch;
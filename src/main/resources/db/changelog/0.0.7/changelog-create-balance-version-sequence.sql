@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+--changeset ValeryBezborodov:create-balance-version-sequence
+--comment create sequence wallet.balance_version_seq ordering the balance changes of a wallet
+create sequence wallet.balance_version_seq;
+comment on sequence wallet.balance_version_seq is 'drawn under the wallet row lock by every balance change, so the values of one wallet follow its commit order';
+--rollback drop sequence wallet.balance_version_seq;
@@ -0,0 +1,18 @@
+-- Applies a balance change to a Redis-authoritative wallet and appends it to the operations stream.
+-- KEYS[1] - balance key holding the balance in minor units
+-- KEYS[2] - operations stream flushed to Postgres
+-- ARGV[1] - wallet id
+-- ARGV[2] - signed delta in minor units
+-- Returns {1, balance, ms, seq} when applied, where ms and seq are the parts of the id of the stream entry,
+-- {0} when the balance is not loaded, {-1} on insufficient funds.
+local balance = redis.call('GET', KEYS[1])
+if not balance then
+    return {0}
+end
+if tonumber(balance) + tonumber(ARGV[2]) < 0 then
+    return {-1}
+end
+local updated = redis.call('INCRBY', KEYS[1], ARGV[2])
+local entry = redis.call('XADD', KEYS[2], '*', 'id', ARGV[1], 'balance', tostring(updated))
+local ms, seq = string.match(entry, '(%d+)-(%d+)')
+return {1, updated, tonumber(ms), tonumber(seq)}
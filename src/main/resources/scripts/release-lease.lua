@@ -0,0 +1,8 @@
+-- Frees a lease if it is still held by the caller.
+-- KEYS[1] - lease key
+-- ARGV[1] - id of the holder
+-- Returns 1 when the lease was freed, 0 when it expired or is held by someone else.
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,9 @@
+-- Extends a lease if it is still held by the caller.
+-- KEYS[1] - lease key
+-- ARGV[1] - id of the holder
+-- ARGV[2] - lease in milliseconds
+-- Returns 1 when the lease was extended, 0 when it expired or is held by someone else.
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+end
+return 0
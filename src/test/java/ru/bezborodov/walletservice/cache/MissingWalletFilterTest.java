@@ -0,0 +1,72 @@
+package ru.bezborodov.walletservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.WalletLookupProperties;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MissingWalletFilterTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    private MissingWalletFilter createFilter(boolean bloomFilterEnabled) {
+        return new MissingWalletFilter(new WalletLookupProperties(Duration.ofMinutes(1), 100,
+                bloomFilterEnabled, 1000, 0.01, Duration.ofMinutes(10)), walletRepository, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void isKnownMissing_ShouldRememberMissingWalletUntilRegistered() {
+        //given
+        MissingWalletFilter filter = createFilter(false);
+        UUID walletId = UUID.randomUUID();
+        //when
+        filter.markMissing(walletId);
+        //then
+        assertTrue(filter.isKnownMissing(walletId));
+        filter.register(walletId);
+        assertFalse(filter.isKnownMissing(walletId));
+    }
+
+    @Test
+    void isLikelyMissing_ShouldReportIdsAbsentFromBloomFilterWithoutRejectingThem() {
+        //given
+        MissingWalletFilter filter = createFilter(true);
+        UUID existing = UUID.randomUUID();
+        UUID created = UUID.randomUUID();
+        //when
+        when(walletRepository.count()).thenReturn(Mono.just(1L));
+        when(walletRepository.findAllIds()).thenReturn(Flux.just(existing));
+        StepVerifier.create(filter.rebuild()).verifyComplete();
+        //then
+        assertFalse(filter.isLikelyMissing(existing));
+        assertTrue(filter.isLikelyMissing(created));
+        assertFalse(filter.isKnownMissing(created));
+        filter.register(created);
+        assertFalse(filter.isLikelyMissing(created));
+    }
+
+    @Test
+    void isLikelyMissing_ShouldLetEverythingThroughBeforeBloomFilterIsBuilt() {
+        //given
+        MissingWalletFilter filter = createFilter(true);
+        UUID walletId = UUID.randomUUID();
+        //then
+        assertFalse(filter.isLikelyMissing(walletId));
+        assertFalse(filter.isKnownMissing(walletId));
+    }
+}
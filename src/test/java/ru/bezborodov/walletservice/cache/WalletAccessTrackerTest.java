@@ -0,0 +1,160 @@
+package ru.bezborodov.walletservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.ReactiveZSetOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.WalletCacheProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WalletAccessTrackerTest {
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Mock
+    private ReactiveZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    private WalletAccessTracker walletAccessTracker;
+
+    @BeforeEach
+    void setUp() {
+        walletAccessTracker = new WalletAccessTracker(new WalletCacheProperties(WalletRedisSerializer.Format.BINARY,
+                Duration.ofHours(1), Duration.ofMinutes(5), 4, Duration.ofMinutes(1), 10, Duration.ofSeconds(30),
+                Duration.ofMinutes(1)), redisTemplate, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void record_ShouldReportHotFromThreshold() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        for (int i = 0; i < 3; i++) {
+            assertFalse(walletAccessTracker.record(walletId));
+        }
+        //then
+        assertTrue(walletAccessTracker.record(walletId));
+        assertTrue(walletAccessTracker.isHot(walletId));
+    }
+
+    @Test
+    void age_ShouldCoolDownWallets() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        for (int i = 0; i < 4; i++) {
+            walletAccessTracker.record(walletId);
+        }
+        //when
+        walletAccessTracker.age();
+        //then
+        assertFalse(walletAccessTracker.isHot(walletId));
+        assertEquals(List.of(walletId), walletAccessTracker.hottest(10));
+    }
+
+    @Test
+    void hottest_ShouldOrderByFrequency() {
+        //given
+        UUID warmId = UUID.randomUUID();
+        UUID hotId = UUID.randomUUID();
+        UUID coldId = UUID.randomUUID();
+        //when
+        for (int i = 0; i < 4; i++) {
+            walletAccessTracker.record(warmId);
+        }
+        for (int i = 0; i < 8; i++) {
+            walletAccessTracker.record(hotId);
+        }
+        walletAccessTracker.record(coldId);
+        //then
+        assertEquals(List.of(hotId, warmId), walletAccessTracker.hottest(10));
+    }
+
+    @Test
+    void seed_ShouldMarkWalletsHot() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        walletAccessTracker.seed(List.of(walletId));
+        //then
+        assertTrue(walletAccessTracker.isHot(walletId));
+    }
+
+    @Test
+    void publishHottest_ShouldAddEstimatesAndHalveScoresOfClaimedInterval() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        for (int i = 0; i < 4; i++) {
+            walletAccessTracker.record(walletId);
+        }
+        givenSharedScores(true);
+        //when
+        StepVerifier.create(walletAccessTracker.publishHottest())
+                .verifyComplete();
+        //then
+        verify(zSetOperations).unionAndStore(WalletAccessTracker.HOT_WALLETS_KEY, List.of(),
+                WalletAccessTracker.HOT_WALLETS_KEY, Aggregate.SUM, Weights.of(0.5));
+        verify(zSetOperations).addAll(startsWith(WalletAccessTracker.HOT_WALLETS_KEY + ":"),
+                eq(List.of(ZSetOperations.TypedTuple.of(walletId.toString(), 4.0))));
+        verify(zSetOperations).unionAndStore(eq(WalletAccessTracker.HOT_WALLETS_KEY), anyList(),
+                eq(WalletAccessTracker.HOT_WALLETS_KEY), eq(Aggregate.SUM), eq(Weights.of(1, 1)));
+        verify(zSetOperations, never()).addAll(eq(WalletAccessTracker.HOT_WALLETS_KEY), anyList());
+    }
+
+    @Test
+    void publishHottest_ShouldNotHalveScoresOfIntervalClaimedByAnotherReplica() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        for (int i = 0; i < 4; i++) {
+            walletAccessTracker.record(walletId);
+        }
+        givenSharedScores(false);
+        //when
+        StepVerifier.create(walletAccessTracker.publishHottest())
+                .verifyComplete();
+        //then
+        verify(zSetOperations, never()).unionAndStore(anyString(), anyList(), anyString(), any(Aggregate.class),
+                eq(Weights.of(0.5)));
+        verify(zSetOperations).unionAndStore(eq(WalletAccessTracker.HOT_WALLETS_KEY), anyList(),
+                eq(WalletAccessTracker.HOT_WALLETS_KEY), eq(Aggregate.SUM), eq(Weights.of(1, 1)));
+    }
+
+    private void givenSharedScores(boolean decayClaimed) {
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(startsWith(WalletAccessTracker.DECAY_LEASE_PREFIX), anyString(),
+                eq(Duration.ofMinutes(2)))).thenReturn(Mono.just(decayClaimed));
+        lenient().when(zSetOperations.unionAndStore(anyString(), anyList(), anyString(), any(Aggregate.class),
+                any(Weights.class))).thenReturn(Mono.just(1L));
+        when(zSetOperations.addAll(anyString(), anyList())).thenReturn(Mono.just(1L));
+        when(zSetOperations.removeRange(eq(WalletAccessTracker.HOT_WALLETS_KEY), any(Range.class)))
+                .thenReturn(Mono.just(0L));
+        when(redisTemplate.delete(anyString())).thenReturn(Mono.just(1L));
+        when(redisTemplate.expire(anyString(), eq(Duration.ofMinutes(1)))).thenReturn(Mono.just(true));
+    }
+}
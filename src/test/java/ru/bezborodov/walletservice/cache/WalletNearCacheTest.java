@@ -0,0 +1,76 @@
+package ru.bezborodov.walletservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.NearCacheProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WalletNearCacheTest {
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    private WalletNearCache walletNearCache;
+
+    @BeforeEach
+    void setUp() {
+        walletNearCache = new WalletNearCache(new NearCacheProperties(true, 100, Duration.ofMinutes(1)),
+                redisTemplate, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void get_ShouldReturnPutWallet() {
+        //given
+        Wallet wallet = new Wallet(UUID.randomUUID(), Money.parse("500.00"));
+        //when
+        walletNearCache.put(wallet);
+        //then
+        assertEquals(wallet, walletNearCache.get(wallet.getId()));
+    }
+
+    @Test
+    void onInvalidation_ShouldEvictWalletChangedOnAnotherReplica() {
+        //given
+        Wallet wallet = new Wallet(UUID.randomUUID(), Money.parse("500.00"));
+        walletNearCache.put(wallet);
+        //when
+        walletNearCache.onInvalidation(UUID.randomUUID() + ":" + wallet.getId());
+        //then
+        assertNull(walletNearCache.get(wallet.getId()));
+    }
+
+    @Test
+    void onInvalidation_ShouldIgnoreOwnMessages() {
+        //given
+        Wallet wallet = new Wallet(UUID.randomUUID(), Money.parse("500.00"));
+        walletNearCache.put(wallet);
+        when(redisTemplate.convertAndSend(eq(WalletNearCache.INVALIDATION_CHANNEL), anyString()))
+                .thenReturn(Mono.just(1L));
+        //when
+        StepVerifier.create(walletNearCache.publishInvalidation(wallet.getId()))
+                .verifyComplete();
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(WalletNearCache.INVALIDATION_CHANNEL), message.capture());
+        walletNearCache.onInvalidation(message.getValue());
+        //then
+        assertEquals(wallet, walletNearCache.get(wallet.getId()));
+    }
+}
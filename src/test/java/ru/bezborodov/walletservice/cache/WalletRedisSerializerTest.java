@@ -0,0 +1,88 @@
+package ru.bezborodov.walletservice.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalletRedisSerializerTest {
+
+    private final WalletRedisSerializer binarySerializer = new WalletRedisSerializer(WalletRedisSerializer.Format.BINARY);
+    private final WalletRedisSerializer jsonSerializer = new WalletRedisSerializer(WalletRedisSerializer.Format.JSON);
+
+    @Test
+    void serialize_ShouldRoundTripBinaryEntry() {
+        //given
+        Wallet wallet = new Wallet(UUID.randomUUID(), Money.parse("12345678901234567.89"));
+        //when
+        byte[] bytes = binarySerializer.serialize(wallet);
+        //then
+        assertEquals(WalletRedisSerializer.BINARY_FORMAT_VERSION, bytes[0]);
+        assertEquals(wallet, binarySerializer.deserialize(bytes));
+    }
+
+    @Test
+    void serialize_ShouldBeSmallerThanJson() {
+        //given
+        Wallet wallet = new Wallet(UUID.randomUUID(), Money.parse("1000.00"));
+        //then
+        assertTrue(binarySerializer.serialize(wallet).length < jsonSerializer.serialize(wallet).length);
+    }
+
+    @Test
+    void serialize_ShouldRoundTripNegativeBalance() {
+        //given
+        Wallet wallet = new Wallet(UUID.randomUUID(), Money.parse("-0.05"));
+        //then
+        assertEquals(wallet, binarySerializer.deserialize(binarySerializer.serialize(wallet)));
+    }
+
+    @Test
+    void deserialize_ShouldReadDecimalBinaryEntry() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        byte[] unscaled = new BigDecimal("750.00").unscaledValue().toByteArray();
+        byte[] bytes = ByteBuffer.allocate(1 + 16 + 4 + unscaled.length)
+                .put((byte) 1)
+                .putLong(walletId.getMostSignificantBits())
+                .putLong(walletId.getLeastSignificantBits())
+                .putInt(2)
+                .put(unscaled)
+                .array();
+        //then
+        assertEquals(new Wallet(walletId, Money.parse("750.00")), binarySerializer.deserialize(bytes));
+    }
+
+    @Test
+    void deserialize_ShouldReadJsonEntry() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        byte[] json = ("{\"id\":\"" + walletId + "\",\"balance\":750.00}").getBytes(StandardCharsets.UTF_8);
+        //then
+        assertEquals(new Wallet(walletId, Money.parse("750.00")), binarySerializer.deserialize(json));
+    }
+
+    @Test
+    void deserialize_ShouldReadBinaryEntryInJsonMode() {
+        //given
+        Wallet wallet = new Wallet(UUID.randomUUID(), Money.parse("0.00"));
+        //then
+        assertEquals(wallet, jsonSerializer.deserialize(binarySerializer.serialize(wallet)));
+    }
+
+    @Test
+    void deserialize_ShouldRejectUnknownFormatVersion() {
+        //given
+        byte[] bytes = new byte[32];
+        bytes[0] = 42;
+        //then
+        assertThrows(SerializationException.class, () -> binarySerializer.deserialize(bytes));
+    }
+}
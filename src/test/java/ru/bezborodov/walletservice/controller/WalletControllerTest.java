@@ -1,21 +1,35 @@
 package ru.bezborodov.walletservice.controller;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.BalanceStreamProperties;
+import ru.bezborodov.walletservice.config.BulkOperationProperties;
+import ru.bezborodov.walletservice.controller.payload.BalancesRequestPayload;
+import ru.bezborodov.walletservice.controller.payload.OperationResultPayload;
+import ru.bezborodov.walletservice.controller.payload.PayoutRequestPayload;
 import ru.bezborodov.walletservice.controller.payload.RequestPayload;
+import ru.bezborodov.walletservice.entity.Money;
 import ru.bezborodov.walletservice.entity.OperationType;
 import ru.bezborodov.walletservice.entity.Wallet;
 import ru.bezborodov.walletservice.exception.InsufficientFundsException;
 import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.metrics.WalletMetrics;
 import ru.bezborodov.walletservice.service.WalletService;
 
-import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.mockito.Mockito.*;
@@ -26,6 +40,18 @@ class WalletControllerTest {
     @Mock
     WalletService walletService;
 
+    @Spy
+    BulkOperationProperties bulkOperationProperties = new BulkOperationProperties(4);
+
+    @Spy
+    WalletMetrics walletMetrics = new WalletMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    BalanceStreamProperties balanceStreamProperties = new BalanceStreamProperties(true, Duration.ofMinutes(1));
+
+    @Spy
+    Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     @InjectMocks
     WalletController walletController;
 
@@ -34,14 +60,14 @@ class WalletControllerTest {
         //given
         UUID walletId = UUID.randomUUID();
         OperationType operationType = OperationType.DEPOSIT;
-        BigDecimal amount = BigDecimal.valueOf(100.00);
+        Money amount = Money.parse("100.00");
         RequestPayload requestPayload = new RequestPayload(walletId, operationType, amount);
 
         //when
         when(walletService.performOperation(walletId, operationType, amount))
                 .thenReturn(Mono.empty());
 
-        StepVerifier.create(walletController.performOperation(Mono.just(requestPayload)))
+        StepVerifier.create(walletController.performOperation(null, Mono.just(requestPayload)))
                 //then
                 .expectNext(ResponseEntity.noContent().build())
                 .verifyComplete();
@@ -49,11 +75,31 @@ class WalletControllerTest {
         verifyNoMoreInteractions(walletService);
     }
 
+    @Test
+    void performOperation_ShouldPassIdempotencyKeyHeader() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        OperationType operationType = OperationType.DEPOSIT;
+        Money amount = Money.parse("100.00");
+        RequestPayload requestPayload = new RequestPayload(walletId, operationType, amount, "from-payload");
+
+        //when
+        when(walletService.performOperation(walletId, operationType, amount, "from-header"))
+                .thenReturn(Mono.just(new Wallet(walletId, amount)));
+
+        StepVerifier.create(walletController.performOperation("from-header", Mono.just(requestPayload)))
+                //then
+                .expectNext(ResponseEntity.noContent().build())
+                .verifyComplete();
+        verify(walletService).performOperation(walletId, operationType, amount, "from-header");
+        verifyNoMoreInteractions(walletService);
+    }
+
     @Test
     void getAmount_ShouldReturnWallet() {
         //given
         UUID walletId = UUID.randomUUID();
-        Wallet wallet = new Wallet(walletId, BigDecimal.valueOf(500.00));
+        Wallet wallet = new Wallet(walletId, Money.parse("500.00"));
         //when
         when(walletService.findWalletBalance(walletId))
                 .thenReturn(Mono.just(wallet));
@@ -67,6 +113,23 @@ class WalletControllerTest {
         verifyNoMoreInteractions(walletService);
     }
 
+    @Test
+    void getBalances_ShouldReturnResultsInRequestOrder() {
+        //given
+        UUID missingId = UUID.randomUUID();
+        Wallet wallet = new Wallet(UUID.randomUUID(), Money.parse("500.00"));
+        List<UUID> ids = List.of(missingId, wallet.getId());
+        //when
+        when(walletService.findWalletBalances(ids)).thenReturn(Mono.just(Map.of(wallet.getId(), wallet)));
+
+        StepVerifier.create(walletController.getBalances(Mono.just(new BalancesRequestPayload(ids))))
+                //then
+                .expectNext(List.of(OperationResultPayload.notFound(missingId), OperationResultPayload.ok(wallet)))
+                .verifyComplete();
+        verify(walletService).findWalletBalances(ids);
+        verifyNoMoreInteractions(walletService);
+    }
+
     @Test
     void getAmount_ShouldReturnNotFound() {
         //given
@@ -90,13 +153,13 @@ class WalletControllerTest {
         //given
         UUID walletId = UUID.randomUUID();
         OperationType operationType = OperationType.WITHDRAW;
-        BigDecimal amount = BigDecimal.valueOf(100.00);
+        Money amount = Money.parse("100.00");
         RequestPayload requestPayload = new RequestPayload(walletId, operationType, amount);
         //when
         when(walletService.performOperation(walletId, operationType, amount))
                 .thenReturn(Mono.error(new InsufficientFundsException("Insufficient funds in wallet: " + walletId)));
 
-        StepVerifier.create(walletController.performOperation(Mono.just(requestPayload)))
+        StepVerifier.create(walletController.performOperation(null, Mono.just(requestPayload)))
         //then
                 .expectErrorMatches(throwable -> throwable instanceof InsufficientFundsException &&
                         throwable.getMessage().equals("Insufficient funds in wallet: " + walletId))
@@ -105,4 +168,113 @@ class WalletControllerTest {
         verify(walletService).performOperation(walletId, operationType, amount);
         verifyNoMoreInteractions(walletService);
     }
-}
\ No newline at end of file
+
+    @Test
+    void performOperations_ShouldStreamResultPerOperationInOrder() {
+        //given
+        UUID okWalletId = UUID.randomUUID();
+        UUID missingWalletId = UUID.randomUUID();
+        UUID poorWalletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet updatedWallet = new Wallet(okWalletId, Money.parse("600.00"));
+        //when
+        when(walletService.performOperation(okWalletId, OperationType.DEPOSIT, amount))
+                .thenReturn(Mono.just(updatedWallet));
+        when(walletService.performOperation(missingWalletId, OperationType.DEPOSIT, amount))
+                .thenReturn(Mono.error(new WalletNotFoundException("Wallet not found: " + missingWalletId)));
+        when(walletService.performOperation(poorWalletId, OperationType.WITHDRAW, amount))
+                .thenReturn(Mono.error(new InsufficientFundsException("Insufficient funds in wallet: " + poorWalletId)));
+
+        StepVerifier.create(walletController.performOperations(Flux.just(
+                        new RequestPayload(okWalletId, OperationType.DEPOSIT, amount),
+                        new RequestPayload(missingWalletId, OperationType.DEPOSIT, amount),
+                        new RequestPayload(poorWalletId, OperationType.WITHDRAW, amount))))
+                //then
+                .expectNext(OperationResultPayload.ok(updatedWallet))
+                .expectNext(OperationResultPayload.notFound(missingWalletId))
+                .expectNext(OperationResultPayload.insufficientFunds(poorWalletId))
+                .verifyComplete();
+    }
+
+    @Test
+    void performOperations_ShouldReportBadLineAndContinue() {
+        //given
+        UUID firstWalletId = UUID.randomUUID();
+        UUID failingWalletId = UUID.randomUUID();
+        UUID lastWalletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet firstWallet = new Wallet(firstWalletId, Money.parse("600.00"));
+        Wallet lastWallet = new Wallet(lastWalletId, Money.parse("700.00"));
+        //when
+        when(walletService.performOperation(firstWalletId, OperationType.DEPOSIT, amount))
+                .thenReturn(Mono.just(firstWallet));
+        when(walletService.performOperation(failingWalletId, OperationType.DEPOSIT, amount, "retry-me"))
+                .thenReturn(Mono.error(new IllegalStateException("Connection closed")));
+        when(walletService.performOperation(lastWalletId, OperationType.DEPOSIT, amount))
+                .thenReturn(Mono.just(lastWallet));
+
+        StepVerifier.create(walletController.performOperations(Flux.just(
+                        new RequestPayload(firstWalletId, OperationType.DEPOSIT, amount),
+                        new RequestPayload(null, OperationType.DEPOSIT, amount, "no-id"),
+                        new RequestPayload(failingWalletId, OperationType.DEPOSIT, amount, "retry-me"),
+                        new RequestPayload(lastWalletId, OperationType.DEPOSIT, amount))))
+                //then
+                .expectNext(OperationResultPayload.ok(firstWallet))
+                .expectNext(OperationResultPayload.invalid(null, "no-id", "Id must not be null"))
+                .expectNext(OperationResultPayload.failed(failingWalletId, "retry-me"))
+                .expectNext(OperationResultPayload.ok(lastWallet))
+                .verifyComplete();
+    }
+
+    @Test
+    void streamBalance_ShouldSendBalanceEvents() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("500.00"));
+        Wallet changedWallet = new Wallet(walletId, Money.parse("600.00"));
+        //when
+        when(walletService.streamWalletBalance(walletId)).thenReturn(Flux.just(wallet, changedWallet));
+
+        StepVerifier.create(walletController.streamBalance(walletId))
+                //then
+                .expectNextMatches(event -> "balance".equals(event.event()) && wallet.equals(event.data()))
+                .expectNextMatches(event -> "balance".equals(event.event()) && changedWallet.equals(event.data()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void streamBalance_ShouldFailForUnknownWallet() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        when(walletService.streamWalletBalance(walletId))
+                .thenReturn(Flux.error(new WalletNotFoundException("Wallet not found: " + walletId)));
+
+        StepVerifier.create(walletController.streamBalance(walletId))
+                //then
+                .expectError(WalletNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void payout_ShouldTransferSummedAmountsInOneCall() {
+        //given
+        UUID sourceId = UUID.randomUUID();
+        UUID destinationId = UUID.randomUUID();
+        PayoutRequestPayload payload = new PayoutRequestPayload(sourceId, List.of(
+                new PayoutRequestPayload.Payout(destinationId, Money.parse("10.00")),
+                new PayoutRequestPayload.Payout(destinationId, Money.parse("5.00"))));
+        Wallet source = new Wallet(sourceId, Money.parse("85.00"));
+        Wallet destination = new Wallet(destinationId, Money.parse("15.00"));
+
+        //when
+        when(walletService.transfer(sourceId, Map.of(destinationId, Money.parse("15.00"))))
+                .thenReturn(Mono.just(List.of(source, destination)));
+
+        StepVerifier.create(walletController.payout(Mono.just(payload)))
+                //then
+                .expectNext(List.of(OperationResultPayload.ok(source), OperationResultPayload.ok(destination)))
+                .verifyComplete();
+    }
+}
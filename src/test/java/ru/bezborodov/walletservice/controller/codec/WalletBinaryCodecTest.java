@@ -0,0 +1,102 @@
+package ru.bezborodov.walletservice.controller.codec;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.MimeTypeUtils;
+import ru.bezborodov.walletservice.controller.payload.PayoutRequestPayload;
+import ru.bezborodov.walletservice.controller.payload.RequestPayload;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalletBinaryCodecTest {
+
+    private final WalletBinaryCodec.Encoder encoder = new WalletBinaryCodec.Encoder();
+    private final WalletBinaryCodec.Decoder decoder = new WalletBinaryCodec.Decoder();
+
+    @Test
+    void encode_ShouldRoundTripOperation() {
+        //given
+        RequestPayload payload = new RequestPayload(UUID.randomUUID(), OperationType.WITHDRAW,
+                Money.parse("12.34"), "order-42");
+        //when
+        DataBuffer buffer = encode(payload);
+        //then
+        assertEquals(16 + 1 + 8 + "order-42".length(), buffer.readableByteCount());
+        assertEquals(payload, decode(buffer, RequestPayload.class));
+    }
+
+    @Test
+    void encode_ShouldRoundTripOperationWithoutIdempotencyKey() {
+        //given
+        RequestPayload payload = new RequestPayload(UUID.randomUUID(), OperationType.DEPOSIT, Money.parse("0.01"));
+        //then
+        assertEquals(payload, decode(encode(payload), RequestPayload.class));
+    }
+
+    @Test
+    void encode_ShouldRoundTripWallet() {
+        //given
+        Wallet wallet = new Wallet(UUID.randomUUID(), Money.parse("1000.00"));
+        //then
+        assertEquals(wallet, decode(encode(wallet), Wallet.class));
+    }
+
+    @Test
+    void encode_ShouldRoundTripIds() {
+        //given
+        UUID[] ids = {UUID.randomUUID(), UUID.randomUUID()};
+        //then
+        assertArrayEquals(ids, (UUID[]) decode(encode(ids), UUID[].class));
+        assertEquals(ids[0], decode(encode(ids[0]), UUID.class));
+    }
+
+    @Test
+    void encode_ShouldRoundTripPayouts() {
+        //given
+        UUID firstId = UUID.randomUUID();
+        UUID secondId = UUID.randomUUID();
+        PayoutRequestPayload payload = new PayoutRequestPayload(UUID.randomUUID(), List.of(
+                new PayoutRequestPayload.Payout(firstId, Money.parse("10.00")),
+                new PayoutRequestPayload.Payout(secondId, Money.parse("2.50"))));
+        //when
+        PayoutRequestPayload decoded = (PayoutRequestPayload) decode(encode(payload), PayoutRequestPayload.class);
+        //then
+        assertEquals(payload, decoded);
+        assertEquals(Map.of(firstId, Money.parse("10.00"), secondId, Money.parse("2.50")), decoded.toCredits());
+    }
+
+    @Test
+    void decode_ShouldRejectTruncatedPayload() {
+        //given
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap(new byte[10]);
+        //then
+        assertThrows(DecodingException.class, () -> decode(buffer, RequestPayload.class));
+    }
+
+    @Test
+    void canEncode_ShouldRejectOtherTypesAndMimeTypes() {
+        //then
+        assertFalse(encoder.canEncode(ResolvableType.forClass(String.class), WalletBinaryCodec.MIME_TYPE));
+        assertFalse(decoder.canDecode(ResolvableType.forClass(Wallet.class), MimeTypeUtils.APPLICATION_JSON));
+        assertTrue(decoder.canDecode(ResolvableType.forClass(Wallet.class), WalletBinaryCodec.MIME_TYPE));
+    }
+
+    private DataBuffer encode(Object value) {
+        return encoder.encodeValue(value, DefaultDataBufferFactory.sharedInstance,
+                ResolvableType.forInstance(value), WalletBinaryCodec.MIME_TYPE, Map.of());
+    }
+
+    private Object decode(DataBuffer buffer, Class<?> type) {
+        return decoder.decode(buffer, ResolvableType.forClass(type), WalletBinaryCodec.MIME_TYPE, Map.of());
+    }
+}
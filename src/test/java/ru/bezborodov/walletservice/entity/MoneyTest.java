@@ -0,0 +1,81 @@
+package ru.bezborodov.walletservice.entity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void parse_ShouldReadPlainDecimals() {
+        assertEquals(100000L, Money.parse("1000").minorUnits());
+        assertEquals(100050L, Money.parse("1000.5").minorUnits());
+        assertEquals(12345L, Money.parse("123.450").minorUnits());
+        assertEquals(-5L, Money.parse("-0.05").minorUnits());
+        assertEquals(150000L, Money.parse("1.5E3").minorUnits());
+    }
+
+    @Test
+    void parse_ShouldRejectSubMinorUnitAndInvalidAmounts() {
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("0.001"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("1.2.3"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("-"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("92233720368547758.08"));
+    }
+
+    @Test
+    void parse_ShouldRejectHugeExponentsWithoutRescaling() {
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("1e100000000"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("-1E100000000"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("1e-100000000"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("-1E-100000000"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("1e17"));
+        assertEquals(Money.ZERO, Money.parse("0e-100000000"));
+        assertEquals(Money.parse("10000000000000000.00"), Money.parse("1e16"));
+    }
+
+    @Test
+    void toString_ShouldFormatTwoDecimalPlaces() {
+        assertEquals("1000.50", Money.parse("1000.5").toString());
+        assertEquals("-0.05", Money.ofMinorUnits(-5).toString());
+        assertEquals("-12.30", Money.ofMinorUnits(-1230).toString());
+        assertEquals("0.00", Money.ZERO.toString());
+    }
+
+    @Test
+    void plus_ShouldFailOnOverflow() {
+        //given
+        Money max = Money.ofMinorUnits(Long.MAX_VALUE);
+        //then
+        assertEquals(Money.parse("0.01"), Money.parse("0.03").minus(Money.parse("0.02")));
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.parse("0.01")));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinorUnits(Long.MIN_VALUE).negate());
+    }
+
+    @Test
+    void of_ShouldConvertBigDecimal() {
+        assertEquals(Money.parse("750.00"), Money.of(new BigDecimal("750")));
+        assertEquals(new BigDecimal("750.00"), Money.parse("750").toBigDecimal());
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("0.001")));
+    }
+
+    @Test
+    void json_ShouldRoundTripAsNumber() throws Exception {
+        //given
+        Wallet wallet = new Wallet(UUID.randomUUID(), Money.parse("750.5"));
+        //when
+        String json = objectMapper.writeValueAsString(wallet);
+        //then
+        assertTrue(json.contains("\"balance\":750.50"));
+        assertEquals(wallet, objectMapper.readValue(json, Wallet.class));
+        assertEquals(Money.parse("10.00"), objectMapper.readValue("\"10\"", Money.class));
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("0.001", Money.class));
+    }
+}
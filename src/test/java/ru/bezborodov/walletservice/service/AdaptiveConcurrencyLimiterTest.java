@@ -0,0 +1,112 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.exception.ConcurrencyLimitExceededException;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new AdaptiveConcurrencyLimiter("write", 2, 1, 4, Duration.ofMillis(100), 0.5,
+                Duration.ofSeconds(1), meterRegistry);
+    }
+
+    @Test
+    void limit_ShouldRejectRequestsAboveLimit() {
+        //given
+        Sinks.One<String> first = Sinks.one();
+        Sinks.One<String> second = Sinks.one();
+        Mono<String> held = Mono.zip(limiter.limit(first.asMono()), limiter.limit(second.asMono()),
+                (a, b) -> a + b);
+        //when
+        StepVerifier.create(held)
+                .then(() -> StepVerifier.create(limiter.limit(Mono.just("third")))
+                        //then
+                        .expectErrorMatches(throwable -> throwable instanceof ConcurrencyLimitExceededException &&
+                                ((ConcurrencyLimitExceededException) throwable).getRetryAfter()
+                                        .equals(Duration.ofSeconds(1)) &&
+                                throwable.getStackTrace().length == 0)
+                        .verify())
+                .then(() -> {
+                    first.tryEmitValue("a");
+                    second.tryEmitValue("b");
+                })
+                .expectNext("ab")
+                .verifyComplete();
+
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(1, meterRegistry.counter("wallet.concurrency.rejections", "budget", "write").count());
+    }
+
+    @Test
+    void onSample_ShouldGrowLimitWhileFastAndInUse() {
+        //when
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(10), 2, false);
+        }
+        //then
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void onSample_ShouldNotGrowIdleLimit() {
+        //when
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(10), 0, false);
+        }
+        //then
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void onSample_ShouldBackOffOnSlowOrFailedRequests() {
+        //when
+        limiter.onSample(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(500), 2, false);
+        //then
+        assertEquals(1, limiter.getLimit());
+        limiter.onSample(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(10), 2, true);
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    void onSample_ShouldBackOffOncePerWindow() {
+        //given
+        AdaptiveConcurrencyLimiter readLimiter = new AdaptiveConcurrencyLimiter("read", 32, 4, 512,
+                Duration.ofMillis(50), 0.9, Duration.ofSeconds(1), meterRegistry);
+        long spikeStart = System.nanoTime();
+        //when
+        for (int i = 0; i < 32; i++) {
+            readLimiter.onSample(spikeStart, TimeUnit.MILLISECONDS.toNanos(500), 32, false);
+        }
+        //then
+        assertEquals(28, readLimiter.getLimit());
+        readLimiter.onSample(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(500), 28, false);
+        assertEquals(25, readLimiter.getLimit());
+    }
+
+    @Test
+    void limit_ShouldTreatBusinessRejectionsAsSuccess() {
+        //when
+        StepVerifier.create(limiter.limit(Mono.error(new InsufficientFundsException("Insufficient funds"))))
+                .expectError(InsufficientFundsException.class)
+                .verify();
+        //then
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,178 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.GroupCommitProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitWalletEngineTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    private GroupCommitWalletEngine walletEngine;
+
+    @BeforeEach
+    void setUp() {
+        // Every batch is exactly two operations: the linger never expires within a test.
+        walletEngine = new GroupCommitWalletEngine(walletRepository, transactionalOperator,
+                new GroupCommitProperties(2, Duration.ofMinutes(1), 1), new SimpleMeterRegistry());
+        walletEngine.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        walletEngine.stop();
+    }
+
+    @Test
+    void apply_ShouldRejectOverdraftAfterEarlierOperationInSameBatch() {
+        //given
+        UUID id = UUID.randomUUID();
+        Money amount = Money.parse("60.00");
+        //when
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.nextVersion()).thenReturn(Mono.just(7L));
+        when(walletRepository.lockAllById(new UUID[]{id}))
+                .thenReturn(Flux.just(new Wallet(id, Money.parse("100.00"))));
+        when(walletRepository.updateBalances(new UUID[]{id}, new Long[]{4000L})).thenReturn(Mono.just(1));
+
+        CompletableFuture<Wallet> first = walletEngine.apply(id, OperationType.WITHDRAW, amount).toFuture();
+        CompletableFuture<Wallet> second = walletEngine.apply(id, OperationType.WITHDRAW, amount).toFuture();
+        //then
+        StepVerifier.create(Mono.fromFuture(first))
+                .expectNextMatches(wallet -> wallet.equals(new Wallet(id, Money.parse("40.00")))
+                        && wallet.getVersion() == 7L)
+                .verifyComplete();
+        StepVerifier.create(Mono.fromFuture(second))
+                .expectErrorMatches(throwable -> throwable instanceof InsufficientFundsException &&
+                        throwable.getMessage().equals("Insufficient funds in wallet: " + id))
+                .verify();
+
+        verify(walletRepository).updateBalances(new UUID[]{id}, new Long[]{4000L});
+    }
+
+    @Test
+    void apply_ShouldRejectUnknownWalletAndCommitTheRestOfBatch() {
+        //given
+        UUID knownId = UUID.randomUUID();
+        UUID unknownId = UUID.randomUUID();
+        Money amount = Money.parse("50.00");
+        //when
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.nextVersion()).thenReturn(Mono.just(7L));
+        when(walletRepository.lockAllById(new UUID[]{knownId, unknownId}))
+                .thenReturn(Flux.just(new Wallet(knownId, Money.parse("100.00"))));
+        when(walletRepository.updateBalances(new UUID[]{knownId}, new Long[]{15000L})).thenReturn(Mono.just(1));
+
+        CompletableFuture<Wallet> known = walletEngine.apply(knownId, OperationType.DEPOSIT, amount).toFuture();
+        CompletableFuture<Wallet> unknown = walletEngine.apply(unknownId, OperationType.DEPOSIT, amount).toFuture();
+        //then
+        StepVerifier.create(Mono.fromFuture(known))
+                .expectNext(new Wallet(knownId, Money.parse("150.00")))
+                .verifyComplete();
+        StepVerifier.create(Mono.fromFuture(unknown))
+                .expectErrorMatches(throwable -> throwable instanceof WalletNotFoundException &&
+                        throwable.getMessage().equals("Wallet not found: " + unknownId))
+                .verify();
+    }
+
+    @Test
+    void apply_ShouldFailWholeBatchWhenWriteFailsAndKeepCommittingLaterBatches() {
+        //given
+        UUID firstId = UUID.randomUUID();
+        UUID secondId = UUID.randomUUID();
+        Money amount = Money.parse("10.00");
+        RuntimeException writeError = new RuntimeException("Connection reset");
+        //when
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.nextVersion()).thenReturn(Mono.just(7L));
+        when(walletRepository.lockAllById(new UUID[]{firstId, secondId})).thenReturn(Flux.just(
+                new Wallet(firstId, Money.parse("100.00")), new Wallet(secondId, Money.parse("100.00"))));
+        when(walletRepository.updateBalances(new UUID[]{firstId, secondId}, new Long[]{11000L, 11000L}))
+                .thenReturn(Mono.error(writeError), Mono.just(2));
+
+        CompletableFuture<Wallet> failedFirst = walletEngine.apply(firstId, OperationType.DEPOSIT, amount).toFuture();
+        CompletableFuture<Wallet> failedSecond = walletEngine.apply(secondId, OperationType.DEPOSIT, amount).toFuture();
+        CompletableFuture<Wallet> first = walletEngine.apply(firstId, OperationType.DEPOSIT, amount).toFuture();
+        CompletableFuture<Wallet> second = walletEngine.apply(secondId, OperationType.DEPOSIT, amount).toFuture();
+        //then
+        StepVerifier.create(Mono.fromFuture(failedFirst))
+                .expectErrorMatches(throwable -> throwable == writeError)
+                .verify();
+        StepVerifier.create(Mono.fromFuture(failedSecond))
+                .expectErrorMatches(throwable -> throwable == writeError)
+                .verify();
+        StepVerifier.create(Mono.fromFuture(first))
+                .expectNext(new Wallet(firstId, Money.parse("110.00")))
+                .verifyComplete();
+        StepVerifier.create(Mono.fromFuture(second))
+                .expectNext(new Wallet(secondId, Money.parse("110.00")))
+                .verifyComplete();
+
+        verify(walletRepository, times(2)).updateBalances(new UUID[]{firstId, secondId}, new Long[]{11000L, 11000L});
+    }
+
+    @Test
+    void transfer_ShouldApplyAllDeltasInOneStatement() {
+        //given
+        UUID sourceId = UUID.randomUUID();
+        UUID destinationId = UUID.randomUUID();
+        Wallet source = new Wallet(sourceId, Money.parse("900.00"));
+        Wallet destination = new Wallet(destinationId, Money.parse("100.00"));
+        //when
+        when(transactionalOperator.transactional(any(Flux.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.lockAllById(new UUID[]{sourceId, destinationId})).thenReturn(Flux.just(
+                new Wallet(sourceId, Money.parse("1000.00")), new Wallet(destinationId, Money.ZERO)));
+        when(walletRepository.applyDeltas(new UUID[]{sourceId, destinationId}, new Long[]{-10000L, 10000L}))
+                .thenReturn(Flux.just(source, destination));
+        //then
+        StepVerifier.create(walletEngine.transfer(sourceId, Map.of(destinationId, Money.parse("100.00"))))
+                .expectNext(source, destination)
+                .verifyComplete();
+    }
+
+    @Test
+    void transfer_ShouldThrowInsufficientFundsExceptionWithoutWriting() {
+        //given
+        UUID sourceId = UUID.randomUUID();
+        UUID destinationId = UUID.randomUUID();
+        //when
+        when(transactionalOperator.transactional(any(Flux.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.lockAllById(new UUID[]{sourceId, destinationId})).thenReturn(Flux.just(
+                new Wallet(sourceId, Money.parse("50.00")), new Wallet(destinationId, Money.ZERO)));
+        //then
+        StepVerifier.create(walletEngine.transfer(sourceId, Map.of(destinationId, Money.parse("100.00"))))
+                .expectErrorMatches(throwable -> throwable instanceof InsufficientFundsException &&
+                        throwable.getMessage().equals("Insufficient funds in wallet: " + sourceId))
+                .verify();
+
+        verify(walletRepository, never()).applyDeltas(any(), any());
+    }
+}
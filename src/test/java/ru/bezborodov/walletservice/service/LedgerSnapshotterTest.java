@@ -0,0 +1,88 @@
+package ru.bezborodov.walletservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.LedgerProperties;
+import ru.bezborodov.walletservice.repository.WalletOperationRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerSnapshotterTest {
+    private static final Duration LEASE = Duration.ofSeconds(30);
+
+    @Mock
+    private WalletOperationRepository walletOperationRepository;
+
+    @Mock
+    private DatabaseClient databaseClient;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    private LedgerSnapshotter ledgerSnapshotter;
+
+    @BeforeEach
+    void setUp() {
+        ledgerSnapshotter = new LedgerSnapshotter(walletOperationRepository, databaseClient, transactionalOperator,
+                new LedgerProperties(Duration.ofSeconds(5), 4, LEASE), redisTemplate);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void acquireLease_ShouldFoldAfterNewestSnapshotOnceAcquired() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        when(valueOperations.setIfAbsent(eq(LedgerSnapshotter.LEASE_KEY), anyString(), eq(LEASE)))
+                .thenReturn(Mono.just(true));
+        when(walletOperationRepository.findLastSnapshotId()).thenReturn(Mono.just(41L));
+        when(walletOperationRepository.findLastId()).thenReturn(Mono.just(42L));
+        when(walletOperationRepository.findWalletIdsBetween(41L, 42L)).thenReturn(Flux.just(walletId));
+        when(walletOperationRepository.lockWallet(walletId)).thenReturn(Mono.just(walletId));
+        when(walletOperationRepository.foldIntoSnapshot(walletId)).thenReturn(Mono.empty());
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        //then
+        StepVerifier.create(ledgerSnapshotter.acquireLease().filter(Boolean::booleanValue)
+                        .flatMap(leader -> ledgerSnapshotter.snapshot()))
+                .verifyComplete();
+
+        verify(walletOperationRepository).foldIntoSnapshot(walletId);
+    }
+
+    @Test
+    void acquireLease_ShouldNotLeadWhileLeaseIsHeldElsewhere() {
+        //when
+        when(valueOperations.setIfAbsent(eq(LedgerSnapshotter.LEASE_KEY), anyString(), eq(LEASE)))
+                .thenReturn(Mono.just(false));
+        doReturn(Flux.just(0L)).when(redisTemplate)
+                .execute(any(RedisScript.class), eq(List.of(LedgerSnapshotter.LEASE_KEY)), anyList());
+        //then
+        StepVerifier.create(ledgerSnapshotter.acquireLease())
+                .expectNext(false)
+                .verifyComplete();
+
+        verify(walletOperationRepository, never()).findLastSnapshotId();
+    }
+}
@@ -0,0 +1,153 @@
+package ru.bezborodov.walletservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.WalletOperationRepository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerWalletEngineTest {
+
+    @Mock
+    private WalletOperationRepository walletOperationRepository;
+
+    @InjectMocks
+    private LedgerWalletEngine walletEngine;
+
+    @Test
+    void apply_ShouldAppendWithdrawalToLedger() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("400.00"));
+        //when
+        when(walletOperationRepository.lockWallet(walletId)).thenReturn(Mono.just(walletId));
+        when(walletOperationRepository.appendDelta(walletId, amount.negate())).thenReturn(Mono.just(updatedWallet));
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.WITHDRAW, amount))
+                .expectNext(updatedWallet)
+                .verifyComplete();
+
+        verify(walletOperationRepository).appendDelta(walletId, amount.negate());
+    }
+
+    @Test
+    void apply_ShouldThrowInsufficientFundsException() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("1000.00");
+        //when
+        when(walletOperationRepository.lockWallet(walletId)).thenReturn(Mono.just(walletId));
+        when(walletOperationRepository.appendDelta(walletId, amount.negate())).thenReturn(Mono.empty());
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.WITHDRAW, amount))
+                .expectErrorMatches(throwable -> throwable instanceof InsufficientFundsException &&
+                        throwable.getMessage().equals("Insufficient funds in wallet: " + walletId))
+                .verify();
+    }
+
+    @Test
+    void apply_ShouldThrowWalletNotFoundException() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        //when
+        when(walletOperationRepository.lockWallet(walletId)).thenReturn(Mono.empty());
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, amount))
+                .expectErrorMatches(throwable -> throwable instanceof WalletNotFoundException &&
+                        throwable.getMessage().equals("Wallet not found: " + walletId))
+                .verify();
+
+        verify(walletOperationRepository, never()).appendDelta(any(UUID.class), any(Money.class));
+    }
+
+    @Test
+    void findWallet_ShouldReturnSnapshotPlusLedgerDelta() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("750.00"));
+        //when
+        when(walletOperationRepository.findBalance(walletId)).thenReturn(Mono.just(wallet));
+        //then
+        StepVerifier.create(walletEngine.findWallet(walletId))
+                .expectNext(wallet)
+                .verifyComplete();
+    }
+
+    @Test
+    void transfer_ShouldAppendDebitAndCreditsAfterLockingAllWallets() {
+        //given
+        UUID sourceId = UUID.randomUUID();
+        UUID firstId = UUID.randomUUID();
+        UUID secondId = UUID.randomUUID();
+        Map<UUID, Money> credits = new LinkedHashMap<>();
+        credits.put(firstId, Money.parse("100.00"));
+        credits.put(secondId, Money.parse("50.00"));
+        Wallet source = new Wallet(sourceId, Money.parse("850.00"));
+        Wallet first = new Wallet(firstId, Money.parse("100.00"));
+        Wallet second = new Wallet(secondId, Money.parse("50.00"));
+        //when
+        when(walletOperationRepository.lockWallets(new UUID[]{sourceId, firstId, secondId}))
+                .thenReturn(Flux.just(secondId, sourceId, firstId));
+        when(walletOperationRepository.appendDelta(sourceId, Money.parse("-150.00"))).thenReturn(Mono.just(source));
+        when(walletOperationRepository.appendDelta(firstId, Money.parse("100.00"))).thenReturn(Mono.just(first));
+        when(walletOperationRepository.appendDelta(secondId, Money.parse("50.00"))).thenReturn(Mono.just(second));
+        //then
+        StepVerifier.create(walletEngine.transfer(sourceId, credits))
+                .expectNext(source, first, second)
+                .verifyComplete();
+    }
+
+    @Test
+    void transfer_ShouldThrowInsufficientFundsExceptionBeforeCrediting() {
+        //given
+        UUID sourceId = UUID.randomUUID();
+        UUID destinationId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        //when
+        when(walletOperationRepository.lockWallets(new UUID[]{sourceId, destinationId}))
+                .thenReturn(Flux.just(sourceId, destinationId));
+        when(walletOperationRepository.appendDelta(sourceId, amount.negate())).thenReturn(Mono.empty());
+        //then
+        StepVerifier.create(walletEngine.transfer(sourceId, Map.of(destinationId, amount)))
+                .expectErrorMatches(throwable -> throwable instanceof InsufficientFundsException &&
+                        throwable.getMessage().equals("Insufficient funds in wallet: " + sourceId))
+                .verify();
+
+        verify(walletOperationRepository, never()).appendDelta(destinationId, amount);
+    }
+
+    @Test
+    void transfer_ShouldThrowWalletNotFoundExceptionForUnknownDestination() {
+        //given
+        UUID sourceId = UUID.randomUUID();
+        UUID destinationId = UUID.randomUUID();
+        //when
+        when(walletOperationRepository.lockWallets(new UUID[]{sourceId, destinationId}))
+                .thenReturn(Flux.just(sourceId));
+        //then
+        StepVerifier.create(walletEngine.transfer(sourceId, Map.of(destinationId, Money.parse("100.00"))))
+                .expectErrorMatches(throwable -> throwable instanceof WalletNotFoundException &&
+                        throwable.getMessage().equals("Wallet not found: " + destinationId))
+                .verify();
+
+        verify(walletOperationRepository, never()).appendDelta(any(), any());
+    }
+}
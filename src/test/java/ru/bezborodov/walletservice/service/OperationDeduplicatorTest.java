@@ -0,0 +1,230 @@
+package ru.bezborodov.walletservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.IdempotencyProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationDedupe;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.OperationInProgressException;
+import ru.bezborodov.walletservice.exception.OperationOutcomeUnknownException;
+import ru.bezborodov.walletservice.repository.OperationDedupeRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OperationDeduplicatorTest {
+    private static final Duration TTL = Duration.ofHours(24);
+
+    @Mock
+    private OperationDedupeRepository operationDedupeRepository;
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private WalletEngine walletEngine;
+
+    private OperationDeduplicator operationDeduplicator;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        operationDeduplicator = new OperationDeduplicator(operationDedupeRepository, redisTemplate,
+                transactionalOperator, new IdempotencyProperties(TTL, Duration.ofHours(1)), walletEngine);
+    }
+
+    @Test
+    void execute_ShouldApplyOperationForNewKey() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("600.00"));
+        AtomicInteger callbacks = new AtomicInteger();
+        //when
+        when(valueOperations.setIfAbsent("idempotency:key-1", "pending", TTL)).thenReturn(Mono.just(true));
+        when(operationDedupeRepository.reserve("key-1", walletId)).thenReturn(Mono.just("key-1"));
+        when(operationDedupeRepository.complete("key-1", "OK", updatedWallet.getBalance())).thenReturn(Mono.empty());
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(valueOperations.set("idempotency:key-1", "OK:" + walletId + ":600.00", TTL)).thenReturn(Mono.just(true));
+        //then
+        StepVerifier.create(operationDeduplicator.execute("key-1", walletId, Mono.just(updatedWallet),
+                        wallet -> {
+                            callbacks.incrementAndGet();
+                            return Mono.just(wallet);
+                        }))
+                .expectNext(updatedWallet)
+                .verifyComplete();
+
+        assertEquals(1, callbacks.get());
+        verify(operationDedupeRepository).complete("key-1", "OK", updatedWallet.getBalance());
+    }
+
+    @Test
+    void execute_ShouldReplayOutcomeFromRedis() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        when(valueOperations.setIfAbsent("idempotency:key-2", "pending", TTL)).thenReturn(Mono.just(false));
+        when(valueOperations.get("idempotency:key-2")).thenReturn(Mono.just("INSUFFICIENT_FUNDS:" + walletId));
+        //then
+        StepVerifier.create(operationDeduplicator.execute("key-2", walletId,
+                        Mono.error(new IllegalStateException("must not run")), Mono::just))
+                .expectErrorMatches(throwable -> throwable instanceof InsufficientFundsException &&
+                        throwable.getMessage().equals("Insufficient funds in wallet: " + walletId))
+                .verify();
+
+        verifyNoInteractions(operationDedupeRepository);
+    }
+
+    @Test
+    void execute_ShouldReplayOutcomeFromDatabaseWhenKeyIsPending() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money balance = Money.parse("400.00");
+        AtomicInteger callbacks = new AtomicInteger();
+        //when
+        when(valueOperations.setIfAbsent("idempotency:key-3", "pending", TTL)).thenReturn(Mono.just(false));
+        when(valueOperations.get("idempotency:key-3")).thenReturn(Mono.just("pending"));
+        when(operationDedupeRepository.reserve("key-3", walletId)).thenReturn(Mono.empty());
+        when(operationDedupeRepository.findById("key-3"))
+                .thenReturn(Mono.just(new OperationDedupe("key-3", walletId, "OK", balance, null)));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(valueOperations.set("idempotency:key-3", "OK:" + walletId + ":400.00", TTL)).thenReturn(Mono.just(true));
+        //then
+        StepVerifier.create(operationDeduplicator.execute("key-3", walletId,
+                        Mono.error(new IllegalStateException("must not run")),
+                        wallet -> {
+                            callbacks.incrementAndGet();
+                            return Mono.just(wallet);
+                        }))
+                .expectNext(new Wallet(walletId, balance))
+                .verifyComplete();
+
+        assertEquals(0, callbacks.get());
+        verify(operationDedupeRepository, never()).complete(anyString(), anyString(), any());
+    }
+
+    @Test
+    void execute_ShouldNotHoldConnectionWhileBatchingEngineApplies() {
+        //given
+        int concurrency = 4;
+        Semaphore pool = new Semaphore(2);
+        Sinks.Empty<Void> batch = Sinks.empty();
+        UUID walletId = UUID.randomUUID();
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("600.00"));
+        //when
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> Mono.usingWhen(
+                Mono.fromCallable(() -> {
+                    if (!pool.tryAcquire()) {
+                        throw new IllegalStateException("Connection pool exhausted");
+                    }
+                    return pool;
+                }),
+                connection -> invocation.<Mono<?>>getArgument(0),
+                connection -> Mono.fromRunnable(connection::release)));
+        when(valueOperations.setIfAbsent(anyString(), eq("pending"), eq(TTL))).thenReturn(Mono.just(true));
+        when(operationDedupeRepository.reserve(anyString(), eq(walletId)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(operationDedupeRepository.complete(anyString(), eq("OK"), eq(updatedWallet.getBalance())))
+                .thenReturn(Mono.empty());
+        when(valueOperations.set(anyString(), eq("OK:" + walletId + ":600.00"), eq(TTL))).thenReturn(Mono.just(true));
+
+        // The batch of the engine needs a connection from the same pool as the keyed requests.
+        Mono<Wallet> operation = batch.asMono()
+                .then(Mono.just(updatedWallet).as(transactionalOperator::transactional));
+        List<CompletableFuture<Wallet>> results = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            results.add(operationDeduplicator.execute("key-" + i, walletId, operation, Mono::just).toFuture());
+        }
+        batch.tryEmitEmpty();
+        //then
+        for (CompletableFuture<Wallet> result : results) {
+            StepVerifier.create(Mono.fromFuture(result))
+                    .expectNext(updatedWallet)
+                    .verifyComplete();
+        }
+        assertEquals(2, pool.availablePermits());
+        verify(operationDedupeRepository, times(concurrency)).complete(anyString(), eq("OK"), any());
+    }
+
+    @Test
+    void execute_ShouldReleaseKeyWhenBatchingEngineFails() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        IllegalStateException failure = new IllegalStateException("Connection reset");
+        //when
+        when(valueOperations.setIfAbsent("idempotency:key-5", "pending", TTL)).thenReturn(Mono.just(true));
+        when(operationDedupeRepository.reserve("key-5", walletId)).thenReturn(Mono.just("key-5"));
+        when(operationDedupeRepository.release("key-5")).thenReturn(Mono.just(1));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        //then
+        StepVerifier.create(operationDeduplicator.execute("key-5", walletId, Mono.error(failure), Mono::just))
+                .expectErrorMatches(throwable -> throwable == failure)
+                .verify();
+
+        verify(operationDedupeRepository).release("key-5");
+        verify(operationDedupeRepository, never()).complete(anyString(), anyString(), any());
+    }
+
+    @Test
+    void execute_ShouldKeepKeyWhenOutcomeIsUnknown() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        OperationOutcomeUnknownException failure =
+                new OperationOutcomeUnknownException("Forward timed out", new IllegalStateException());
+        //when
+        when(valueOperations.setIfAbsent("idempotency:key-7", "pending", TTL)).thenReturn(Mono.just(true));
+        when(operationDedupeRepository.reserve("key-7", walletId)).thenReturn(Mono.just("key-7"));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        //then
+        StepVerifier.create(operationDeduplicator.execute("key-7", walletId, Mono.error(failure), Mono::just))
+                .expectErrorMatches(throwable -> throwable == failure)
+                .verify();
+
+        verify(operationDedupeRepository, never()).release(anyString());
+        verify(operationDedupeRepository, never()).complete(anyString(), anyString(), any());
+    }
+
+    @Test
+    void execute_ShouldRejectKeyThatIsStillBeingApplied() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        when(valueOperations.setIfAbsent("idempotency:key-6", "pending", TTL)).thenReturn(Mono.just(false));
+        when(valueOperations.get("idempotency:key-6")).thenReturn(Mono.just("pending"));
+        when(operationDedupeRepository.reserve("key-6", walletId)).thenReturn(Mono.empty());
+        when(operationDedupeRepository.findById("key-6"))
+                .thenReturn(Mono.just(new OperationDedupe("key-6", walletId, null, null, null)));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        //then
+        StepVerifier.create(operationDeduplicator.execute("key-6", walletId,
+                        Mono.error(new IllegalStateException("must not run")), Mono::just))
+                .expectError(OperationInProgressException.class)
+                .verify();
+    }
+}
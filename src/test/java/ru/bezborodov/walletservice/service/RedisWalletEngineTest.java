@@ -0,0 +1,104 @@
+package ru.bezborodov.walletservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisWalletEngineTest {
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @InjectMocks
+    private RedisWalletEngine walletEngine;
+
+    @Test
+    void apply_ShouldReturnBalanceComputedByScript() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        doReturn(Flux.just(List.of(1L, 60000L, 1700000000000L, 0L))).when(redisTemplate)
+                .execute(any(), eq(List.of("wallet:balance:" + walletId, "wallet:operations")),
+                        eq(List.of(walletId.toString(), "10000")));
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, Money.parse("100.00")))
+                .expectNextMatches(wallet -> wallet.equals(new Wallet(walletId, Money.parse("600.00")))
+                        && wallet.getVersion() == 1700000000000L << 20)
+                .verifyComplete();
+
+        verifyNoInteractions(walletRepository);
+    }
+
+    @Test
+    void apply_ShouldThrowInsufficientFundsException() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        doReturn(Flux.just(List.of(-1L))).when(redisTemplate)
+                .execute(any(), anyList(), eq(List.of(walletId.toString(), "-100000")));
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.WITHDRAW, Money.parse("1000")))
+                .expectErrorMatches(throwable -> throwable instanceof InsufficientFundsException &&
+                        throwable.getMessage().equals("Insufficient funds in wallet: " + walletId))
+                .verify();
+    }
+
+    @Test
+    void apply_ShouldLoadBalanceFromDatabaseOnFirstUse() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        doReturn(Flux.just(List.of(0L)), Flux.just(List.of(1L, 40000L, 1700000000000L, 1L))).when(redisTemplate)
+                .execute(any(), anyList(), anyList());
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(walletRepository.findById(walletId)).thenReturn(Mono.just(new Wallet(walletId, Money.parse("500.00"))));
+        when(valueOperations.setIfAbsent("wallet:balance:" + walletId, "50000")).thenReturn(Mono.just(true));
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.WITHDRAW, Money.parse("100.00")))
+                .expectNext(new Wallet(walletId, Money.parse("400.00")))
+                .verifyComplete();
+
+        verify(valueOperations).setIfAbsent("wallet:balance:" + walletId, "50000");
+    }
+
+    @Test
+    void apply_ShouldThrowWalletNotFoundException() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        doReturn(Flux.just(List.of(0L))).when(redisTemplate).execute(any(), anyList(), anyList());
+        when(walletRepository.findById(walletId)).thenReturn(Mono.empty());
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, Money.parse("100.00")))
+                .expectErrorMatches(throwable -> throwable instanceof WalletNotFoundException &&
+                        throwable.getMessage().equals("Wallet not found: " + walletId))
+                .verify();
+    }
+}
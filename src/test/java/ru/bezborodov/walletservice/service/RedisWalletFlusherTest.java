@@ -0,0 +1,97 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.RedisEngineProperties;
+import ru.bezborodov.walletservice.repository.ShardEpochRepository;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisWalletFlusherTest {
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    @Mock
+    private ReactiveStreamOperations<String, String, String> streamOperations;
+
+    @Mock
+    private ShardEpochRepository shardEpochRepository;
+
+    private RedisWalletFlusher walletFlusher;
+
+    @BeforeEach
+    void setUp() {
+        walletFlusher = new RedisWalletFlusher(redisTemplate, shardEpochRepository,
+                new RedisEngineProperties(500, Duration.ofMillis(100), Duration.ofSeconds(10)),
+                new SimpleMeterRegistry());
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        doReturn(streamOperations).when(redisTemplate).opsForStream();
+        when(valueOperations.setIfAbsent(eq(RedisWalletFlusher.FLUSHER_LEASE_KEY), anyString(),
+                eq(Duration.ofSeconds(10)))).thenReturn(Mono.just(true));
+        when(shardEpochRepository.advance(RedisWalletFlusher.FLUSHER_FENCE)).thenReturn(Mono.just(3L));
+        when(streamOperations.size(RedisWalletEngine.OPERATIONS_STREAM)).thenReturn(Mono.just(1L));
+    }
+
+    @Test
+    void flush_ShouldPersistAtAcquiredEpochAndTrimStream() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        givenOperation(walletId, "60000");
+        when(shardEpochRepository.updateBalances(RedisWalletFlusher.FLUSHER_FENCE, 3L,
+                new UUID[]{walletId}, new Long[]{60000L})).thenReturn(Mono.just(1));
+        when(streamOperations.delete(RedisWalletEngine.OPERATIONS_STREAM, RecordId.of("1-0")))
+                .thenReturn(Mono.just(1L));
+        //when
+        StepVerifier.create(walletFlusher.flush())
+                //then
+                .verifyComplete();
+
+        verify(streamOperations).delete(RedisWalletEngine.OPERATIONS_STREAM, RecordId.of("1-0"));
+    }
+
+    @Test
+    void flush_ShouldLeaveOperationsToNewerLeaseHolder() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        givenOperation(walletId, "60000");
+        when(shardEpochRepository.updateBalances(eq(RedisWalletFlusher.FLUSHER_FENCE), eq(3L), any(), any()))
+                .thenReturn(Mono.just(0));
+        //when
+        StepVerifier.create(walletFlusher.flush())
+                //then
+                .verifyComplete();
+
+        verify(streamOperations, never()).delete(eq(RedisWalletEngine.OPERATIONS_STREAM), any(RecordId[].class));
+    }
+
+    private void givenOperation(UUID walletId, String balance) {
+        MapRecord<String, String, String> record = MapRecord.create(RedisWalletEngine.OPERATIONS_STREAM,
+                Map.of("id", walletId.toString(), "balance", balance)).withId(RecordId.of("1-0"));
+        when(streamOperations.range(eq(RedisWalletEngine.OPERATIONS_STREAM), any(), any()))
+                .thenReturn(Flux.just(record));
+    }
+}
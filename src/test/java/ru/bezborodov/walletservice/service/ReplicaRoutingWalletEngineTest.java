@@ -0,0 +1,154 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.ReadReplicaProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingWalletEngineTest {
+
+    @Mock
+    private SqlWalletEngine primary;
+
+    @Mock
+    private WalletReplica replica;
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ReplicaRoutingWalletEngine walletEngine;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        walletEngine = new ReplicaRoutingWalletEngine(primary, replica, redisTemplate,
+                new ReadReplicaProperties(true, "r2dbc:postgresql://replica:5432/wallet_db", "user", "password",
+                        1, 4, Duration.ofMinutes(1), Duration.ofSeconds(5), Duration.ofMillis(500)),
+                meterRegistry);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void apply_ShouldRecordLastWrite() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("600.00"));
+        //when
+        when(primary.apply(walletId, OperationType.DEPOSIT, amount)).thenReturn(Mono.just(updatedWallet));
+        when(valueOperations.set(eq(ReplicaRoutingWalletEngine.LAST_WRITE_PREFIX + walletId), anyString(),
+                eq(Duration.ofSeconds(6)))).thenReturn(Mono.just(true));
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, amount))
+                .expectNext(updatedWallet)
+                .verifyComplete();
+    }
+
+    @Test
+    void findWallet_ShouldReadReplicaWhenNoRecentWrite() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("500.00"));
+        //when
+        when(replica.lagMillis()).thenReturn(100L);
+        when(valueOperations.get(ReplicaRoutingWalletEngine.LAST_WRITE_PREFIX + walletId)).thenReturn(Mono.empty());
+        when(replica.findTotal(walletId)).thenReturn(Mono.just(wallet));
+        //then
+        StepVerifier.create(walletEngine.findWallet(walletId))
+                .expectNext(wallet)
+                .verifyComplete();
+
+        verify(primary, never()).findWallet(any(UUID.class));
+        assertEquals(1, routes("replica", "fresh"));
+    }
+
+    @Test
+    void findWallet_ShouldReadPrimaryAfterRecentWrite() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("500.00"));
+        //when
+        when(replica.lagMillis()).thenReturn(100L);
+        when(valueOperations.get(ReplicaRoutingWalletEngine.LAST_WRITE_PREFIX + walletId))
+                .thenReturn(Mono.just(Long.toString(System.currentTimeMillis())));
+        when(primary.findWallet(walletId)).thenReturn(Mono.just(wallet));
+        //then
+        StepVerifier.create(walletEngine.findWallet(walletId))
+                .expectNext(wallet)
+                .verifyComplete();
+
+        verify(replica, never()).findTotal(any(UUID.class));
+        assertEquals(1, routes("primary", "recent_write"));
+    }
+
+    @Test
+    void findWallet_ShouldReadPrimaryWhenLagIsUnknown() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("500.00"));
+        //when
+        when(replica.lagMillis()).thenReturn(WalletReplica.UNKNOWN_LAG);
+        when(primary.findWallet(walletId)).thenReturn(Mono.just(wallet));
+        //then
+        StepVerifier.create(walletEngine.findWallet(walletId))
+                .expectNext(wallet)
+                .verifyComplete();
+
+        verify(redisTemplate, never()).opsForValue();
+        assertEquals(1, routes("primary", "replica_lag"));
+    }
+
+    @Test
+    void findWallets_ShouldSplitReadsBetweenReplicaAndPrimary() {
+        //given
+        UUID freshId = UUID.randomUUID();
+        UUID writtenId = UUID.randomUUID();
+        Wallet fresh = new Wallet(freshId, Money.parse("100.00"));
+        Wallet written = new Wallet(writtenId, Money.parse("200.00"));
+        //when
+        when(replica.lagMillis()).thenReturn(100L);
+        when(valueOperations.multiGet(List.of(ReplicaRoutingWalletEngine.LAST_WRITE_PREFIX + freshId,
+                ReplicaRoutingWalletEngine.LAST_WRITE_PREFIX + writtenId)))
+                .thenReturn(Mono.just(Arrays.asList(null, Long.toString(System.currentTimeMillis()))));
+        when(replica.findTotals(List.of(freshId))).thenReturn(Flux.just(fresh));
+        when(primary.findWallets(List.of(writtenId))).thenReturn(Flux.just(written));
+        //then
+        StepVerifier.create(walletEngine.findWallets(List.of(freshId, writtenId)).collectList())
+                .assertNext(wallets -> assertEquals(2, wallets.size()))
+                .verifyComplete();
+
+        assertEquals(1, routes("replica", "fresh"));
+        assertEquals(1, routes("primary", "recent_write"));
+    }
+
+    private double routes(String target, String reason) {
+        return meterRegistry.get("wallet.read.routes").tag("target", target).tag("reason", reason).counter().count();
+    }
+}
@@ -0,0 +1,208 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.ShardingProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.OperationOutcomeUnknownException;
+import ru.bezborodov.walletservice.exception.ShardNotOwnedException;
+import ru.bezborodov.walletservice.repository.ShardEpochRepository;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedWalletEngineTest {
+    private static final int SHARD = 3;
+
+    @Mock
+    private ShardDirectory shardDirectory;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private ShardEpochRepository shardEpochRepository;
+
+    private ShardedWalletEngine walletEngine;
+
+    @BeforeEach
+    void setUp() {
+        walletEngine = new ShardedWalletEngine(shardDirectory, walletRepository, shardEpochRepository,
+                new ShardingProperties(64, Duration.ofSeconds(10), Duration.ofSeconds(3), "",
+                        Duration.ofSeconds(2), 128, Duration.ofNanos(500_000)),
+                WebClient.builder(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void apply_ShouldServeFreeShardFromMemory() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        givenFreeShardOf(walletId);
+        when(walletRepository.findAllByIds(new UUID[]{walletId}))
+                .thenReturn(Flux.just(new Wallet(walletId, Money.parse("500.00"))));
+        when(shardEpochRepository.updateBalances(eq(SHARD), eq(7L), any(), any())).thenReturn(Mono.just(1));
+        //when
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, Money.parse("100.00")))
+                .expectNext(new Wallet(walletId, Money.parse("600.00")))
+                .verifyComplete();
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.WITHDRAW, Money.parse("50.00")))
+                .expectNext(new Wallet(walletId, Money.parse("550.00")))
+                .verifyComplete();
+        //then
+        verify(walletRepository, times(1)).findAllByIds(any());
+        verify(shardEpochRepository).updateBalances(SHARD, 7L, new UUID[]{walletId}, new Long[]{55000L});
+        verify(shardDirectory, times(1)).tryAcquire(SHARD);
+    }
+
+    @Test
+    void apply_ShouldThrowInsufficientFundsExceptionWithoutWriting() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        givenFreeShardOf(walletId);
+        when(walletRepository.findAllByIds(new UUID[]{walletId}))
+                .thenReturn(Flux.just(new Wallet(walletId, Money.parse("10.00"))));
+        //when
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.WITHDRAW, Money.parse("20.00")))
+                //then
+                .expectErrorMatches(throwable -> throwable instanceof InsufficientFundsException &&
+                        throwable.getMessage().equals("Insufficient funds in wallet: " + walletId))
+                .verify();
+
+        verify(shardEpochRepository, never()).updateBalances(anyInt(), anyLong(), any(), any());
+    }
+
+    @Test
+    void apply_ShouldGiveUpShardTakenOverAtNewerEpoch() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        when(shardDirectory.shardOf(walletId)).thenReturn(SHARD);
+        when(shardDirectory.tryAcquire(SHARD)).thenReturn(Mono.just(true), Mono.just(false));
+        when(shardDirectory.refreshOwners()).thenReturn(Mono.empty());
+        when(shardEpochRepository.advance(SHARD)).thenReturn(Mono.just(7L));
+        when(walletRepository.findAllByIds(new UUID[]{walletId}))
+                .thenReturn(Flux.just(new Wallet(walletId, Money.parse("500.00"))));
+        when(shardEpochRepository.updateBalances(eq(SHARD), eq(7L), any(), any())).thenReturn(Mono.just(0));
+        //when
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, Money.parse("100.00")))
+                //then
+                .expectError(ShardNotOwnedException.class)
+                .verify();
+
+        StepVerifier.create(walletEngine.applyOwned(walletId, OperationType.DEPOSIT, Money.parse("100.00")))
+                .expectError(ShardNotOwnedException.class)
+                .verify();
+    }
+
+    @Test
+    void apply_ShouldReloadBalancesAfterFailedWrite() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        givenFreeShardOf(walletId);
+        when(walletRepository.findAllByIds(new UUID[]{walletId}))
+                .thenReturn(Flux.just(new Wallet(walletId, Money.parse("500.00"))),
+                        Flux.just(new Wallet(walletId, Money.parse("600.00"))));
+        when(shardEpochRepository.updateBalances(eq(SHARD), eq(7L), any(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("Connection closed")), Mono.just(1));
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, Money.parse("100.00")))
+                .expectError(IllegalStateException.class)
+                .verify();
+        //when
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, Money.parse("100.00")))
+                //then
+                .expectNext(new Wallet(walletId, Money.parse("700.00")))
+                .verifyComplete();
+
+        verify(walletRepository, times(2)).findAllByIds(any());
+        verify(shardEpochRepository).updateBalances(SHARD, 7L, new UUID[]{walletId}, new Long[]{70000L});
+    }
+
+    @Test
+    void findWallet_ShouldReadOwnedBalanceFromMemory() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        givenFreeShardOf(walletId);
+        when(walletRepository.findAllByIds(new UUID[]{walletId}))
+                .thenReturn(Flux.just(new Wallet(walletId, Money.parse("500.00"))));
+        when(shardEpochRepository.updateBalances(eq(SHARD), eq(7L), any(), any())).thenReturn(Mono.just(1));
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, Money.parse("100.00")))
+                .expectNextCount(1)
+                .verifyComplete();
+        //when
+        StepVerifier.create(walletEngine.findWallet(walletId))
+                //then
+                .expectNext(new Wallet(walletId, Money.parse("600.00")))
+                .verifyComplete();
+
+        verify(walletRepository, never()).findById(any(UUID.class));
+    }
+
+    @Test
+    void rebalance_ShouldReleaseShardsAboveFairShare() {
+        //given
+        when(shardDirectory.shards()).thenReturn(2);
+        when(shardDirectory.heartbeat()).thenReturn(Mono.just(1L), Mono.just(2L));
+        when(shardDirectory.refreshOwners()).thenReturn(Mono.empty());
+        when(shardDirectory.tryAcquire(anyInt())).thenReturn(Mono.just(true));
+        when(shardDirectory.renew(anyInt())).thenReturn(Mono.just(true));
+        when(shardDirectory.release(anyInt())).thenReturn(Mono.empty());
+        when(shardEpochRepository.advance(anyInt())).thenReturn(Mono.just(1L));
+        StepVerifier.create(walletEngine.rebalance())
+                .verifyComplete();
+        //when
+        StepVerifier.create(walletEngine.rebalance())
+                .verifyComplete();
+        //then
+        verify(shardDirectory, times(2)).tryAcquire(anyInt());
+        verify(shardDirectory, times(1)).release(anyInt());
+    }
+
+    @Test
+    void apply_ShouldNotResendForwardThatTimedOut() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        AtomicInteger forwards = new AtomicInteger();
+        ShardedWalletEngine forwardingEngine = new ShardedWalletEngine(shardDirectory, walletRepository,
+                shardEpochRepository, new ShardingProperties(64, Duration.ofSeconds(10), Duration.ofSeconds(3), "",
+                        Duration.ofMillis(100), 128, Duration.ofNanos(500_000)),
+                WebClient.builder().exchangeFunction(request -> {
+                    forwards.incrementAndGet();
+                    return Mono.never();
+                }), new SimpleMeterRegistry());
+        when(shardDirectory.shardOf(walletId)).thenReturn(SHARD);
+        when(shardDirectory.ownerUrl(SHARD)).thenReturn("http://owner:8080");
+        when(shardDirectory.url()).thenReturn("http://self:8080");
+        //when
+        StepVerifier.create(forwardingEngine.apply(walletId, OperationType.WITHDRAW, Money.parse("20.00")))
+                .expectError(OperationOutcomeUnknownException.class)
+                .verify(Duration.ofSeconds(5));
+        //then
+        assertEquals(1, forwards.get());
+        verify(shardDirectory, never()).tryAcquire(anyInt());
+    }
+
+    private void givenFreeShardOf(UUID walletId) {
+        when(shardDirectory.shardOf(walletId)).thenReturn(SHARD);
+        when(shardDirectory.tryAcquire(SHARD)).thenReturn(Mono.just(true));
+        when(shardEpochRepository.advance(SHARD)).thenReturn(Mono.just(7L));
+    }
+}
@@ -0,0 +1,229 @@
+package ru.bezborodov.walletservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.OperationType;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+import ru.bezborodov.walletservice.repository.WalletStripeRepository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SqlWalletEngineTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletStripeRepository walletStripeRepository;
+
+    @Mock
+    private WalletStripes walletStripes;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @InjectMocks
+    private SqlWalletEngine walletEngine;
+
+    @Test
+    void apply_ShouldDepositSuccessfully() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("600.00"));
+        //when
+        when(walletRepository.applyDelta(walletId, amount)).thenReturn(Mono.just(updatedWallet));
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, amount))
+                .expectNext(updatedWallet)
+                .verifyComplete();
+
+        verify(walletRepository).applyDelta(walletId, amount);
+        verify(walletStripeRepository, never()).findTotal(any(UUID.class));
+    }
+
+    @Test
+    void apply_ShouldWithdrawSuccessfully() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("400.00"));
+        //when
+        when(walletRepository.applyDelta(walletId, amount.negate())).thenReturn(Mono.just(updatedWallet));
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.WITHDRAW, amount))
+                .expectNext(updatedWallet)
+                .verifyComplete();
+
+        verify(walletRepository).applyDelta(walletId, amount.negate());
+        verify(walletStripeRepository, never()).findTotal(any(UUID.class));
+    }
+
+    @Test
+    void apply_ShouldThrowInsufficientFundsException() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("1000.00");
+        //when
+        when(walletRepository.applyDelta(walletId, amount.negate())).thenReturn(Mono.empty());
+        when(walletStripeRepository.findTotal(walletId)).thenReturn(Mono.just(new Wallet(walletId, Money.parse("500.00"))));
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.WITHDRAW, amount))
+                .expectErrorMatches(throwable -> throwable instanceof InsufficientFundsException &&
+                        throwable.getMessage().equals("Insufficient funds in wallet: " + walletId))
+                .verify();
+
+        verify(walletRepository).applyDelta(walletId, amount.negate());
+        verify(walletStripeRepository).findTotal(walletId);
+        verify(walletStripes, never()).rebalance(any(UUID.class), any(Money.class));
+    }
+
+    @Test
+    void apply_ShouldThrowWalletNotFoundException() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        //when
+        when(walletRepository.applyDelta(walletId, amount)).thenReturn(Mono.empty());
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, amount))
+                .expectErrorMatches(throwable -> throwable instanceof WalletNotFoundException &&
+                        throwable.getMessage().equals("Wallet not found: " + walletId))
+                .verify();
+
+        verify(walletRepository).applyDelta(walletId, amount);
+        verify(walletStripeRepository, never()).findTotal(any(UUID.class));
+    }
+
+    @Test
+    void apply_ShouldThrowWalletNotFoundExceptionOnWithdraw() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        //when
+        when(walletRepository.applyDelta(walletId, amount.negate())).thenReturn(Mono.empty());
+        when(walletStripeRepository.findTotal(walletId)).thenReturn(Mono.empty());
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.WITHDRAW, amount))
+                .expectErrorMatches(throwable -> throwable instanceof WalletNotFoundException &&
+                        throwable.getMessage().equals("Wallet not found: " + walletId))
+                .verify();
+
+        verify(walletStripeRepository).findTotal(walletId);
+    }
+
+    @Test
+    void apply_ShouldUseStripesOfStripedWallet() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("600.00"));
+        //when
+        when(walletStripes.stripes(walletId)).thenReturn(4);
+        when(walletStripes.apply(walletId, 4, amount)).thenReturn(Mono.just(updatedWallet));
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.DEPOSIT, amount))
+                .expectNext(updatedWallet)
+                .verifyComplete();
+
+        verify(walletRepository, never()).applyDelta(any(UUID.class), any(Money.class));
+    }
+
+    @Test
+    void apply_ShouldRebalanceWhenStripesCoverWithdrawal() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("400.00"));
+        //when
+        when(walletRepository.applyDelta(walletId, amount.negate())).thenReturn(Mono.empty());
+        when(walletStripeRepository.findTotal(walletId)).thenReturn(Mono.just(new Wallet(walletId, Money.parse("500.00"))));
+        when(walletStripes.rebalance(walletId, amount.negate())).thenReturn(Mono.just(updatedWallet));
+        //then
+        StepVerifier.create(walletEngine.apply(walletId, OperationType.WITHDRAW, amount))
+                .expectNext(updatedWallet)
+                .verifyComplete();
+    }
+
+    @Test
+    void transfer_ShouldApplyAllDeltasInOneStatement() {
+        //given
+        UUID sourceId = UUID.randomUUID();
+        UUID firstId = UUID.randomUUID();
+        UUID secondId = UUID.randomUUID();
+        Map<UUID, Money> credits = new LinkedHashMap<>();
+        credits.put(firstId, Money.parse("100.00"));
+        credits.put(secondId, Money.parse("50.00"));
+        Wallet source = new Wallet(sourceId, Money.parse("850.00"));
+        Wallet first = new Wallet(firstId, Money.parse("100.00"));
+        Wallet second = new Wallet(secondId, Money.parse("50.00"));
+        //when
+        when(transactionalOperator.transactional(any(Flux.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.lockAllById(new UUID[]{sourceId, firstId, secondId})).thenReturn(Flux.just(
+                new Wallet(sourceId, Money.parse("1000.00")), new Wallet(firstId, Money.ZERO),
+                new Wallet(secondId, Money.ZERO)));
+        when(walletRepository.applyDeltas(new UUID[]{sourceId, firstId, secondId}, new Long[]{-15000L, 10000L, 5000L}))
+                .thenReturn(Flux.just(source, first, second));
+        //then
+        StepVerifier.create(walletEngine.transfer(sourceId, credits))
+                .expectNext(source, first, second)
+                .verifyComplete();
+
+        verify(walletStripes, never()).rebalance(any(UUID.class), any(Money.class));
+    }
+
+    @Test
+    void transfer_ShouldThrowWalletNotFoundExceptionForUnknownDestination() {
+        //given
+        UUID sourceId = UUID.randomUUID();
+        UUID destinationId = UUID.randomUUID();
+        //when
+        when(transactionalOperator.transactional(any(Flux.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.lockAllById(new UUID[]{sourceId, destinationId}))
+                .thenReturn(Flux.just(new Wallet(sourceId, Money.parse("1000.00"))));
+        //then
+        StepVerifier.create(walletEngine.transfer(sourceId, Map.of(destinationId, Money.parse("100.00"))))
+                .expectErrorMatches(throwable -> throwable instanceof WalletNotFoundException &&
+                        throwable.getMessage().equals("Wallet not found: " + destinationId))
+                .verify();
+
+        verify(walletRepository, never()).applyDeltas(any(), any());
+    }
+
+    @Test
+    void transfer_ShouldDebitStripesWhenWalletRowIsShort() {
+        //given
+        UUID sourceId = UUID.randomUUID();
+        UUID destinationId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet source = new Wallet(sourceId, Money.parse("400.00"));
+        Wallet destination = new Wallet(destinationId, Money.parse("100.00"));
+        //when
+        when(transactionalOperator.transactional(any(Flux.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.lockAllById(new UUID[]{sourceId, destinationId})).thenReturn(Flux.just(
+                new Wallet(sourceId, Money.ZERO), new Wallet(destinationId, Money.ZERO)));
+        when(walletStripes.rebalance(sourceId, amount.negate())).thenReturn(Mono.just(source));
+        when(walletRepository.applyDeltas(new UUID[]{destinationId}, new Long[]{10000L}))
+                .thenReturn(Flux.just(destination));
+        //then
+        StepVerifier.create(walletEngine.transfer(sourceId, Map.of(destinationId, amount)))
+                .expectNext(source, destination)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,126 @@
+package ru.bezborodov.walletservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.BalanceStreamProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WalletBalanceStreamTest {
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    private WalletBalanceStream walletBalanceStream;
+
+    @BeforeEach
+    void setUp() {
+        walletBalanceStream = new WalletBalanceStream(new BalanceStreamProperties(true, Duration.ofSeconds(15)),
+                redisTemplate);
+    }
+
+    @Test
+    void publish_ShouldSendBalanceInMinorUnits() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        when(redisTemplate.convertAndSend(WalletBalanceStream.BALANCE_CHANNEL, walletId + ":50050"))
+                .thenReturn(Mono.just(1L));
+        //when
+        walletBalanceStream.publish(new Wallet(walletId, Money.parse("500.50")));
+        //then
+        verify(redisTemplate).convertAndSend(WalletBalanceStream.BALANCE_CHANNEL, walletId + ":50050");
+    }
+
+    @Test
+    void publish_ShouldSendVersionOfBalance() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        when(redisTemplate.convertAndSend(WalletBalanceStream.BALANCE_CHANNEL, walletId + ":50050:42"))
+                .thenReturn(Mono.just(1L));
+        //when
+        walletBalanceStream.publish(new Wallet(walletId, Money.parse("500.50"), 42L));
+        //then
+        verify(redisTemplate).convertAndSend(WalletBalanceStream.BALANCE_CHANNEL, walletId + ":50050:42");
+    }
+
+    @Test
+    void listen_ShouldReceiveOnlyChangesOfItsWallet() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        UUID otherWalletId = UUID.randomUUID();
+        //when
+        StepVerifier.create(walletBalanceStream.listen(walletId))
+                .then(() -> {
+                    walletBalanceStream.onMessage(otherWalletId + ":100");
+                    walletBalanceStream.onMessage(walletId + ":-5");
+                })
+                //then
+                .expectNext(new Wallet(walletId, Money.parse("-0.05")))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void listen_ShouldConflateChangesForSlowSubscriber() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        StepVerifier.create(walletBalanceStream.listen(walletId), 0)
+                .then(() -> {
+                    walletBalanceStream.onMessage(walletId + ":100");
+                    walletBalanceStream.onMessage(walletId + ":200");
+                    walletBalanceStream.onMessage(walletId + ":300");
+                })
+                .thenRequest(1)
+                //then
+                .expectNext(new Wallet(walletId, Money.parse("3.00")))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void listen_ShouldStopDeliveringAfterLastSubscriberLeaves() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        StepVerifier.create(walletBalanceStream.listen(walletId))
+                .thenCancel()
+                .verify();
+        //when
+        StepVerifier.create(walletBalanceStream.listen(walletId))
+                .then(() -> walletBalanceStream.onMessage(walletId + ":100"))
+                //then
+                .expectNext(new Wallet(walletId, Money.parse("1.00")))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void listen_ShouldDropEventsOlderThanDispatchedOne() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        StepVerifier.create(walletBalanceStream.listen(walletId))
+                .then(() -> {
+                    walletBalanceStream.onMessage(walletId + ":300:3");
+                    walletBalanceStream.onMessage(walletId + ":200:2");
+                    walletBalanceStream.onMessage(walletId + ":400:4");
+                })
+                //then
+                .expectNext(new Wallet(walletId, Money.parse("3.00")))
+                .expectNext(new Wallet(walletId, Money.parse("4.00")))
+                .thenCancel()
+                .verify();
+    }
+}
@@ -0,0 +1,146 @@
+package ru.bezborodov.walletservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.cache.WalletNearCache;
+import ru.bezborodov.walletservice.config.ReconciliationProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+import ru.bezborodov.walletservice.repository.WalletStripeRepository;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WalletCacheReconcilerTest {
+    private static final Duration LEASE = Duration.ofSeconds(30);
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletStripeRepository walletStripeRepository;
+
+    @Mock
+    private ReactiveRedisTemplate<String, Wallet> walletTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, Wallet> walletValues;
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> values;
+
+    @Mock
+    private WalletNearCache walletNearCache;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private WalletCacheReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        reconciler = new WalletCacheReconciler(walletRepository, walletStripeRepository, walletTemplate,
+                redisTemplate, walletNearCache,
+                new ReconciliationProperties(true, 2000, 500, 1, Duration.ofMinutes(10), LEASE),
+                meterRegistry);
+        lenient().when(walletTemplate.opsForValue()).thenReturn(walletValues);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(values);
+    }
+
+    @Test
+    void reconcileNextPage_ShouldEvictEntriesStillStaleOnSecondLook() {
+        //given
+        UUID staleId = UUID.randomUUID();
+        UUID racingId = UUID.randomUUID();
+        UUID freshId = UUID.randomUUID();
+        Wallet stale = new Wallet(staleId, Money.parse("100.00"));
+        Wallet racing = new Wallet(racingId, Money.parse("200.00"));
+        Wallet fresh = new Wallet(freshId, Money.parse("300.00"));
+        givenLeaseAndCheckpoint(null);
+        //when
+        when(walletRepository.findTotalsAfter(WalletCacheReconciler.FIRST_ID, 500))
+                .thenReturn(Flux.just(stale, racing, fresh));
+        when(walletValues.multiGet(List.of("wallet:" + staleId)))
+                .thenReturn(Mono.just(List.of(new Wallet(staleId, Money.parse("90.00")))));
+        when(walletValues.multiGet(List.of("wallet:" + racingId)))
+                .thenReturn(Mono.just(List.of(new Wallet(racingId, Money.parse("150.00")))),
+                        Mono.just(List.of(racing)));
+        when(walletValues.multiGet(List.of("wallet:" + freshId))).thenReturn(Mono.just(Arrays.asList((Wallet) null)));
+        when(walletStripeRepository.findTotals(any(UUID[].class))).thenReturn(Flux.just(stale, racing));
+        when(walletTemplate.delete("wallet:" + staleId)).thenReturn(Mono.just(1L));
+        when(walletNearCache.publishInvalidation(staleId)).thenReturn(Mono.empty());
+        when(values.set(WalletCacheReconciler.CHECKPOINT_KEY, freshId.toString())).thenReturn(Mono.just(true));
+        //then
+        StepVerifier.create(reconciler.reconcileNextPage())
+                .verifyComplete();
+
+        verify(walletNearCache).invalidate(staleId);
+        verify(walletTemplate, never()).delete("wallet:" + racingId);
+        assertEquals(2, meterRegistry.get("wallet.reconciliation.wallets").counter().count());
+        assertEquals(1, meterRegistry.get("wallet.reconciliation.discrepancies").counter().count());
+    }
+
+    @Test
+    void reconcileNextPage_ShouldFinishPassAfterLastPage() {
+        //given
+        UUID checkpoint = UUID.randomUUID();
+        givenLeaseAndCheckpoint(checkpoint.toString());
+        //when
+        when(walletRepository.findTotalsAfter(checkpoint, 500)).thenReturn(Flux.empty());
+        when(values.set(eq(WalletCacheReconciler.PASS_PAUSE_KEY), anyString(), eq(Duration.ofMinutes(10))))
+                .thenReturn(Mono.just(true));
+        when(redisTemplate.delete(WalletCacheReconciler.CHECKPOINT_KEY)).thenReturn(Mono.just(1L));
+        //then
+        StepVerifier.create(reconciler.reconcileNextPage())
+                .verifyComplete();
+
+        verify(walletValues, never()).multiGet(any());
+    }
+
+    @Test
+    void reconcileNextPage_ShouldSkipWithoutLease() {
+        //given
+        when(values.setIfAbsent(eq(WalletCacheReconciler.LEASE_KEY), anyString(), eq(LEASE)))
+                .thenReturn(Mono.just(false));
+        doReturn(Flux.just(0L)).when(redisTemplate)
+                .execute(any(RedisScript.class), eq(List.of(WalletCacheReconciler.LEASE_KEY)), anyList());
+        //then
+        StepVerifier.create(reconciler.reconcileNextPage())
+                .verifyComplete();
+
+        verify(walletRepository, never()).findTotalsAfter(any(UUID.class), anyInt());
+    }
+
+    private void givenLeaseAndCheckpoint(String checkpoint) {
+        when(values.setIfAbsent(eq(WalletCacheReconciler.LEASE_KEY), anyString(), eq(LEASE)))
+                .thenReturn(Mono.just(true));
+        when(redisTemplate.hasKey(WalletCacheReconciler.PASS_PAUSE_KEY)).thenReturn(Mono.just(false));
+        when(values.get(WalletCacheReconciler.CHECKPOINT_KEY))
+                .thenReturn(checkpoint != null ? Mono.just(checkpoint) : Mono.empty());
+    }
+}
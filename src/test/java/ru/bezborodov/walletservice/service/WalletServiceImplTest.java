@@ -1,31 +1,47 @@
 package ru.bezborodov.walletservice.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.cache.MissingWalletFilter;
+import ru.bezborodov.walletservice.cache.WalletAccessTracker;
+import ru.bezborodov.walletservice.cache.WalletNearCache;
+import ru.bezborodov.walletservice.cache.WalletRedisSerializer;
+import ru.bezborodov.walletservice.config.TransferProperties;
+import ru.bezborodov.walletservice.config.WalletCacheProperties;
+import ru.bezborodov.walletservice.entity.Money;
 import ru.bezborodov.walletservice.entity.OperationType;
 import ru.bezborodov.walletservice.entity.Wallet;
 import ru.bezborodov.walletservice.exception.InsufficientFundsException;
 import ru.bezborodov.walletservice.exception.WalletNotFoundException;
-import ru.bezborodov.walletservice.repository.WalletRepository;
+import ru.bezborodov.walletservice.metrics.WalletMetrics;
 
-import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class WalletServiceImplTest {
+    private static final Duration COLD_TTL = Duration.ofMinutes(5);
 
     @Mock
-    private WalletRepository walletRepository;
+    private WalletEngine walletEngine;
 
     @Mock
     private ReactiveRedisTemplate<String, Wallet> reactiveRedisTemplate;
@@ -33,6 +49,34 @@ public class WalletServiceImplTest {
     @Mock
     private ReactiveValueOperations<String, Wallet> reactiveValueOperations;
 
+    @Mock
+    private WalletNearCache walletNearCache;
+
+    @Mock
+    private OperationDeduplicator operationDeduplicator;
+
+    @Mock
+    private MissingWalletFilter missingWalletFilter;
+
+    @Mock
+    private WalletBalanceStream walletBalanceStream;
+
+    @Mock
+    private WalletAccessTracker walletAccessTracker;
+
+    @Spy
+    private WalletCacheProperties walletCacheProperties = new WalletCacheProperties(WalletRedisSerializer.Format.BINARY,
+            Duration.ofHours(1), COLD_TTL, 8, Duration.ofMinutes(1), 1000, Duration.ofSeconds(30),
+            Duration.ofMinutes(1));
+
+    @Spy
+    private TransferProperties transferProperties = new TransferProperties(null);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private WalletMetrics walletMetrics = new WalletMetrics(meterRegistry);
+
     @InjectMocks
     private WalletServiceImpl walletService;
 
@@ -45,88 +89,110 @@ public class WalletServiceImplTest {
     void performOperation_ShouldDepositSuccessfully() {
         //given
         UUID walletId = UUID.randomUUID();
-        BigDecimal amount = BigDecimal.valueOf(100.00);
-        Wallet wallet = new Wallet(walletId, BigDecimal.valueOf(500.00));
-        Wallet updatedWallet = new Wallet(walletId, BigDecimal.valueOf(600.00));
+        Money amount = Money.parse("100.00");
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("600.00"));
         //when
-        when(walletRepository.findById(walletId)).thenReturn(Mono.just(wallet));
-        when(walletRepository.updateBalance(walletId, updatedWallet.getBalance())).thenReturn(Mono.empty());
-        when(reactiveRedisTemplate.opsForValue().set("wallet:" + walletId, updatedWallet)).thenReturn(Mono.just(true));
+        when(walletEngine.apply(walletId, OperationType.DEPOSIT, amount)).thenReturn(Mono.just(updatedWallet));
+        when(reactiveRedisTemplate.opsForValue().set("wallet:" + walletId, updatedWallet, COLD_TTL)).thenReturn(Mono.just(true));
+        when(walletNearCache.publishInvalidation(walletId)).thenReturn(Mono.empty());
         //then
         StepVerifier.create(walletService.performOperation(walletId, OperationType.DEPOSIT, amount))
+                .expectNext(updatedWallet)
                 .verifyComplete();
 
-        verify(walletRepository).findById(walletId);
-        verify(walletRepository).updateBalance(walletId, updatedWallet.getBalance());
-        verify(reactiveRedisTemplate.opsForValue()).set("wallet:" + walletId, updatedWallet);
+        verify(walletEngine).apply(walletId, OperationType.DEPOSIT, amount);
+        verify(walletEngine, never()).findWallet(any(UUID.class));
+        verify(reactiveRedisTemplate.opsForValue()).set("wallet:" + walletId, updatedWallet, COLD_TTL);
+        verify(walletNearCache).put(updatedWallet);
+        verify(walletNearCache).publishInvalidation(walletId);
+        verify(missingWalletFilter).register(walletId);
+        verify(walletBalanceStream).publish(updatedWallet);
     }
 
     @Test
     void performOperation_ShouldWithdrawSuccessfully() {
         //given
         UUID walletId = UUID.randomUUID();
-        BigDecimal amount = BigDecimal.valueOf(100.00);
-        Wallet wallet = new Wallet(walletId, BigDecimal.valueOf(500.00));
-        Wallet updatedWallet = new Wallet(walletId, BigDecimal.valueOf(400.00));
+        Money amount = Money.parse("100.00");
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("400.00"));
         //when
-        when(walletRepository.findById(walletId)).thenReturn(Mono.just(wallet));
-        when(walletRepository.updateBalance(walletId, updatedWallet.getBalance())).thenReturn(Mono.empty());
-        when(reactiveRedisTemplate.opsForValue().set("wallet:" + walletId, updatedWallet)).thenReturn(Mono.just(true));
+        when(walletEngine.apply(walletId, OperationType.WITHDRAW, amount)).thenReturn(Mono.just(updatedWallet));
+        when(reactiveRedisTemplate.opsForValue().set("wallet:" + walletId, updatedWallet, COLD_TTL)).thenReturn(Mono.just(true));
+        when(walletNearCache.publishInvalidation(walletId)).thenReturn(Mono.empty());
         //then
         StepVerifier.create(walletService.performOperation(walletId, OperationType.WITHDRAW, amount))
+                .expectNext(updatedWallet)
                 .verifyComplete();
 
-        verify(walletRepository).findById(walletId);
-        verify(walletRepository).updateBalance(walletId, updatedWallet.getBalance());
-        verify(reactiveRedisTemplate.opsForValue()).set("wallet:" + walletId, updatedWallet);
+        verify(walletEngine).apply(walletId, OperationType.WITHDRAW, amount);
+        verify(reactiveRedisTemplate.opsForValue()).set("wallet:" + walletId, updatedWallet, COLD_TTL);
+    }
+
+    @Test
+    void performOperation_ShouldEvictApproximateBalanceInsteadOfCachingIt() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("600.00"));
+        //when
+        when(walletEngine.apply(walletId, OperationType.DEPOSIT, amount)).thenReturn(Mono.just(updatedWallet));
+        when(walletEngine.isBalanceApproximate(walletId)).thenReturn(true);
+        when(reactiveRedisTemplate.delete("wallet:" + walletId)).thenReturn(Mono.just(1L));
+        when(walletNearCache.publishInvalidation(walletId)).thenReturn(Mono.empty());
+        //then
+        StepVerifier.create(walletService.performOperation(walletId, OperationType.DEPOSIT, amount))
+                .expectNext(updatedWallet)
+                .verifyComplete();
+
+        verify(reactiveRedisTemplate).delete("wallet:" + walletId);
+        verify(reactiveValueOperations, never()).set(any(), any(), any(Duration.class));
+        verify(walletNearCache, never()).put(any());
+        verify(walletNearCache).invalidate(walletId);
     }
 
     @Test
     void performOperation_ShouldThrowInsufficientFundsException() {
         //given
         UUID walletId = UUID.randomUUID();
-        BigDecimal amount = BigDecimal.valueOf(1000.00);
-        Wallet wallet = new Wallet(walletId, BigDecimal.valueOf(500.00));
+        Money amount = Money.parse("1000.00");
         //when
-        when(walletRepository.findById(walletId)).thenReturn(Mono.just(wallet));
+        when(walletEngine.apply(walletId, OperationType.WITHDRAW, amount))
+                .thenReturn(Mono.error(new InsufficientFundsException("Insufficient funds in wallet: " + walletId)));
         //then
         StepVerifier.create(walletService.performOperation(walletId, OperationType.WITHDRAW, amount))
                 .expectErrorMatches(throwable -> throwable instanceof InsufficientFundsException &&
                         throwable.getMessage().equals("Insufficient funds in wallet: " + walletId))
                 .verify();
 
-        verify(walletRepository).findById(walletId);
-        verify(walletRepository, never()).updateBalance(any(UUID.class), any(BigDecimal.class));
-        verify(reactiveRedisTemplate.opsForValue(), never()).set(anyString(), any(Wallet.class));
+        verify(reactiveRedisTemplate.opsForValue(), never()).set(anyString(), any(Wallet.class), any(Duration.class));
+        assertEquals(1, meterRegistry.counter("wallet.rejections", "reason", "insufficient_funds").count());
     }
 
     @Test
     void performOperation_ShouldThrowWalletNotFoundException() {
         //given
         UUID walletId = UUID.randomUUID();
-        BigDecimal amount = BigDecimal.valueOf(100.00);
+        Money amount = Money.parse("100.00");
         //when
-        when(walletRepository.findById(walletId)).thenReturn(Mono.empty());
+        when(walletEngine.apply(walletId, OperationType.DEPOSIT, amount))
+                .thenReturn(Mono.error(new WalletNotFoundException("Wallet not found: " + walletId)));
         //then
         StepVerifier.create(walletService.performOperation(walletId, OperationType.DEPOSIT, amount))
                 .expectErrorMatches(throwable -> throwable instanceof WalletNotFoundException &&
                         throwable.getMessage().equals("Wallet not found: " + walletId))
                 .verify();
 
-        verify(walletRepository).findById(walletId);
-        verify(walletRepository, never()).updateBalance(any(UUID.class), any(BigDecimal.class));
-        verify(reactiveRedisTemplate.opsForValue(), never()).set(anyString(), any(Wallet.class));
+        verify(reactiveRedisTemplate.opsForValue(), never()).set(anyString(), any(Wallet.class), any(Duration.class));
     }
 
     @Test
     void findWalletBalance_ShouldReturnWalletFromCache() {
         //given
         UUID walletId = UUID.randomUUID();
-        Wallet wallet = new Wallet(walletId, BigDecimal.valueOf(500.00));
+        Wallet wallet = new Wallet(walletId, Money.parse("500.00"));
         String cacheKey = "wallet:" + walletId;
         //when
         when(reactiveRedisTemplate.opsForValue().get(cacheKey)).thenReturn(Mono.just(wallet));
-        when(walletRepository.findById(walletId)).thenReturn(Mono.empty());
         //then
         StepVerifier.create(walletService.findWalletBalance(walletId))
                 .expectNext(wallet)
@@ -135,24 +201,80 @@ public class WalletServiceImplTest {
         verify(reactiveRedisTemplate.opsForValue()).get(cacheKey);
     }
 
+    @Test
+    void streamWalletBalance_ShouldEmitCurrentBalanceThenChanges() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("500.00"));
+        Wallet changedWallet = new Wallet(walletId, Money.parse("600.00"));
+        Sinks.Many<Wallet> changes = Sinks.many().multicast().onBackpressureBuffer();
+        //when
+        when(walletBalanceStream.listen(walletId)).thenReturn(changes.asFlux());
+        when(reactiveRedisTemplate.opsForValue().get("wallet:" + walletId)).thenReturn(Mono.just(wallet));
+        //then
+        StepVerifier.create(walletService.streamWalletBalance(walletId))
+                .expectNext(wallet)
+                .then(() -> changes.tryEmitNext(changedWallet))
+                .expectNext(changedWallet)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void streamWalletBalance_ShouldSkipSnapshotOlderThanEmittedChange() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet staleWallet = new Wallet(walletId, Money.parse("500.00"));
+        Wallet changedWallet = new Wallet(walletId, Money.parse("600.00"));
+        //when
+        when(walletBalanceStream.listen(walletId)).thenReturn(Flux.just(changedWallet).concatWith(Flux.never()));
+        when(reactiveRedisTemplate.opsForValue().get("wallet:" + walletId)).thenReturn(Mono.just(staleWallet));
+        //then
+        StepVerifier.create(walletService.streamWalletBalance(walletId))
+                .expectNext(changedWallet)
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void findWalletBalance_ShouldReturnWalletFromNearCache() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("500.00"));
+        //when
+        when(walletNearCache.get(walletId)).thenReturn(wallet);
+        //then
+        StepVerifier.create(walletService.findWalletBalance(walletId))
+                .expectNext(wallet)
+                .verifyComplete();
+
+        verify(reactiveRedisTemplate.opsForValue(), never()).get(anyString());
+        verify(walletEngine, never()).findWallet(any(UUID.class));
+        assertEquals(1, meterRegistry.counter("wallet.cache.lookups", "result", "near_hit").count());
+        assertEquals(1, meterRegistry.timer("wallet.balance.read", "stage", "total").count());
+    }
+
     @Test
     void findWalletBalance_ShouldReturnWalletFromRepository() {
         //given
         UUID walletId = UUID.randomUUID();
-        Wallet wallet = new Wallet(walletId, BigDecimal.valueOf(500.00));
+        Wallet wallet = new Wallet(walletId, Money.parse("500.00"));
         String cacheKey = "wallet:" + walletId;
         //when
         when(reactiveRedisTemplate.opsForValue().get(cacheKey)).thenReturn(Mono.empty());
-        when(walletRepository.findById(walletId)).thenReturn(Mono.just(wallet));
-        when(reactiveRedisTemplate.opsForValue().set(cacheKey, wallet)).thenReturn(Mono.just(true));
+        when(walletEngine.findWallet(walletId)).thenReturn(Mono.just(wallet));
+        when(reactiveRedisTemplate.opsForValue().set(cacheKey, wallet, COLD_TTL)).thenReturn(Mono.just(true));
         //then
         StepVerifier.create(walletService.findWalletBalance(walletId))
                 .expectNext(wallet)
                 .verifyComplete();
 
         verify(reactiveRedisTemplate.opsForValue()).get(cacheKey);
-        verify(walletRepository).findById(walletId);
-        verify(reactiveRedisTemplate.opsForValue()).set(cacheKey, wallet);
+        verify(walletEngine).findWallet(walletId);
+        verify(reactiveRedisTemplate.opsForValue()).set(cacheKey, wallet, COLD_TTL);
+        verify(walletNearCache).put(wallet);
+        verify(walletNearCache, never()).publishInvalidation(any(UUID.class));
     }
 
     @Test
@@ -162,7 +284,7 @@ public class WalletServiceImplTest {
         String cacheKey = "wallet:" + walletId;
         //when
         when(reactiveRedisTemplate.opsForValue().get(cacheKey)).thenReturn(Mono.empty());
-        when(walletRepository.findById(walletId)).thenReturn(Mono.empty());
+        when(walletEngine.findWallet(walletId)).thenReturn(Mono.empty());
         //then
         StepVerifier.create(walletService.findWalletBalance(walletId))
                 .expectErrorMatches(throwable -> throwable instanceof WalletNotFoundException &&
@@ -170,6 +292,201 @@ public class WalletServiceImplTest {
                 .verify();
 
         verify(reactiveRedisTemplate.opsForValue()).get(cacheKey);
-        verify(walletRepository).findById(walletId);
+        verify(walletEngine).findWallet(walletId);
+        verify(missingWalletFilter).markMissing(walletId);
+        assertEquals(1, meterRegistry.counter("wallet.cache.lookups", "result", "miss").count());
+        assertEquals(1, meterRegistry.counter("wallet.rejections", "reason", "not_found").count());
+    }
+
+    @Test
+    void findWalletBalance_ShouldRejectKnownMissingWalletWithoutLookup() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        when(missingWalletFilter.isKnownMissing(walletId)).thenReturn(true);
+        //then
+        StepVerifier.create(walletService.findWalletBalance(walletId))
+                .expectErrorMatches(throwable -> throwable instanceof WalletNotFoundException &&
+                        throwable.getMessage().equals("Wallet not found: " + walletId))
+                .verify();
+
+        verify(reactiveRedisTemplate.opsForValue(), never()).get(anyString());
+        verify(walletEngine, never()).findWallet(any(UUID.class));
+    }
+
+    @Test
+    void findWalletBalance_ShouldLookUpWalletAbsentFromBloomFilterInDatabase() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("500.00"));
+        String cacheKey = "wallet:" + walletId;
+        //when
+        when(missingWalletFilter.isLikelyMissing(walletId)).thenReturn(true);
+        when(walletEngine.findWallet(walletId)).thenReturn(Mono.just(wallet));
+        when(reactiveRedisTemplate.opsForValue().set(cacheKey, wallet, COLD_TTL)).thenReturn(Mono.just(true));
+        //then
+        StepVerifier.create(walletService.findWalletBalance(walletId))
+                .expectNext(wallet)
+                .verifyComplete();
+
+        verify(reactiveRedisTemplate.opsForValue(), never()).get(anyString());
+        verify(missingWalletFilter).register(walletId);
+    }
+
+    @Test
+    void findWalletBalance_ShouldShareConcurrentDatabaseLookup() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("500.00"));
+        String cacheKey = "wallet:" + walletId;
+        Sinks.One<Wallet> lookup = Sinks.one();
+        //when
+        when(reactiveRedisTemplate.opsForValue().get(cacheKey)).thenReturn(Mono.empty());
+        when(walletEngine.findWallet(walletId)).thenReturn(lookup.asMono());
+        when(reactiveRedisTemplate.opsForValue().set(cacheKey, wallet, COLD_TTL)).thenReturn(Mono.just(true));
+        Mono<Wallet> first = walletService.findWalletBalance(walletId).cache();
+        Mono<Wallet> second = walletService.findWalletBalance(walletId).cache();
+        first.subscribe();
+        second.subscribe();
+        lookup.tryEmitValue(wallet);
+        //then
+        StepVerifier.create(first)
+                .expectNext(wallet)
+                .verifyComplete();
+        StepVerifier.create(second)
+                .expectNext(wallet)
+                .verifyComplete();
+
+        verify(walletEngine, times(1)).findWallet(walletId);
+        verify(reactiveRedisTemplate.opsForValue(), times(1)).set(cacheKey, wallet, COLD_TTL);
+    }
+
+    @Test
+    void findWalletBalances_ShouldResolveMissesWithOneQuery() {
+        //given
+        UUID cachedId = UUID.randomUUID();
+        UUID storedId = UUID.randomUUID();
+        UUID missingId = UUID.randomUUID();
+        Wallet cached = new Wallet(cachedId, Money.parse("100.00"));
+        Wallet stored = new Wallet(storedId, Money.parse("200.00"));
+        List<String> cacheKeys = List.of("wallet:" + cachedId, "wallet:" + storedId, "wallet:" + missingId);
+        //when
+        when(reactiveValueOperations.multiGet(cacheKeys)).thenReturn(Mono.just(Arrays.asList(cached, null, null)));
+        when(walletEngine.findWallets(List.of(storedId, missingId))).thenReturn(Flux.just(stored));
+        when(reactiveValueOperations.set("wallet:" + storedId, stored, COLD_TTL)).thenReturn(Mono.just(true));
+        //then
+        StepVerifier.create(walletService.findWalletBalances(List.of(cachedId, storedId, missingId, cachedId)))
+                .expectNext(Map.of(cachedId, cached, storedId, stored))
+                .verifyComplete();
+
+        verify(walletEngine, never()).findWallet(any(UUID.class));
+        verify(walletNearCache).put(cached);
+        verify(walletNearCache).put(stored);
+        verify(missingWalletFilter).markMissing(missingId);
+    }
+
+    @Test
+    void findWalletBalances_ShouldSkipRedisWhenAllNearCached() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("100.00"));
+        //when
+        when(walletNearCache.get(walletId)).thenReturn(wallet);
+        //then
+        StepVerifier.create(walletService.findWalletBalances(List.of(walletId)))
+                .expectNext(Map.of(walletId, wallet))
+                .verifyComplete();
+
+        verify(reactiveValueOperations, never()).multiGet(anyCollection());
+    }
+
+    @Test
+    void findWalletBalance_ShouldExtendTtlOfHotWallet() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("100.00"));
+        String cacheKey = "wallet:" + walletId;
+        //when
+        when(walletAccessTracker.record(walletId)).thenReturn(true);
+        when(reactiveValueOperations.getAndExpire(cacheKey, Duration.ofHours(1))).thenReturn(Mono.just(wallet));
+        //then
+        StepVerifier.create(walletService.findWalletBalance(walletId))
+                .expectNext(wallet)
+                .verifyComplete();
+
+        verify(reactiveValueOperations, never()).get(anyString());
+    }
+
+    @Test
+    void warmUp_ShouldFillCachesWithHotTtl() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.parse("100.00"));
+        //when
+        when(walletEngine.findWallets(List.of(walletId))).thenReturn(Flux.just(wallet));
+        when(walletAccessTracker.isHot(walletId)).thenReturn(true);
+        when(reactiveValueOperations.set("wallet:" + walletId, wallet, Duration.ofHours(1))).thenReturn(Mono.just(true));
+        //then
+        StepVerifier.create(walletService.warmUp(List.of(walletId)))
+                .expectNext(1)
+                .verifyComplete();
+
+        verify(walletAccessTracker).seed(List.of(walletId));
+        verify(walletNearCache).put(wallet);
+    }
+
+    @Test
+    void transfer_ShouldUpdateCacheOfAllWallets() {
+        //given
+        UUID sourceId = UUID.randomUUID();
+        UUID destinationId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet source = new Wallet(sourceId, Money.parse("400.00"));
+        Wallet destination = new Wallet(destinationId, Money.parse("100.00"));
+        //when
+        when(walletEngine.supportsTransfers()).thenReturn(true);
+        when(walletEngine.transfer(sourceId, Map.of(destinationId, amount))).thenReturn(Flux.just(source, destination));
+        when(reactiveValueOperations.set("wallet:" + sourceId, source, COLD_TTL)).thenReturn(Mono.just(true));
+        when(reactiveValueOperations.set("wallet:" + destinationId, destination, COLD_TTL)).thenReturn(Mono.just(true));
+        when(walletNearCache.publishInvalidation(any(UUID.class))).thenReturn(Mono.empty());
+        //then
+        StepVerifier.create(walletService.transfer(sourceId, Map.of(destinationId, amount)))
+                .expectNext(List.of(source, destination))
+                .verifyComplete();
+
+        verify(walletBalanceStream).publish(source);
+        verify(walletBalanceStream).publish(destination);
+        verify(walletNearCache).publishInvalidation(sourceId);
+        verify(walletNearCache).publishInvalidation(destinationId);
+    }
+
+    @Test
+    void transfer_ShouldRejectTransferToSourceWallet() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        //then
+        StepVerifier.create(walletService.transfer(walletId, Map.of(walletId, Money.parse("100.00"))))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verify(walletEngine, never()).transfer(any(UUID.class), anyMap());
+        verify(reactiveRedisTemplate.opsForValue(), never()).set(anyString(), any(Wallet.class), any(Duration.class));
+    }
+
+    @Test
+    void transfer_ShouldRejectWhenEngineHasNoTransfers() {
+        //given
+        UUID sourceId = UUID.randomUUID();
+        UUID destinationId = UUID.randomUUID();
+        //when
+        when(walletEngine.supportsTransfers()).thenReturn(false);
+        //then
+        StepVerifier.create(walletService.transfer(sourceId, Map.of(destinationId, Money.parse("100.00"))))
+                .expectErrorMatches(throwable -> throwable instanceof UnsupportedOperationException &&
+                        throwable.getMessage().equals("Transfers are disabled"))
+                .verify();
+
+        verify(walletEngine, never()).transfer(any(UUID.class), anyMap());
     }
-}
\ No newline at end of file
+}
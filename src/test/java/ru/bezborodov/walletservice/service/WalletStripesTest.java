@@ -0,0 +1,187 @@
+package ru.bezborodov.walletservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.bezborodov.walletservice.config.StripingProperties;
+import ru.bezborodov.walletservice.entity.Money;
+import ru.bezborodov.walletservice.entity.Wallet;
+import ru.bezborodov.walletservice.exception.InsufficientFundsException;
+import ru.bezborodov.walletservice.exception.WalletNotFoundException;
+import ru.bezborodov.walletservice.repository.WalletRepository;
+import ru.bezborodov.walletservice.repository.WalletStripeRepository;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WalletStripesTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletStripeRepository walletStripeRepository;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    private WalletStripes walletStripes;
+
+    @BeforeEach
+    void setUp() {
+        walletStripes = new WalletStripes(new StripingProperties(Duration.ofSeconds(30)),
+                walletRepository, walletStripeRepository, transactionalOperator);
+    }
+
+    @Test
+    void apply_ShouldUpdateOneStripe() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("100.00");
+        Wallet updatedWallet = new Wallet(walletId, Money.parse("600.00"));
+        //when
+        when(walletStripeRepository.applyDelta(eq(walletId), anyInt(), eq(amount))).thenReturn(Mono.just(updatedWallet));
+        //then
+        StepVerifier.create(walletStripes.apply(walletId, 4, amount))
+                .expectNext(updatedWallet)
+                .verifyComplete();
+
+        verify(walletRepository, never()).lockAllById(any());
+    }
+
+    @Test
+    void apply_ShouldRebalanceWhenStripeIsShort() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.parse("-2.50");
+        //when
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletStripeRepository.applyDelta(eq(walletId), anyInt(), eq(amount))).thenReturn(Mono.empty());
+        when(walletRepository.lockAllById(new UUID[]{walletId}))
+                .thenReturn(Flux.just(new Wallet(walletId, Money.parse("1.00"))));
+        when(walletStripeRepository.lockBalances(walletId)).thenReturn(Flux.just(100L, 0L, 150L));
+        when(walletStripeRepository.deleteStripes(walletId)).thenReturn(Mono.just(3));
+        when(walletStripeRepository.insertStripes(walletId, new Long[]{34L, 33L, 33L})).thenReturn(Mono.just(3));
+        when(walletRepository.updateBalance(walletId, Money.ZERO)).thenReturn(Mono.empty());
+        //then
+        StepVerifier.create(walletStripes.apply(walletId, 3, amount))
+                .expectNext(new Wallet(walletId, Money.parse("1.00")))
+                .verifyComplete();
+
+        verify(walletStripeRepository).insertStripes(walletId, new Long[]{34L, 33L, 33L});
+        verify(walletRepository).updateBalance(walletId, Money.ZERO);
+    }
+
+    @Test
+    void rebalance_ShouldThrowInsufficientFundsException() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.lockAllById(new UUID[]{walletId}))
+                .thenReturn(Flux.just(new Wallet(walletId, Money.ZERO)));
+        when(walletStripeRepository.lockBalances(walletId)).thenReturn(Flux.just(100L, 100L));
+        //then
+        StepVerifier.create(walletStripes.rebalance(walletId, Money.parse("-2.01")))
+                .expectErrorMatches(throwable -> throwable instanceof InsufficientFundsException &&
+                        throwable.getMessage().equals("Insufficient funds in wallet: " + walletId))
+                .verify();
+
+        verify(walletStripeRepository, never()).deleteStripes(walletId);
+    }
+
+    @Test
+    void rebalance_ShouldThrowWalletNotFoundException() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.lockAllById(new UUID[]{walletId})).thenReturn(Flux.empty());
+        //then
+        StepVerifier.create(walletStripes.rebalance(walletId, Money.parse("1.00")))
+                .expectErrorMatches(throwable -> throwable instanceof WalletNotFoundException &&
+                        throwable.getMessage().equals("Wallet not found: " + walletId))
+                .verify();
+    }
+
+    @Test
+    void restripe_ShouldSplitBalanceAndRememberStripeCount() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.lockAllById(new UUID[]{walletId}))
+                .thenReturn(Flux.just(new Wallet(walletId, Money.parse("10.00"))));
+        when(walletStripeRepository.lockBalances(walletId)).thenReturn(Flux.empty());
+        when(walletStripeRepository.deleteStripes(walletId)).thenReturn(Mono.just(0));
+        when(walletStripeRepository.insertStripes(walletId, new Long[]{250L, 250L, 250L, 250L})).thenReturn(Mono.just(4));
+        when(walletRepository.updateBalance(walletId, Money.ZERO)).thenReturn(Mono.empty());
+        //then
+        StepVerifier.create(walletStripes.restripe(walletId, 4))
+                .expectNext(new Wallet(walletId, Money.parse("10.00")))
+                .verifyComplete();
+
+        assertEquals(4, walletStripes.stripes(walletId));
+    }
+
+    @Test
+    void restripe_ShouldMoveBalanceBackToWalletRow() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(walletRepository.lockAllById(new UUID[]{walletId}))
+                .thenReturn(Flux.just(new Wallet(walletId, Money.ZERO)));
+        when(walletStripeRepository.lockBalances(walletId)).thenReturn(Flux.just(500L, 500L));
+        when(walletStripeRepository.deleteStripes(walletId)).thenReturn(Mono.just(2));
+        when(walletRepository.updateBalance(walletId, Money.parse("10.00"))).thenReturn(Mono.empty());
+        //then
+        StepVerifier.create(walletStripes.restripe(walletId, 0))
+                .expectNext(new Wallet(walletId, Money.parse("10.00")))
+                .verifyComplete();
+
+        assertEquals(0, walletStripes.stripes(walletId));
+        verify(walletStripeRepository, never()).insertStripes(any(UUID.class), any());
+    }
+
+    @Test
+    void restripe_ShouldRejectTooManyStripes() {
+        //given
+        UUID walletId = UUID.randomUUID();
+        //when
+        StepVerifier.create(walletStripes.restripe(walletId, WalletStripes.MAX_STRIPES + 1))
+                //then
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verifyNoInteractions(walletRepository, walletStripeRepository);
+    }
+
+    @Test
+    void reload_ShouldCountStripesPerWallet() {
+        //given
+        UUID stripedWalletId = UUID.randomUUID();
+        UUID otherWalletId = UUID.randomUUID();
+        //when
+        when(walletStripeRepository.findStripeWalletIds())
+                .thenReturn(Flux.just(stripedWalletId, otherWalletId, stripedWalletId, stripedWalletId));
+        StepVerifier.create(walletStripes.reload())
+                .verifyComplete();
+        //then
+        assertEquals(3, walletStripes.stripes(stripedWalletId));
+        assertEquals(1, walletStripes.stripes(otherWalletId));
+        assertEquals(0, walletStripes.stripes(UUID.randomUUID()));
+    }
+}